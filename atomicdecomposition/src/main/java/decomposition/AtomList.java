@@ -1,39 +1,153 @@
 package decomposition;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /** atomical ontology structure */
 public class AtomList {
     /** all the atoms */
     private List<OntologyAtom> atoms = new ArrayList<OntologyAtom>();
+    /** atoms indexed by their module, for concurrent atom creation */
+    private final ConcurrentMap<BitSet, OntologyAtom> registry = new ConcurrentHashMap<BitSet, OntologyAtom>();
+    /** monitor to report new atoms to; null if none */
+    private DecompositionMonitor monitor = null;
+
+    /** @param m
+     *            monitor to report new atoms to */
+    void setMonitor(DecompositionMonitor m) {
+        monitor = m;
+    }
+
+    /** @param atom
+     *            atom to add to the structure; its id is set accordingly */
+    private void add(OntologyAtom atom) {
+        synchronized (atoms) {
+            atom.setId(atoms.size());
+            atoms.add(atom);
+        }
+        if (monitor != null) {
+            monitor.atomCreated();
+        }
+    }
 
     /** @return a new atom */
     public OntologyAtom newAtom() {
         OntologyAtom ret = new OntologyAtom();
-        ret.setId(atoms.size());
-        atoms.add(ret);
+        add(ret);
         return ret;
     }
 
-    /** reduce graph of the atoms in the structure */
+    /** register an axiom as a part of the atom with the given module; axioms
+     * with equal modules end up in the same atom. Safe to call from multiple
+     * threads.
+     * 
+     * @param ax
+     *            axiom
+     * @param module
+     *            module for the axiom signature
+     * @return the atom containing ax */
+    public OntologyAtom registerAxiom(AxiomWrapper ax, Collection<AxiomWrapper> module) {
+        BitSet key = new BitSet();
+        for (AxiomWrapper p : module) {
+            key.set(p.getId());
+        }
+        OntologyAtom atom = registry.get(key);
+        if (atom == null) {
+            OntologyAtom candidate = new OntologyAtom();
+            candidate.setModule(module);
+            atom = registry.putIfAbsent(key, candidate);
+            if (atom == null) {
+                atom = candidate;
+                add(atom);
+            }
+        }
+        synchronized (atom) {
+            atom.addAxiom(ax);
+        }
+        return atom;
+    }
+
+    /** drop the module index used by registerAxiom */
+    public void clearRegistry() {
+        registry.clear();
+    }
+
+    /** reduce graph of the atoms in the structure: compute the transitive
+     * closure of the dependencies and of the dependents, and keep only the
+     * direct dependencies */
     public void reduceGraph() {
-        Set<OntologyAtom> checked = new HashSet<OntologyAtom>();
-        for (OntologyAtom p : atoms) {
-            p.getAllDepAtoms(checked);
+        BitSet done = new BitSet();
+        List<OntologyAtom> path = new ArrayList<OntologyAtom>();
+        List<Iterator<OntologyAtom>> toVisit = new ArrayList<Iterator<OntologyAtom>>();
+        // build the atoms in post order, so that all the dependencies of an
+        // atom are built before the atom itself
+        for (OntologyAtom atom : atoms) {
+            if (atom == null || done.get(atom.getId())) {
+                continue;
+            }
+            // atoms on the path are marked as done when entered, to stop at
+            // cycles
+            done.set(atom.getId());
+            path.add(atom);
+            toVisit.add(atom.getDependencies().iterator());
+            while (!path.isEmpty()) {
+                int last = path.size() - 1;
+                Iterator<OntologyAtom> it = toVisit.get(last);
+                if (it.hasNext()) {
+                    OntologyAtom d = it.next();
+                    if (!done.get(d.getId())) {
+                        done.set(d.getId());
+                        path.add(d);
+                        toVisit.add(d.getDependencies().iterator());
+                    }
+                } else {
+                    toVisit.remove(last);
+                    path.remove(last).buildAllDepAtoms();
+                }
+            }
+        }
+        for (OntologyAtom atom : atoms) {
+            if (atom != null) {
+                atom.clearDependents();
+            }
+        }
+        for (OntologyAtom atom : atoms) {
+            if (atom != null) {
+                BitSet all = atom.getAllDepAtoms();
+                for (int i = all.nextSetBit(0); i >= 0; i = all.nextSetBit(i + 1)) {
+                    atoms.get(i).addDependent(atom, false);
+                }
+                for (OntologyAtom d : atom.getDependencies()) {
+                    d.addDependent(atom, true);
+                }
+            }
+        }
+    }
+
+    /** remove an atom from the structure; its id is not reused, and get() will
+     * return null for it
+     * 
+     * @param atom
+     *            atom to remove */
+    public void remove(OntologyAtom atom) {
+        synchronized (atoms) {
+            atoms.set(atom.getId(), null);
         }
     }
 
     /** @param index
      *            index of the atom to retrieve
-     * @return atom with index */
+     * @return atom with index, or null if the atom has been removed */
     public OntologyAtom get(int index) {
         return atoms.get(index);
     }
 
-    /** @return size of the structure */
+    /** @return size of the structure, including removed atoms */
     public int size() {
         return atoms.size();
     }
@@ -20,7 +20,7 @@ public class AxiomSelector {
         List<OWLAxiom> axioms = new ArrayList<OWLAxiom>();
         for (OWLOntology ont : o.getImportsClosure()) {
             for (AxiomType<? extends OWLAxiom> type : AXIOM_TYPES) {
-                if (type.isLogical() || type.equals(AxiomType.DECLARATION)) {
+                if (isSelected(type)) {
                     for (OWLAxiom ax : ont.getAxioms(type)) {
                         axioms.add(ax);
                     }
@@ -30,6 +30,13 @@ public class AxiomSelector {
         return axioms;
     }
 
+    /** @param type
+     *            axiom type
+     * @return true if axioms of this type are selected */
+    public static boolean isSelected(AxiomType<?> type) {
+        return type.isLogical() || type.equals(AxiomType.DECLARATION);
+    }
+
     /** @param o
      *            axioms to wrap
      * @return axioms wrapped as AxiomWrapper */
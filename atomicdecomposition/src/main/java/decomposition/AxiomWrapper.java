@@ -2,16 +2,18 @@ package decomposition;
 
 import org.semanticweb.owlapi.model.OWLAxiom;
 
-/** Wrapper around an OWLAxiom to hold attributes such as used, included in a
- * module, included in search space and atom which contains it.
+/** Wrapper around an OWLAxiom to hold attributes such as used, id and atom
+ * which contains it. Module and search space membership are kept by the
+ * modularizers, so that wrappers can be shared by concurrent extractions.
  * 
  * @author ignazio */
 public class AxiomWrapper {
     private OWLAxiom axiom;
     private boolean used = true;
-    private boolean searchspace;
-    private boolean module;
     private OntologyAtom atom;
+    private int id = -1;
+    private int[] signatureIds;
+    private Interner interner;
 
     /** @param axiom
      *            axiom to wrap */
@@ -35,36 +37,50 @@ public class AxiomWrapper {
         return used;
     }
 
-    /** @param b
-     *            value for in search space */
-    public void setInSearchSpace(boolean b) {
-        searchspace = b;
+    /** @param atom
+     *            atom including the axiom */
+    public void setAtom(OntologyAtom atom) {
+        this.atom = atom;
     }
 
-    /** @return true if in search space */
-    public boolean isInSearchSpace() {
-        return searchspace;
+    /** @return the including atom */
+    public OntologyAtom getAtom() {
+        return atom;
     }
 
-    /** @param b
-     *            value for in module */
-    public void setInModule(boolean b) {
-        module = b;
+    /** @param id
+     *            the axiom id */
+    public void setId(int id) {
+        this.id = id;
     }
 
-    /** @return true if in module */
-    public boolean isInModule() {
-        return module;
+    /** @return the axiom id in the interner returned by {@link #getInterner()};
+     *         -1 if the axiom has not been registered with an Interner */
+    public int getId() {
+        return id;
     }
 
-    /** @param atom
-     *            atom including the axiom */
-    public void setAtom(OntologyAtom atom) {
-        this.atom = atom;
+    /** @param interner
+     *            the interner owning the axiom and signature ids */
+    public void setInterner(Interner interner) {
+        this.interner = interner;
     }
 
-    /** @return the including atom */
-    public OntologyAtom getAtom() {
-        return atom;
+    /** @return the interner owning the axiom and signature ids; null if the
+     *         axiom has not been registered with an Interner */
+    public Interner getInterner() {
+        return interner;
+    }
+
+    /** @param ids
+     *            ids of the entities in the axiom signature */
+    public void setSignatureIds(int[] ids) {
+        signatureIds = ids;
+    }
+
+    /** @return ids of the entities in the axiom signature; null if the axiom
+     *         has not been registered with an Interner */
+    public int[] getSignatureIds() {
+        return signatureIds;
     }
 }
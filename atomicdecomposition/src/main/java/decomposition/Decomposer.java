@@ -1,14 +1,25 @@
 package decomposition;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.semanticweb.owlapi.model.OWLAxiom;
 import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLRuntimeException;
 
+import uk.ac.manchester.cs.chainsaw.FastSet;
 import uk.ac.manchester.cs.owlapi.modularity.ModuleType;
 
 /** atomical decomposer of the ontology */
@@ -24,6 +35,12 @@ public class Decomposer {
     /** module type for current AOS creation */
     private ModuleType type;
     private List<AxiomWrapper> axioms;
+    /** checker factory for parallel decomposition; null if sequential */
+    private LocalityCheckerFactory checkerFactory = null;
+    /** number of threads for parallel decomposition */
+    private int nThreads = 1;
+    /** statistics, progress and cancellation of the decompositions */
+    private final DecompositionMonitor monitor = new DecompositionMonitor();
 
     /** @param axioms
      *            axiom wrappers to decompose
@@ -32,14 +49,40 @@ public class Decomposer {
     public Decomposer(List<AxiomWrapper> axioms, LocalityChecker c) {
         this.axioms = axioms;
         modularizer = new Modularizer(c);
+        modularizer.setMonitor(monitor);
         modularizer.preprocessOntology(axioms);
     }
 
+    /** @param axioms
+     *            axiom wrappers to decompose
+     * @param c
+     *            locality checker to use
+     * @param flags
+     *            saved non-locality flags of the axioms, in the same order */
+    Decomposer(List<AxiomWrapper> axioms, LocalityChecker c, byte[] flags) {
+        this.axioms = axioms;
+        modularizer = new Modularizer(c);
+        modularizer.setMonitor(monitor);
+        modularizer.preprocessOntology(axioms, flags);
+    }
+
+    /** @return the monitor for the decompositions of this decomposer */
+    public DecompositionMonitor getMonitor() {
+        return monitor;
+    }
+
     /** @return the modularizer for this decomposer */
     public Modularizer getModularizer() {
         return modularizer;
     }
 
+    /** remove the links to atoms of a previous structure */
+    private void clearAtoms() {
+        for (AxiomWrapper p : axioms) {
+            p.setAtom(null);
+        }
+    }
+
     /** restore all tautologies back */
     private void restoreTautologies() {
         for (AxiomWrapper p : tautologies) {
@@ -52,14 +95,42 @@ public class Decomposer {
     private void removeTautologies() {
         // we might use it for another decomposition
         tautologies.clear();
+        for (AxiomWrapper p : axioms) {
+            monitor.checkCancelled();
+            if (p.isUsed() && isTautology(p)) {
+                tautologies.add(p);
+                p.setUsed(false);
+            }
+        }
+    }
+
+    /** @return number of axioms to put in atoms */
+    private int countUsed() {
+        int count = 0;
         for (AxiomWrapper p : axioms) {
             if (p.isUsed()) {
-                // check whether an axiom is local wrt its own signature
-                modularizer.extract(p, new Signature(p.getAxiom().getSignature()), type);
-                if (modularizer.isTautology(p.getAxiom(), type)) {
-                    tautologies.add(p);
-                    p.setUsed(false);
-                }
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /** @param p
+     *            axiom
+     * @return true if p is local wrt its own signature */
+    private boolean isTautology(AxiomWrapper p) {
+        modularizer.extract(p, new Signature(p.getAxiom().getSignature()), type);
+        return modularizer.isTautology(p.getAxiom(), type);
+    }
+
+    /** make an atom depend on the atoms of all the axioms in its module
+     * 
+     * @param atom
+     *            atom to update; can be null */
+    private void addModuleDependencies(OntologyAtom atom) {
+        if (atom != null) {
+            for (AxiomWrapper q : atom.getModule()) {
+                atom.addDepAtom(q.getAtom());
             }
         }
     }
@@ -112,6 +183,7 @@ public class Decomposer {
         assert atom != null;
         // register axiom as a part of an atom
         atom.addAxiom(ax);
+        monitor.axiomsProcessed(1);
         // if atom is the same as parent -- nothing more to do
         if (atom == parent) {
             return parent;
@@ -133,38 +205,364 @@ public class Decomposer {
         return atomList;
     }
 
+    /** @return the axioms to decompose */
+    List<AxiomWrapper> getAxioms() {
+        return axioms;
+    }
+
+    /** @return the module type of the current structure */
+    ModuleType getModuleType() {
+        return type;
+    }
+
+    /** use an atomic structure built elsewhere for the same axioms, e.g., read
+     * from a file
+     * 
+     * @param t
+     *            module type
+     * @param list
+     *            atomic structure; the graph must be reduced and the atoms
+     *            linked to the axioms
+     * @param taut
+     *            tautologies */
+    void setAOS(ModuleType t, AtomList list, List<AxiomWrapper> taut) {
+        type = t;
+        checkerFactory = null;
+        nThreads = 1;
+        atomList = list;
+        tautologies = new ArrayList<AxiomWrapper>(taut);
+    }
+
     /** @param t
      *            module type
      * @return the atomic structure for given module type T */
     public AtomList getAOS(ModuleType t) {
         // remember the type of the module
         type = t;
+        checkerFactory = null;
+        nThreads = 1;
         // prepare a new AO structure
         atomList = new AtomList();
-        // init semantic locality checker
-        modularizer.preprocessOntology(axioms);
-        // we don't need tautologies here
-        removeTautologies();
-        // init the root atom
-        rootAtom = new OntologyAtom();
-        rootAtom.setModule(new HashSet<AxiomWrapper>(axioms));
-        // build the "bottom" atom for an empty signature
-        OntologyAtom bottomAtom = buildModule(new Signature(), rootAtom);
-        if (bottomAtom != null) {
-            bottomAtom.addAxioms(bottomAtom.getModule());
-        }
-        // create atoms for all the axioms in the ontology
+        atomList.setMonitor(monitor);
+        clearAtoms();
+        monitor.start();
+        try {
+            // init semantic locality checker
+            monitor.phaseStarted(DecompositionPhase.INDEX);
+            modularizer.preprocessOntology(axioms);
+            monitor.phaseFinished(DecompositionPhase.INDEX);
+            // we don't need tautologies here
+            monitor.phaseStarted(DecompositionPhase.TAUTOLOGIES);
+            removeTautologies();
+            monitor.phaseFinished(DecompositionPhase.TAUTOLOGIES);
+            monitor.setAxiomsTotal(countUsed());
+            // init the root atom
+            monitor.phaseStarted(DecompositionPhase.BOTTOM_ATOM);
+            rootAtom = new OntologyAtom();
+            rootAtom.setModule(new HashSet<AxiomWrapper>(axioms));
+            // build the "bottom" atom for an empty signature
+            OntologyAtom bottomAtom = buildModule(new Signature(), rootAtom);
+            if (bottomAtom != null) {
+                bottomAtom.addAxioms(bottomAtom.getModule());
+                monitor.axiomsProcessed(bottomAtom.getModule().size());
+            }
+            monitor.phaseFinished(DecompositionPhase.BOTTOM_ATOM);
+            // create atoms for all the axioms in the ontology
+            monitor.phaseStarted(DecompositionPhase.ATOMS);
+            for (AxiomWrapper p : axioms) {
+                if (p.isUsed() && p.getAtom() == null) {
+                    createAtom(p, rootAtom);
+                }
+            }
+            monitor.phaseFinished(DecompositionPhase.ATOMS);
+            // reduce graph
+            monitor.phaseStarted(DecompositionPhase.GRAPH);
+            atomList.reduceGraph();
+            monitor.phaseFinished(DecompositionPhase.GRAPH);
+        } catch (DecompositionCancelledException e) {
+            atomList = null;
+            throw e;
+        } finally {
+            // restore tautologies in the ontology
+            restoreTautologies();
+            rootAtom = null;
+        }
+        return atomList;
+    }
+
+    /** @param t
+     *            module type
+     * @param factory
+     *            factory for the locality checkers of the workers; each worker
+     *            uses its own checker and modularizer
+     * @param nThreads
+     *            number of worker threads; if less than 2, the sequential
+     *            algorithm is used
+     * @return the atomic structure for given module type T; the atoms and
+     *         their dependencies are the same as the ones built by getAOS(T),
+     *         but atom ids might differ */
+    public AtomList getAOS(ModuleType t, final LocalityCheckerFactory factory,
+            int nThreads) {
+        if (nThreads < 2) {
+            return getAOS(t);
+        }
+        // remember the type of the module
+        type = t;
+        checkerFactory = factory;
+        this.nThreads = nThreads;
+        // prepare a new AO structure
+        atomList = new AtomList();
+        atomList.setMonitor(monitor);
+        clearAtoms();
+        monitor.start();
+        try {
+            // init semantic locality checker
+            monitor.phaseStarted(DecompositionPhase.INDEX);
+            modularizer.preprocessOntology(axioms, factory, nThreads);
+            monitor.phaseFinished(DecompositionPhase.INDEX);
+            // we don't need tautologies here
+            monitor.phaseStarted(DecompositionPhase.TAUTOLOGIES);
+            removeTautologies();
+            monitor.phaseFinished(DecompositionPhase.TAUTOLOGIES);
+            monitor.setAxiomsTotal(countUsed());
+            // the workers only read the index
+            modularizer.getSigIndex().freeze();
+            monitor.phaseStarted(DecompositionPhase.ATOMS);
+            buildAtoms(factory, nThreads);
+            monitor.phaseFinished(DecompositionPhase.ATOMS);
+            monitor.phaseStarted(DecompositionPhase.GRAPH);
+            // every atom depends on the atoms of all the axioms in its module
+            for (int i = 0; i < atomList.size(); i++) {
+                addModuleDependencies(atomList.get(i));
+            }
+            // reduce graph
+            atomList.reduceGraph();
+            monitor.phaseFinished(DecompositionPhase.GRAPH);
+        } catch (DecompositionCancelledException e) {
+            atomList = null;
+            throw e;
+        } finally {
+            // restore tautologies in the ontology
+            restoreTautologies();
+        }
+        return atomList;
+    }
+
+    /** an atom is the set of axioms sharing the same module: build the module
+     * for every axiom in parallel, and let the atom list merge the axioms with
+     * equal modules
+     * 
+     * @param factory
+     *            factory for the locality checkers of the workers
+     * @param nThreads
+     *            number of worker threads */
+    private void buildAtoms(final LocalityCheckerFactory factory, int nThreads) {
+        final AtomicInteger next = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        List<Future<?>> workers = new ArrayList<Future<?>>();
+        for (int i = 0; i < nThreads; i++) {
+            workers.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    LocalityChecker c = factory.createChecker();
+                    c.preprocessOntology(axioms);
+                    Modularizer worker = new Modularizer(c, modularizer.getSigIndex(),
+                            axioms);
+                    worker.setMonitor(monitor);
+                    for (int index = next.getAndIncrement(); index < axioms.size(); index = next
+                            .getAndIncrement()) {
+                        AxiomWrapper p = axioms.get(index);
+                        if (p.isUsed()) {
+                            worker.extract(axioms, new Signature(p.getAxiom()
+                                    .getSignature()), type);
+                            atomList.registerAxiom(p, worker.getModule());
+                            monitor.axiomsProcessed(1);
+                        }
+                    }
+                }
+            }));
+        }
+        executor.shutdown();
+        try {
+            for (Future<?> f : workers) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            stopWorkers(executor, next);
+            Thread.currentThread().interrupt();
+            throw new OWLRuntimeException(e);
+        } catch (ExecutionException e) {
+            stopWorkers(executor, next);
+            if (e.getCause() instanceof DecompositionCancelledException) {
+                throw (DecompositionCancelledException) e.getCause();
+            }
+            throw new OWLRuntimeException(e.getCause());
+        } finally {
+            atomList.clearRegistry();
+        }
+    }
+
+    /** stop the remaining workers and wait for them, so that none of them
+     * touches the atoms after the decomposition has failed
+     * 
+     * @param executor
+     *            executor running the workers
+     * @param next
+     *            index of the next axiom to process */
+    private void stopWorkers(ExecutorService executor, AtomicInteger next) {
+        next.set(axioms.size());
+        executor.shutdownNow();
+        boolean interrupted = false;
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** update the atomic structure after a change in the ontology. Only the
+     * atoms whose module signature intersects the signature of the changed
+     * axioms can change, and the set of such atoms is closed wrt dependents;
+     * these atoms are removed and rebuilt, while the rest of the structure is
+     * kept. The structure is built from scratch if there is no structure yet,
+     * for STAR modules (where the signature used in the extraction is not the
+     * module signature), or if a changed axiom is non-local wrt the empty
+     * signature.
+     * 
+     * @param added
+     *            axioms added to the ontology; axioms already known are
+     *            ignored
+     * @param removed
+     *            axioms removed from the ontology
+     * @param oldAtoms
+     *            collects the atoms removed from the structure
+     * @param newAtoms
+     *            collects the atoms added to the structure
+     * @return true if the structure was updated in place, false if it was
+     *         built from scratch; in the latter case oldAtoms and newAtoms are
+     *         not filled in, and getAOS() returns a new structure */
+    public boolean updateAOS(Collection<OWLAxiom> added, Collection<OWLAxiom> removed,
+            Collection<OntologyAtom> oldAtoms, Collection<OntologyAtom> newAtoms) {
+        Set<OWLAxiom> toAdd = new HashSet<OWLAxiom>(added);
+        Set<OWLAxiom> toRemove = new HashSet<OWLAxiom>(removed);
+        Set<AxiomWrapper> removedWrappers = Collections
+                .newSetFromMap(new IdentityHashMap<AxiomWrapper, Boolean>());
         for (AxiomWrapper p : axioms) {
-            if (p.isUsed() && p.getAtom() == null) {
-                createAtom(p, rootAtom);
+            if (toRemove.contains(p.getAxiom())) {
+                removedWrappers.add(p);
+            } else {
+                toAdd.remove(p.getAxiom());
+            }
+        }
+        if (toAdd.isEmpty() && removedWrappers.isEmpty()) {
+            return true;
+        }
+        List<AxiomWrapper> addedWrappers = AxiomSelector.wrap(new ArrayList<OWLAxiom>(
+                toAdd));
+        SigIndex sigIndex = modularizer.getSigIndex();
+        boolean top = type == ModuleType.TOP;
+        boolean rebuild = atomList == null || type == ModuleType.STAR;
+        // find the atoms whose module contains an axiom sharing an entity with
+        // the changed axioms
+        Set<OntologyAtom> affected = Collections
+                .newSetFromMap(new IdentityHashMap<OntologyAtom, Boolean>());
+        Signature changed = new Signature();
+        for (AxiomWrapper p : removedWrappers) {
+            changed.addAll(p.getAxiom().getSignature());
+            rebuild |= sigIndex.isNonLocal(p, top);
+        }
+        for (AxiomWrapper p : addedWrappers) {
+            changed.addAll(p.getAxiom().getSignature());
+        }
+        if (!rebuild) {
+            for (OWLEntity e : changed.getSignature()) {
+                for (AxiomWrapper q : sigIndex.getAxioms(e)) {
+                    if (q.getAtom() != null) {
+                        affected.add(q.getAtom());
+                    }
+                }
+            }
+            addDependents(affected);
+        }
+        // update the axioms and the index
+        for (AxiomWrapper p : removedWrappers) {
+            p.setUsed(false);
+            sigIndex.processAx(p);
+            p.setAtom(null);
+        }
+        axioms.removeAll(removedWrappers);
+        tautologies.removeAll(removedWrappers);
+        for (AxiomWrapper p : addedWrappers) {
+            axioms.add(p);
+            sigIndex.processAx(p);
+            rebuild |= sigIndex.isNonLocal(p, top);
+        }
+        if (rebuild) {
+            if (atomList != null) {
+                getAOS(type, checkerFactory, nThreads);
+            }
+            return false;
+        }
+        LocalityChecker checker = modularizer.getLocalityChecker();
+        checker.preprocessOntology(axioms);
+        // new tautologies do not change the structure
+        List<AxiomWrapper> toBuild = new ArrayList<AxiomWrapper>();
+        for (AxiomWrapper p : addedWrappers) {
+            if (isTautology(p)) {
+                tautologies.add(p);
+            } else {
+                toBuild.add(p);
             }
         }
-        // restore tautologies in the ontology
+        // remove the affected atoms; their axioms need a new atom
+        for (OntologyAtom atom : affected) {
+            atomList.remove(atom);
+            oldAtoms.add(atom);
+            for (AxiomWrapper p : atom.getAtomAxioms()) {
+                if (p.isUsed()) {
+                    p.setAtom(null);
+                    toBuild.add(p);
+                }
+            }
+        }
+        // build the new atoms, as in the parallel decomposition
+        for (AxiomWrapper p : tautologies) {
+            p.setUsed(false);
+        }
+        Modularizer m = new Modularizer(checker, sigIndex, axioms);
+        for (AxiomWrapper p : toBuild) {
+            m.extract(axioms, new Signature(p.getAxiom().getSignature()), type);
+            OntologyAtom atom = atomList.registerAxiom(p, m.getModule());
+            if (atom.getAtomAxioms().size() == 1) {
+                newAtoms.add(atom);
+            }
+        }
+        atomList.clearRegistry();
         restoreTautologies();
-        rootAtom = null;
-        // reduce graph
+        for (OntologyAtom atom : newAtoms) {
+            addModuleDependencies(atom);
+        }
         atomList.reduceGraph();
-        return atomList;
+        return true;
+    }
+
+    /** add to a set of atoms all the atoms depending on them
+     * 
+     * @param atoms
+     *            atoms to extend */
+    private void addDependents(Set<OntologyAtom> atoms) {
+        BitSet dependents = new BitSet();
+        for (OntologyAtom atom : atoms) {
+            dependents.or(atom.getAllDependents());
+        }
+        for (int i = dependents.nextSetBit(0); i >= 0; i = dependents.nextSetBit(i + 1)) {
+            atoms.add(atomList.get(i));
+        }
     }
 
     /** @param signature
@@ -202,4 +600,178 @@ public class Decomposer {
         modularizer.extract(axioms, Sig, moduletype);
         return modularizer.getModule();
     }
+
+    /** extract a module from the atomic structure: an axiom in a module
+     * brings in the principal ideal of its atom, so only the axioms in atoms
+     * which are not in the module yet have to be checked, and only when their
+     * signature intersects the module signature
+     * 
+     * @param signature
+     *            the signature to use
+     * @param moduletype
+     *            module type
+     * @return the module, or null if the atomic structure cannot be used for
+     *         the module type, i.e., there is no structure, or it is for a
+     *         different or STAR module type */
+    public Collection<AxiomWrapper> getModuleFromAtoms(Set<OWLEntity> signature,
+            ModuleType moduletype) {
+        if (atomList == null || moduletype != type || type == ModuleType.STAR) {
+            return null;
+        }
+        SigIndex index = modularizer.getSigIndex();
+        Interner interner = index.getInterner();
+        LocalityChecker checker = modularizer.getLocalityChecker();
+        Signature sig = new Signature(signature);
+        sig.setInterner(interner);
+        sig.setLocality(type == ModuleType.TOP);
+        checker.setSignatureValue(sig);
+        List<AxiomWrapper> module = new ArrayList<AxiomWrapper>();
+        BitSet inModule = new BitSet();
+        int[] queue = new int[interner.entityCount()];
+        int head = 0;
+        int tail = 0;
+        BitSet ids = sig.getIds();
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            queue[tail++] = id;
+        }
+        for (AxiomWrapper p : index.getNonLocal(sig.topCLocal())) {
+            tail = addIdeal(p, module, inModule, sig, queue, tail);
+        }
+        while (head < tail) {
+            int entity = queue[head++];
+            if (index.isFrozen()) {
+                // read the posting list without copying it
+                int[] postings = index.getPostings();
+                int end = index.getPostingsEnd(entity);
+                for (int i = index.getPostingsStart(entity); i < end; i++) {
+                    tail = addIfNonLocal(interner.getAxiom(postings[i]), checker,
+                            module, inModule, sig, queue, tail);
+                }
+            } else {
+                FastSet axiomIds = index.getAxioms(entity);
+                for (int i = 0; i < axiomIds.size(); i++) {
+                    tail = addIfNonLocal(interner.getAxiom(axiomIds.get(i)), checker,
+                            module, inModule, sig, queue, tail);
+                }
+            }
+        }
+        return module;
+    }
+
+    /** add the principal ideal of the atom of an axiom to a module, if the
+     * axiom is in an atom not in the module yet and is non-local
+     * 
+     * @return the new tail of the queue */
+    private int addIfNonLocal(AxiomWrapper p, LocalityChecker checker,
+            List<AxiomWrapper> module, BitSet inModule, Signature sig, int[] queue,
+            int tail) {
+        if (p.getAtom() != null && !inModule.get(p.getAtom().getId())
+                && !checker.local(p)) {
+            return addIdeal(p, module, inModule, sig, queue, tail);
+        }
+        return tail;
+    }
+
+    /** add the principal ideal of the atom of an axiom to a module
+     * 
+     * @param p
+     *            axiom in the module
+     * @param module
+     *            module axioms
+     * @param inModule
+     *            ids of the atoms in the module
+     * @param sig
+     *            module signature
+     * @param queue
+     *            queue of the entity ids to process
+     * @param tail
+     *            tail of the queue
+     * @return the new tail of the queue */
+    private int addIdeal(AxiomWrapper p, List<AxiomWrapper> module, BitSet inModule,
+            Signature sig, int[] queue, int tail) {
+        OntologyAtom atom = p.getAtom();
+        if (atom == null || inModule.get(atom.getId())) {
+            return tail;
+        }
+        BitSet ideal = new BitSet();
+        ideal.or(atom.getAllDepAtoms());
+        ideal.set(atom.getId());
+        ideal.andNot(inModule);
+        inModule.or(ideal);
+        for (int a = ideal.nextSetBit(0); a >= 0; a = ideal.nextSetBit(a + 1)) {
+            for (AxiomWrapper q : atomList.get(a).getAtomAxioms()) {
+                module.add(q);
+                for (int e : q.getSignatureIds()) {
+                    if (sig.add(e)) {
+                        queue[tail++] = e;
+                    }
+                }
+            }
+        }
+        return tail;
+    }
+
+    /** extract the modules for a batch of signatures. The signature index is
+     * shared by all the extractions; each worker thread uses its own locality
+     * checker and modularizer.
+     * 
+     * @param signatures
+     *            signatures to extract modules for
+     * @param moduletype
+     *            module type
+     * @param factory
+     *            factory for the locality checkers of the workers
+     * @param nThreads
+     *            number of worker threads; if less than 2, the modules are
+     *            extracted in the calling thread
+     * @param consumer
+     *            receiver for the modules; it is called from the worker
+     *            threads, and must be thread safe if nThreads is more than 1 */
+    public void getModules(final List<Set<OWLEntity>> signatures,
+            final ModuleType moduletype, final LocalityCheckerFactory factory,
+            int nThreads, final ModuleConsumer consumer) {
+        // the workers only read the index
+        modularizer.getSigIndex().freeze();
+        final AtomicInteger next = new AtomicInteger();
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                LocalityChecker c = factory.createChecker();
+                c.preprocessOntology(axioms);
+                Modularizer worker = new Modularizer(c, modularizer.getSigIndex(),
+                        axioms);
+                for (int index = next.getAndIncrement(); index < signatures.size(); index = next
+                        .getAndIncrement()) {
+                    Set<OWLEntity> signature = signatures.get(index);
+                    Signature sig = new Signature(signature);
+                    sig.setLocality(false);
+                    worker.extract(axioms, sig, moduletype);
+                    consumer.module(index, signature, new ArrayList<AxiomWrapper>(
+                            worker.getModule()));
+                }
+            }
+        };
+        if (nThreads < 2) {
+            task.run();
+            return;
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        List<Future<?>> workers = new ArrayList<Future<?>>();
+        for (int i = 0; i < nThreads; i++) {
+            workers.add(executor.submit(task));
+        }
+        executor.shutdown();
+        try {
+            for (Future<?> f : workers) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new OWLRuntimeException(e);
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            throw new OWLRuntimeException(e.getCause());
+        }
+    }
 }
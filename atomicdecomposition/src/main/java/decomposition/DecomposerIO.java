@@ -0,0 +1,311 @@
+package decomposition;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.semanticweb.owlapi.model.OWLAnonymousIndividual;
+import org.semanticweb.owlapi.model.OWLRuntimeException;
+import org.semanticweb.owlapi.util.SimpleRenderer;
+
+import uk.ac.manchester.cs.owl.owlapi.OWLDataFactoryImpl;
+import uk.ac.manchester.cs.owlapi.modularity.ModuleType;
+
+/** binary format for atomic decompositions. The file holds the module type, a
+ * content hash of the decomposed axioms, the atom of every axiom, the
+ * tautologies, the direct dependencies of every atom and the non-locality of
+ * every axiom wrt the empty signature; axioms are referred to by their
+ * position in the axiom list sorted by their rendering, so that the file does
+ * not depend on the order in which the axioms are loaded. Modules and the term
+ * based index are rebuilt from the atoms when reading, and the signature index
+ * is rebuilt without locality checks.
+ * <p>
+ * Anonymous individuals are rendered alike, since their node ids change from
+ * one load to the next. Axioms which differ only in their anonymous
+ * individuals cannot be told apart in the sorted list: such axiom sets are not
+ * saved, and never match a saved file. Reading a file renders, sorts and
+ * hashes all the axioms before the file contents are used; this is linear in
+ * the size of the ontology, but it is the main cost of reading a file. */
+public class DecomposerIO {
+    private static final int MAGIC = 0x4f574144;
+    private static final int VERSION = 3;
+    /** position of an axiom which is not in any atom */
+    private static final int NO_ATOM = -1;
+
+    private DecomposerIO() {}
+
+    /** renders all anonymous individuals with the same node id */
+    private static class CanonicalRenderer extends SimpleRenderer {
+        private final OWLAnonymousIndividual anonymous = new OWLDataFactoryImpl()
+                .getOWLAnonymousIndividual("anonymous");
+
+        @Override
+        public void visit(OWLAnonymousIndividual individual) {
+            super.visit(anonymous);
+        }
+    }
+
+    /** the axioms in canonical order, with the hash of their renderings */
+    private static class Canonical {
+        final List<AxiomWrapper> axioms = new ArrayList<AxiomWrapper>();
+        final byte[] hash;
+        /** false if two axioms have the same rendering, so that their order is
+         * arbitrary */
+        final boolean unique;
+
+        Canonical(List<AxiomWrapper> list) {
+            final String[] strings = new String[list.size()];
+            Integer[] order = new Integer[list.size()];
+            CanonicalRenderer renderer = new CanonicalRenderer();
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = renderer.render(list.get(i).getAxiom());
+                order[i] = i;
+            }
+            Arrays.sort(order, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer o1, Integer o2) {
+                    return strings[o1].compareTo(strings[o2]);
+                }
+            });
+            boolean noTies = true;
+            for (int i = 1; i < order.length && noTies; i++) {
+                noTies = !strings[order[i - 1]].equals(strings[order[i]]);
+            }
+            unique = noTies;
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-1");
+                for (Integer i : order) {
+                    axioms.add(list.get(i));
+                    digest.update(strings[i].getBytes("UTF-8"));
+                    digest.update((byte) '\n');
+                }
+                hash = digest.digest();
+            } catch (NoSuchAlgorithmException e) {
+                throw new OWLRuntimeException(e);
+            } catch (UnsupportedEncodingException e) {
+                throw new OWLRuntimeException(e);
+            }
+        }
+    }
+
+    /** @param axioms
+     *            axioms
+     * @return content hash of the axioms, independent of their order */
+    public static byte[] hash(List<AxiomWrapper> axioms) {
+        return new Canonical(axioms).hash;
+    }
+
+    /** the structure is written to a temporary file in the same directory,
+     * which is then renamed over the target, so that readers never see a
+     * partially written or truncated file
+     * 
+     * @param decomposer
+     *            decomposer whose atomic structure is to be saved
+     * @param file
+     *            file to write
+     * @throws IOException
+     *             if the file cannot be written, or the axioms cannot be put
+     *             in a canonical order */
+    public static void save(Decomposer decomposer, File file) throws IOException {
+        AtomList list = decomposer.getAOS();
+        if (list == null) {
+            throw new OWLRuntimeException("No atomic structure to save");
+        }
+        Canonical canonical = new Canonical(decomposer.getAxioms());
+        if (!canonical.unique) {
+            throw new IOException(
+                    "Axioms differing only in anonymous individuals cannot be saved");
+        }
+        // atoms are numbered without the holes left by removed atoms
+        int[] index = new int[list.size()];
+        int count = 0;
+        for (int i = 0; i < list.size(); i++) {
+            index[i] = list.get(i) == null ? NO_ATOM : count++;
+        }
+        // tautologies can be linked to stale atoms
+        Set<AxiomWrapper> tautologies = Collections
+                .newSetFromMap(new IdentityHashMap<AxiomWrapper, Boolean>());
+        tautologies.addAll(decomposer.getTautologies());
+        List<Integer> tautologyPositions = new ArrayList<Integer>();
+        File target = file.getAbsoluteFile();
+        File temp = File.createTempFile(target.getName(), ".tmp",
+                target.getParentFile());
+        boolean written = false;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(temp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(decomposer.getModuleType().ordinal());
+            out.writeInt(canonical.hash.length);
+            out.write(canonical.hash);
+            out.writeInt(canonical.axioms.size());
+            out.writeInt(count);
+            for (int i = 0; i < canonical.axioms.size(); i++) {
+                AxiomWrapper p = canonical.axioms.get(i);
+                if (tautologies.contains(p)) {
+                    tautologyPositions.add(i);
+                    out.writeInt(NO_ATOM);
+                } else if (p.getAtom() == null || list.get(p.getAtom().getId()) != p.getAtom()) {
+                    out.writeInt(NO_ATOM);
+                } else {
+                    out.writeInt(index[p.getAtom().getId()]);
+                }
+            }
+            out.writeInt(tautologyPositions.size());
+            for (int i : tautologyPositions) {
+                out.writeInt(i);
+            }
+            for (int i = 0; i < list.size(); i++) {
+                OntologyAtom atom = list.get(i);
+                if (atom != null) {
+                    out.writeInt(atom.getDependencies().size());
+                    for (OntologyAtom d : atom.getDependencies()) {
+                        out.writeInt(index[d.getId()]);
+                    }
+                }
+            }
+            SigIndex sigIndex = decomposer.getModularizer().getSigIndex();
+            for (AxiomWrapper p : canonical.axioms) {
+                out.writeByte(sigIndex.getFlags(p));
+            }
+            out.close();
+            written = true;
+        } finally {
+            if (!written) {
+                out.close();
+                temp.delete();
+            }
+        }
+        // rename does not replace an existing file on every platform
+        if (!temp.renameTo(target) && !(target.delete() && temp.renameTo(target))) {
+            temp.delete();
+            throw new IOException("Cannot rename " + temp + " to " + target);
+        }
+    }
+
+    /** read an atomic structure saved for the same axioms and module type
+     *
+     * @param axioms
+     *            axioms to decompose
+     * @param c
+     *            locality checker for the decomposer
+     * @param type
+     *            module type
+     * @param file
+     *            file to read
+     * @return a decomposer with the atomic structure read from the file, or
+     *         null if the file was saved for different axioms or a different
+     *         module type
+     * @throws IOException
+     *             if the file cannot be read, is not a valid decomposition
+     *             file or is truncated while mapped */
+    public static Decomposer load(List<AxiomWrapper> axioms, LocalityChecker c,
+            ModuleType type, File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            FileChannel channel = in.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+            return read(axioms, c, type, buffer);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated decomposition file " + file);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Corrupted decomposition file " + file);
+        } catch (NegativeArraySizeException e) {
+            throw new IOException("Corrupted decomposition file " + file);
+        } catch (InternalError e) {
+            // the mapped file has been truncated by another process
+            throw new IOException("Decomposition file changed while reading " + file);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static Decomposer read(List<AxiomWrapper> axioms, LocalityChecker c,
+            ModuleType type, ByteBuffer buffer) throws IOException {
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            throw new IOException("Not a decomposition file");
+        }
+        if (buffer.getInt() != type.ordinal()) {
+            return null;
+        }
+        byte[] hash = new byte[buffer.getInt()];
+        buffer.get(hash);
+        int axiomCount = buffer.getInt();
+        if (axiomCount != axioms.size()) {
+            return null;
+        }
+        Canonical canonical = new Canonical(axioms);
+        if (!canonical.unique || !Arrays.equals(hash, canonical.hash)) {
+            return null;
+        }
+        for (AxiomWrapper p : axioms) {
+            p.setAtom(null);
+        }
+        AtomList list = new AtomList();
+        int atomCount = buffer.getInt();
+        for (int i = 0; i < atomCount; i++) {
+            list.newAtom();
+        }
+        for (AxiomWrapper p : canonical.axioms) {
+            int atom = buffer.getInt();
+            if (atom != NO_ATOM) {
+                list.get(atom).addAxiom(p);
+            }
+        }
+        List<AxiomWrapper> tautologies = new ArrayList<AxiomWrapper>();
+        int tautologyCount = buffer.getInt();
+        for (int i = 0; i < tautologyCount; i++) {
+            tautologies.add(canonical.axioms.get(buffer.getInt()));
+        }
+        for (int i = 0; i < atomCount; i++) {
+            OntologyAtom atom = list.get(i);
+            int depCount = buffer.getInt();
+            for (int j = 0; j < depCount; j++) {
+                atom.addDepAtom(list.get(buffer.getInt()));
+            }
+        }
+        list.reduceGraph();
+        // the module of an atom is made of its axioms and the axioms of all
+        // the atoms it depends on
+        for (int i = 0; i < atomCount; i++) {
+            OntologyAtom atom = list.get(i);
+            List<AxiomWrapper> module = new ArrayList<AxiomWrapper>(atom.getAtomAxioms());
+            BitSet deps = atom.getAllDepAtoms();
+            for (int d = deps.nextSetBit(0); d >= 0; d = deps.nextSetBit(d + 1)) {
+                module.addAll(list.get(d).getAtomAxioms());
+            }
+            atom.setModule(module);
+        }
+        // non-locality flags, in the order of the axioms
+        IdentityHashMap<AxiomWrapper, Integer> positions = new IdentityHashMap<AxiomWrapper, Integer>();
+        for (int i = 0; i < axioms.size(); i++) {
+            positions.put(axioms.get(i), i);
+        }
+        byte[] flags = new byte[axioms.size()];
+        for (AxiomWrapper p : canonical.axioms) {
+            flags[positions.get(p)] = buffer.get();
+        }
+        Decomposer decomposer = new Decomposer(axioms, c, flags);
+        decomposer.setAOS(type, list, tautologies);
+        return decomposer;
+    }
+}
@@ -0,0 +1,13 @@
+package decomposition;
+
+import org.semanticweb.owlapi.model.OWLRuntimeException;
+
+/** thrown by a decomposition cancelled through its monitor */
+public class DecompositionCancelledException extends OWLRuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    /** default constructor */
+    public DecompositionCancelledException() {
+        super("Decomposition cancelled");
+    }
+}
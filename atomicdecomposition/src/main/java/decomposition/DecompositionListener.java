@@ -0,0 +1,25 @@
+package decomposition;
+
+/** receiver for the progress of an atomic decomposition; in parallel
+ * decompositions, progress is reported from the worker threads, so listeners
+ * must be thread safe. */
+public interface DecompositionListener {
+    /** @param phase
+     *            phase just started */
+    void phaseStarted(DecompositionPhase phase);
+
+    /** @param phase
+     *            phase just finished
+     * @param nanos
+     *            duration of the phase */
+    void phaseFinished(DecompositionPhase phase, long nanos);
+
+    /** called each time another 1% of the axioms has an atom, and when all
+     * the axioms have one
+     * 
+     * @param processed
+     *            number of axioms with an atom
+     * @param total
+     *            number of axioms to decompose */
+    void progress(int processed, int total);
+}
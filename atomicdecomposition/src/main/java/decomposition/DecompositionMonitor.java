@@ -0,0 +1,279 @@
+package decomposition;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.semanticweb.owlapi.model.OWLRuntimeException;
+
+/** statistics, progress and cancellation of the decompositions of a
+ * decomposer. Counters are reset when a decomposition starts; they can be
+ * read from any thread, and through JMX once the monitor is registered. A
+ * cancellation stops every decomposition until the monitor is reset. */
+public class DecompositionMonitor implements DecompositionMonitorMBean {
+    private final List<DecompositionListener> listeners = new CopyOnWriteArrayList<DecompositionListener>();
+    private volatile DecompositionPhase phase = null;
+    private volatile long phaseStart;
+    private final AtomicLongArray phaseNanos = new AtomicLongArray(
+            DecompositionPhase.values().length);
+    private volatile int axiomsTotal = 0;
+    /** number of axioms between two progress notifications */
+    private volatile int progressStep = 1;
+    private final AtomicInteger axiomsProcessed = new AtomicInteger();
+    private final AtomicInteger atomsCreated = new AtomicInteger();
+    private final AtomicLong modulesExtracted = new AtomicLong();
+    private final AtomicLong localityChecks = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private volatile boolean cancelled = false;
+    private ObjectName name = null;
+
+    /** @param l
+     *            listener to add */
+    public void addListener(DecompositionListener l) {
+        listeners.add(l);
+    }
+
+    /** @param l
+     *            listener to remove */
+    public void removeListener(DecompositionListener l) {
+        listeners.remove(l);
+    }
+
+    /** reset the counters for a new decomposition; a pending cancellation is
+     * kept */
+    void start() {
+        phase = null;
+        for (int i = 0; i < phaseNanos.length(); i++) {
+            phaseNanos.set(i, 0);
+        }
+        axiomsTotal = 0;
+        axiomsProcessed.set(0);
+        atomsCreated.set(0);
+        modulesExtracted.set(0);
+        localityChecks.set(0);
+        cacheHits.set(0);
+        cacheMisses.set(0);
+    }
+
+    /** @param total
+     *            number of axioms to decompose */
+    void setAxiomsTotal(int total) {
+        axiomsTotal = total;
+        progressStep = Math.max(1, (total + 99) / 100);
+    }
+
+    /** @param p
+     *            phase starting */
+    void phaseStarted(DecompositionPhase p) {
+        checkCancelled();
+        phase = p;
+        phaseStart = System.nanoTime();
+        for (DecompositionListener l : listeners) {
+            l.phaseStarted(p);
+        }
+    }
+
+    /** @param p
+     *            phase finished */
+    void phaseFinished(DecompositionPhase p) {
+        long nanos = System.nanoTime() - phaseStart;
+        phaseNanos.set(p.ordinal(), nanos);
+        phase = null;
+        for (DecompositionListener l : listeners) {
+            l.phaseFinished(p, nanos);
+        }
+    }
+
+    /** record axioms put in atoms, and stop if the decomposition has been
+     * cancelled. Listeners are only told when the count crosses a 1% step, or
+     * reaches the total; the count itself is exact.
+     * 
+     * @param n
+     *            number of axioms */
+    void axiomsProcessed(int n) {
+        int processed = axiomsProcessed.addAndGet(n);
+        int total = axiomsTotal;
+        int step = progressStep;
+        if ((processed - n) / step != processed / step || processed == total) {
+            for (DecompositionListener l : listeners) {
+                l.progress(processed, total);
+            }
+        }
+        checkCancelled();
+    }
+
+    /** record a new atom */
+    void atomCreated() {
+        atomsCreated.incrementAndGet();
+    }
+
+    /** @param modules
+     *            number of modules extracted
+     * @param checks
+     *            number of locality checks
+     * @param hits
+     *            number of checks answered from a cache
+     * @param misses
+     *            number of checks computed by a checker with a cache */
+    void modulesExtracted(long modules, long checks, long hits, long misses) {
+        modulesExtracted.addAndGet(modules);
+        localityChecks.addAndGet(checks);
+        cacheHits.addAndGet(hits);
+        cacheMisses.addAndGet(misses);
+    }
+
+    /** @throws DecompositionCancelledException
+     *             if the decomposition has been cancelled */
+    void checkCancelled() {
+        if (cancelled) {
+            throw new DecompositionCancelledException();
+        }
+    }
+
+    @Override
+    public void cancel() {
+        cancelled = true;
+    }
+
+    @Override
+    public void reset() {
+        cancelled = false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** @param p
+     *            phase
+     * @return duration of the last run of the phase, in nanoseconds; 0 if the
+     *         phase has not run since the decomposition started */
+    public long getPhaseNanos(DecompositionPhase p) {
+        return phaseNanos.get(p.ordinal());
+    }
+
+    private long millis(DecompositionPhase p) {
+        return TimeUnit.NANOSECONDS.toMillis(getPhaseNanos(p));
+    }
+
+    @Override
+    public String getPhase() {
+        DecompositionPhase p = phase;
+        return p == null ? null : p.toString();
+    }
+
+    @Override
+    public int getAxiomsTotal() {
+        return axiomsTotal;
+    }
+
+    @Override
+    public int getAxiomsProcessed() {
+        return axiomsProcessed.get();
+    }
+
+    @Override
+    public int getAtomsCreated() {
+        return atomsCreated.get();
+    }
+
+    @Override
+    public long getModulesExtracted() {
+        return modulesExtracted.get();
+    }
+
+    @Override
+    public long getLocalityChecks() {
+        return localityChecks.get();
+    }
+
+    @Override
+    public long getCacheHits() {
+        return cacheHits.get();
+    }
+
+    @Override
+    public long getCacheMisses() {
+        return cacheMisses.get();
+    }
+
+    @Override
+    public long getIndexMillis() {
+        return millis(DecompositionPhase.INDEX);
+    }
+
+    @Override
+    public long getTautologiesMillis() {
+        return millis(DecompositionPhase.TAUTOLOGIES);
+    }
+
+    @Override
+    public long getBottomAtomMillis() {
+        return millis(DecompositionPhase.BOTTOM_ATOM);
+    }
+
+    @Override
+    public long getAtomsMillis() {
+        return millis(DecompositionPhase.ATOMS);
+    }
+
+    @Override
+    public long getGraphMillis() {
+        return millis(DecompositionPhase.GRAPH);
+    }
+
+    @Override
+    public long getEstimatedRemainingMillis() {
+        int processed = axiomsProcessed.get();
+        if (phase != DecompositionPhase.ATOMS || processed == 0) {
+            return -1;
+        }
+        long elapsed = System.nanoTime() - phaseStart;
+        long remaining = elapsed / processed * Math.max(0, axiomsTotal - processed);
+        return TimeUnit.NANOSECONDS.toMillis(remaining);
+    }
+
+    /** register this monitor with the platform MBean server
+     * 
+     * @param id
+     *            name of the decomposition, used in the object name
+     * @return the object name of the monitor */
+    public synchronized ObjectName register(String id) {
+        unregister();
+        try {
+            ObjectName n = new ObjectName("decomposition:type=DecompositionMonitor,name="
+                    + ObjectName.quote(id));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, n);
+            name = n;
+            return n;
+        } catch (JMException e) {
+            throw new OWLRuntimeException(e);
+        }
+    }
+
+    /** unregister this monitor from the platform MBean server, if registered */
+    public synchronized void unregister() {
+        if (name == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+            name = null;
+        } catch (JMException e) {
+            throw new OWLRuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package decomposition;
+
+/** JMX view of a decomposition monitor */
+public interface DecompositionMonitorMBean {
+    /** @return the current phase, or null if no decomposition is running */
+    String getPhase();
+
+    /** @return number of axioms to decompose */
+    int getAxiomsTotal();
+
+    /** @return number of axioms with an atom */
+    int getAxiomsProcessed();
+
+    /** @return number of atoms created */
+    int getAtomsCreated();
+
+    /** @return number of modules extracted */
+    long getModulesExtracted();
+
+    /** @return number of locality checks */
+    long getLocalityChecks();
+
+    /** @return number of locality checks answered from the checker caches */
+    long getCacheHits();
+
+    /** @return number of locality checks computed by the checkers with a cache */
+    long getCacheMisses();
+
+    /** @return duration of the index phase, in milliseconds */
+    long getIndexMillis();
+
+    /** @return duration of the tautology removal, in milliseconds */
+    long getTautologiesMillis();
+
+    /** @return duration of the bottom atom construction, in milliseconds */
+    long getBottomAtomMillis();
+
+    /** @return duration of the atom construction, in milliseconds */
+    long getAtomsMillis();
+
+    /** @return duration of the graph construction, in milliseconds */
+    long getGraphMillis();
+
+    /** @return estimated time to the end of the atom construction, in
+     *         milliseconds; -1 if unknown */
+    long getEstimatedRemainingMillis();
+
+    /** @return true if the decomposition has been cancelled */
+    boolean isCancelled();
+
+    /** cancel the running decomposition, or the next one if none is running;
+     * the request holds until {@link #reset()} */
+    void cancel();
+
+    /** withdraw a cancellation request, so that the next decomposition can run */
+    void reset();
+}
@@ -0,0 +1,15 @@
+package decomposition;
+
+/** phases of an atomic decomposition */
+public enum DecompositionPhase {
+    /** preprocessing of the locality checker and of the signature index */
+    INDEX,
+    /** removal of the tautologies */
+    TAUTOLOGIES,
+    /** the atom for the empty signature */
+    BOTTOM_ATOM,
+    /** an atom for every axiom */
+    ATOMS,
+    /** dependencies between the atoms */
+    GRAPH
+}
@@ -0,0 +1,157 @@
+package decomposition;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLObject;
+
+/** locality checker combining a syntactic and a semantic checker. Syntactic
+ * locality implies semantic locality, so the semantic checker is only asked
+ * about the axioms which are not syntactically local; the modules are the
+ * semantic ones, while most of the checks are syntactic. Counts of the checks
+ * are kept per axiom type. */
+public class HybridLocalityChecker implements LocalityChecker {
+    /** counts for an axiom type */
+    private static class Counter {
+        int checks = 0;
+        int semanticChecks = 0;
+        int changed = 0;
+    }
+
+    private final LocalityChecker syntactic;
+    private final LocalityChecker semantic;
+    private final Map<AxiomType<?>, Counter> counters = new HashMap<AxiomType<?>, Counter>();
+
+    /** @param syntactic
+     *            syntactic checker, asked first
+     * @param semantic
+     *            semantic checker, asked if the syntactic checker finds an
+     *            axiom non-local */
+    public HybridLocalityChecker(LocalityChecker syntactic, LocalityChecker semantic) {
+        this.syntactic = syntactic;
+        this.semantic = semantic;
+    }
+
+    /** @param type
+     *            axiom type
+     * @return counter for the type */
+    private Counter counter(AxiomType<?> type) {
+        Counter c = counters.get(type);
+        if (c == null) {
+            c = new Counter();
+            counters.put(type, c);
+        }
+        return c;
+    }
+
+    /** @param axiom
+     *            axiom to count
+     * @param syntacticallyLocal
+     *            answer of the syntactic checker
+     * @return true if semantic checking is needed */
+    private boolean count(OWLAxiom axiom, boolean syntacticallyLocal) {
+        Counter c = counter(axiom.getAxiomType());
+        c.checks++;
+        if (syntacticallyLocal) {
+            return false;
+        }
+        c.semanticChecks++;
+        return true;
+    }
+
+    /** @param axiom
+     *            axiom checked semantically
+     * @param local
+     *            answer of the semantic checker
+     * @return the answer */
+    private boolean semanticAnswer(OWLAxiom axiom, boolean local) {
+        if (local) {
+            counter(axiom.getAxiomType()).changed++;
+        }
+        return local;
+    }
+
+    @Override
+    public boolean local(OWLAxiom axiom) {
+        if (!count(axiom, syntactic.local(axiom))) {
+            return true;
+        }
+        return semanticAnswer(axiom, semantic.local(axiom));
+    }
+
+    @Override
+    public boolean local(AxiomWrapper axiom) {
+        if (!count(axiom.getAxiom(), syntactic.local(axiom))) {
+            return true;
+        }
+        return semanticAnswer(axiom.getAxiom(), semantic.local(axiom));
+    }
+
+    @Override
+    public void preprocessOntology(Collection<AxiomWrapper> vec) {
+        syntactic.preprocessOntology(vec);
+        semantic.preprocessOntology(vec);
+    }
+
+    @Override
+    public void setSignatureValue(Signature sig) {
+        syntactic.setSignatureValue(sig);
+        semantic.setSignatureValue(sig);
+    }
+
+    @Override
+    public Signature getSignature() {
+        return syntactic.getSignature();
+    }
+
+    @Override
+    public boolean isTopEquivalent(OWLObject expr) {
+        return syntactic.isTopEquivalent(expr);
+    }
+
+    @Override
+    public boolean isBotEquivalent(OWLObject expr) {
+        return syntactic.isBotEquivalent(expr);
+    }
+
+    /** @return the axiom types checked so far */
+    public Set<AxiomType<?>> getCheckedTypes() {
+        return Collections.unmodifiableSet(counters.keySet());
+    }
+
+    /** @param type
+     *            axiom type
+     * @return number of checks for axioms of the type */
+    public int getChecks(AxiomType<?> type) {
+        Counter c = counters.get(type);
+        return c == null ? 0 : c.checks;
+    }
+
+    /** @param type
+     *            axiom type
+     * @return number of checks for axioms of the type that needed the semantic
+     *         checker */
+    public int getSemanticChecks(AxiomType<?> type) {
+        Counter c = counters.get(type);
+        return c == null ? 0 : c.semanticChecks;
+    }
+
+    /** @param type
+     *            axiom type
+     * @return number of checks for axioms of the type where the semantic
+     *         checker found local an axiom which is not syntactically local */
+    public int getChangedAnswers(AxiomType<?> type) {
+        Counter c = counters.get(type);
+        return c == null ? 0 : c.changed;
+    }
+
+    /** reset all the counters */
+    public void clearCounters() {
+        counters.clear();
+    }
+}
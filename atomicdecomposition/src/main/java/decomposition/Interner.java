@@ -0,0 +1,102 @@
+package decomposition;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.semanticweb.owlapi.model.OWLEntity;
+
+/** dense int ids for entities and axioms, so that module extraction can work
+ * on ints instead of hashing OWL objects. Ids are never reused. Registration
+ * is not thread safe; lookups can be made concurrently once all axioms are
+ * registered. An axiom keeps the ids of the last interner it was registered
+ * with, so a wrapper cannot be used by two live indexes at the same time.
+ * 
+ * @author ignazio */
+public class Interner {
+    /** entity ids */
+    private final Map<OWLEntity, Integer> entityIds = new HashMap<OWLEntity, Integer>();
+    /** entities by id */
+    private final List<OWLEntity> entities = new ArrayList<OWLEntity>();
+    /** axioms by id */
+    private final List<AxiomWrapper> axioms = new ArrayList<AxiomWrapper>();
+
+    /** @param e
+     *            entity
+     * @return id for e; a new id is created if e is not known */
+    public int intern(OWLEntity e) {
+        Integer id = entityIds.get(e);
+        if (id == null) {
+            id = entities.size();
+            entityIds.put(e, id);
+            entities.add(e);
+        }
+        return id;
+    }
+
+    /** give an id to the axiom and to the entities in its signature, unless
+     * the axiom has been registered with this interner already; ids given by
+     * another interner are replaced
+     * 
+     * @param ax
+     *            axiom */
+    public void register(AxiomWrapper ax) {
+        if (ax.getInterner() == this) {
+            return;
+        }
+        Set<OWLEntity> signature = ax.getAxiom().getSignature();
+        int[] ids = new int[signature.size()];
+        int i = 0;
+        for (OWLEntity e : signature) {
+            ids[i++] = intern(e);
+        }
+        ax.setSignatureIds(ids);
+        ax.setId(axioms.size());
+        ax.setInterner(this);
+        axioms.add(ax);
+    }
+
+    /** @param e
+     *            entity
+     * @return id for e, or -1 if e is not known */
+    public int getId(OWLEntity e) {
+        Integer id = entityIds.get(e);
+        if (id == null) {
+            return -1;
+        }
+        return id;
+    }
+
+    /** @param id
+     *            entity id
+     * @return entity with the id */
+    public OWLEntity getEntity(int id) {
+        return entities.get(id);
+    }
+
+    /** @param ax
+     *            axiom
+     * @return true if the axiom ids have been given by this interner */
+    public boolean isRegistered(AxiomWrapper ax) {
+        return ax.getInterner() == this;
+    }
+
+    /** @param id
+     *            axiom id
+     * @return axiom with the id */
+    public AxiomWrapper getAxiom(int id) {
+        return axioms.get(id);
+    }
+
+    /** @return number of entity ids */
+    public int entityCount() {
+        return entities.size();
+    }
+
+    /** @return number of axiom ids */
+    public int axiomCount() {
+        return axioms.size();
+    }
+}
@@ -12,6 +12,11 @@ public interface LocalityChecker {
      * @return true if axiom is local */
     boolean local(OWLAxiom axiom);
 
+    /** @param axiom
+     *            wrapped axiom to check
+     * @return true if axiom is local */
+    boolean local(AxiomWrapper axiom);
+
     /** allow the checker to preprocess an ontology if necessary
      *
      * @param vec
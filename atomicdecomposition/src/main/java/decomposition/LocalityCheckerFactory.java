@@ -0,0 +1,10 @@
+package decomposition;
+
+/** factory for locality checkers; parallel decompositions need one checker per
+ * worker thread, since checkers keep the current signature as state.
+ * 
+ * @author ignazio */
+public interface LocalityCheckerFactory {
+    /** @return a new locality checker */
+    LocalityChecker createChecker();
+}
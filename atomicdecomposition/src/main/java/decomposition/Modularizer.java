@@ -1,15 +1,15 @@
 package decomposition;
 
-import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
-import java.util.Queue;
 
 import org.semanticweb.owlapi.model.OWLAxiom;
-import org.semanticweb.owlapi.model.OWLEntity;
 
+import uk.ac.manchester.cs.chainsaw.FastSet;
 import uk.ac.manchester.cs.owlapi.modularity.ModuleType;
 
 /** class to create modules of an ontology wrt module type */
@@ -22,8 +22,55 @@ public class Modularizer {
     private List<AxiomWrapper> module = new ArrayList<AxiomWrapper>();
     /** pointer to a sig index; if not NULL then use optimized algo */
     private SigIndex sigIndex = null;
-    /** queue of unprocessed entities */
-    private Queue<OWLEntity> workQueue;
+    /** queue of ids of unprocessed entities; every entity is queued at most
+     * once per extraction, so the queue never wraps */
+    private int[] workQueue = new int[0];
+    /** position of the first unprocessed entity in the queue */
+    private int queueHead;
+    /** position after the last unprocessed entity in the queue */
+    private int queueTail;
+    /** all the axioms of the ontology; extracting from this list does not
+     * need the search space to be stamped */
+    private List<AxiomWrapper> ontology = null;
+    /** generation stamps of the axioms, indexed by axiom id. An axiom is in the
+     * module being built if its stamp is the current generation, and in the
+     * search space (and not in the module yet) if its stamp is the previous
+     * one; older stamps are stale, so nothing has to be reset between
+     * extractions or STAR rounds */
+    private int[] stamps = new int[0];
+    /** generation of the module being built */
+    private int generation = 0;
+    /** true if the search space is made of all the used axioms */
+    private boolean wholeOntology = false;
+    /** module of the previous STAR round */
+    private List<AxiomWrapper> previousModule = new ArrayList<AxiomWrapper>();
+    /** signature STAR rounds start from */
+    private final Signature starSeed = new Signature();
+    /** monitor to report the extractions to; null if none */
+    private DecompositionMonitor monitor = null;
+    /** locality checks since the last report */
+    private long checks = 0;
+    /** cache counters of the checker at the last report */
+    private long lastHits = 0;
+    private long lastMisses = 0;
+
+    /** @param ax
+     *            axiom
+     * @return true if ax is in the module being built */
+    private boolean isInModule(AxiomWrapper ax) {
+        return stamps[ax.getId()] == generation;
+    }
+
+    /** @param ax
+     *            axiom
+     * @return true if ax is in the current search space; only meaningful for
+     *         axioms which are not in the module */
+    private boolean isInSearchSpace(AxiomWrapper ax) {
+        if (wholeOntology) {
+            return ax.isUsed();
+        }
+        return stamps[ax.getId()] == generation - 1;
+    }
 
     /** update SIG wrt the axiom signature
      * 
@@ -31,9 +78,9 @@ public class Modularizer {
      *            axiom */
     private void addAxiomSig(AxiomWrapper axiom) {
         if (sigIndex != null) {
-            for (OWLEntity p : axiom.getAxiom().getSignature()) {
+            for (int p : axiom.getSignatureIds()) {
                 if (sig.add(p)) {
-                    workQueue.add(p);
+                    workQueue[queueTail++] = p;
                 }
             }
         }
@@ -44,7 +91,7 @@ public class Modularizer {
      * @param axiom
      *            axiom */
     private void addAxiomToModule(AxiomWrapper axiom) {
-        axiom.setInModule(true);
+        stamps[axiom.getId()] = generation;
         module.add(axiom);
         // update the signature
         addAxiomSig(axiom);
@@ -53,7 +100,8 @@ public class Modularizer {
     /** @param ax
      *            axiom
      * @return true iff an AXiom is non-local */
-    private boolean isNonLocal(OWLAxiom ax) {
+    private boolean isNonLocal(AxiomWrapper ax) {
+        checks++;
         return !checker.local(ax);
     }
 
@@ -62,7 +110,7 @@ public class Modularizer {
      * @param noCheck
      *            true if locality check is not to be performed */
     private void addNonLocal(AxiomWrapper ax, boolean noCheck) {
-        if (noCheck || isNonLocal(ax.getAxiom())) {
+        if (noCheck || isNonLocal(ax)) {
             addAxiomToModule(ax);
         }
     }
@@ -75,46 +123,95 @@ public class Modularizer {
      *            true if locality check is not to be performed */
     private void addNonLocal(Collection<AxiomWrapper> AxSet, boolean noCheck) {
         for (AxiomWrapper q : AxSet) {
-            if (!q.isInModule() && q.isInSearchSpace()) {
+            if (!isInModule(q) && isInSearchSpace(q)) {
                 this.addNonLocal(q, noCheck);
             }
         }
     }
 
+    /** add all the non-local axioms from given set of axiom ids
+     * 
+     * @param ids
+     *            ids of the axioms */
+    private void addNonLocal(FastSet ids) {
+        Interner interner = sigIndex.getInterner();
+        for (int i = 0; i < ids.size(); i++) {
+            AxiomWrapper q = interner.getAxiom(ids.get(i));
+            if (!isInModule(q) && isInSearchSpace(q)) {
+                this.addNonLocal(q, false);
+            }
+        }
+    }
+
+    /** add all the non-local axioms containing an entity; a frozen index is
+     * read without copying the posting list
+     * 
+     * @param entity
+     *            entity id */
+    private void addNonLocal(int entity) {
+        if (!sigIndex.isFrozen()) {
+            this.addNonLocal(sigIndex.getAxioms(entity));
+            return;
+        }
+        int[] postings = sigIndex.getPostings();
+        Interner interner = sigIndex.getInterner();
+        int end = sigIndex.getPostingsEnd(entity);
+        for (int i = sigIndex.getPostingsStart(entity); i < end; i++) {
+            AxiomWrapper q = interner.getAxiom(postings[i]);
+            if (!isInModule(q) && isInSearchSpace(q)) {
+                this.addNonLocal(q, false);
+            }
+        }
+    }
+
     /** build a module traversing axioms by a signature */
     private void extractModuleQueue() {
-        // init queue with a sig
-        workQueue.addAll(sig.getSignature());
+        // init queue with a sig; entities not in the index do not appear in
+        // any axiom
+        sig.setInterner(sigIndex.getInterner());
+        int nEntities = sigIndex.getInterner().entityCount();
+        if (workQueue.length < nEntities) {
+            workQueue = new int[nEntities];
+        }
+        queueHead = 0;
+        queueTail = 0;
+        BitSet ids = sig.getIds();
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            workQueue[queueTail++] = id;
+        }
         // add all the axioms that are non-local wrt given value of a
         // top-locality
         this.addNonLocal(sigIndex.getNonLocal(sig.topCLocal()), true);
         // main cycle
-        while (!workQueue.isEmpty()) {
+        while (queueHead < queueTail) {
             // for all the axioms that contains entity in their signature
-            Collection<AxiomWrapper> axioms = sigIndex.getAxioms(workQueue.poll());
-            this.addNonLocal(axioms, false);
+            this.addNonLocal(workQueue[queueHead++]);
         }
     }
 
-    /** extract module wrt presence of a sig index
+    /** extract module wrt presence of a sig index. Only the stamps of the
+     * search space are written, and only if the search space is not the whole
+     * ontology, so that small modules cost time proportional to their size
      * 
      * @param args
      *            axioms */
     private void extractModule(List<AxiomWrapper> args) {
         module.clear();
-        // clear the module flag in the input
-        final int size = args.size();
-        for (int i = 0; i < size; i++) {
-            AxiomWrapper p = args.get(i);
-            p.setInModule(false);
-            if (p.isUsed()) {
-                p.setInSearchSpace(true);
+        // a new generation for the search space, then one for the module;
+        // all the older stamps become stale
+        generation++;
+        wholeOntology = args == ontology;
+        if (!wholeOntology) {
+            final int size = args.size();
+            for (int i = 0; i < size; i++) {
+                AxiomWrapper p = args.get(i);
+                if (p.isUsed()) {
+                    stamps[p.getId()] = generation;
+                }
             }
         }
+        generation++;
         extractModuleQueue();
-        for (int i = 0; i < size; i++) {
-            args.get(i).setInSearchSpace(false);
-        }
     }
 
     /** @param c
@@ -125,15 +222,65 @@ public class Modularizer {
         sigIndex = new SigIndex(checker);
     }
 
+    /** modularizer sharing an already built signature index. Modularizers
+     * keep module membership in their own stamps and only read the
+     * AxiomWrapper used flags, so that several of them can extract modules
+     * from the same axioms concurrently.
+     * 
+     * @param c
+     *            the locality checker, already preprocessed; must not be used
+     *            by other threads
+     * @param index
+     *            preprocessed signature index to share
+     * @param axioms
+     *            all the axioms in the index */
+    Modularizer(LocalityChecker c, SigIndex index, List<AxiomWrapper> axioms) {
+        checker = c;
+        sig = c.getSignature();
+        sigIndex = index;
+        ontology = axioms;
+    }
+
     /** allow the checker to preprocess an ontology if necessary
      * 
      * @param axioms
      *            list of wrapped axioms */
     public void preprocessOntology(Collection<AxiomWrapper> axioms) {
+        ontology = axioms instanceof List ? (List<AxiomWrapper>) axioms : null;
         checker.preprocessOntology(axioms);
         sigIndex.clear();
         sigIndex.preprocessOntology(axioms);
-        workQueue = new ArrayDeque<OWLEntity>(axioms.size());
+    }
+
+    /** allow the checker to preprocess an ontology if necessary, restoring the
+     * signature index from saved non-locality flags
+     * 
+     * @param axioms
+     *            list of wrapped axioms
+     * @param flags
+     *            non-locality flags of the axioms, in the same order */
+    void preprocessOntology(List<AxiomWrapper> axioms, byte[] flags) {
+        ontology = axioms;
+        checker.preprocessOntology(axioms);
+        sigIndex.clear();
+        sigIndex.preprocessOntology(axioms, flags);
+    }
+
+    /** allow the checker to preprocess an ontology if necessary, building the
+     * signature index with several threads
+     * 
+     * @param axioms
+     *            list of wrapped axioms
+     * @param factory
+     *            factory for the locality checkers of the index workers
+     * @param nThreads
+     *            number of worker threads */
+    public void preprocessOntology(Collection<AxiomWrapper> axioms,
+            LocalityCheckerFactory factory, int nThreads) {
+        ontology = axioms instanceof List ? (List<AxiomWrapper>) axioms : null;
+        checker.preprocessOntology(axioms);
+        sigIndex.clear();
+        sigIndex.preprocessOntology(axioms, factory, nThreads);
     }
 
     /** @param ax
@@ -155,6 +302,11 @@ public class Modularizer {
         return checker.local(ax);
     }
 
+    /** @return the signature index */
+    SigIndex getSigIndex() {
+        return sigIndex;
+    }
+
     /** @return the Locality checker */
     public LocalityChecker getLocalityChecker() {
         return checker;
@@ -180,25 +332,84 @@ public class Modularizer {
      *            type */
     public void extract(List<AxiomWrapper> axioms, Signature signature, ModuleType type) {
         boolean topLocality = type == ModuleType.TOP;
+        if (type == ModuleType.STAR) {
+            starSeed.setTo(signature);
+        }
         sig = signature;
         checker.setSignatureValue(sig);
         sig.setLocality(topLocality);
+        prepareStamps();
         extractModule(axioms);
         if (type != ModuleType.STAR) {
+            report();
             return;
         }
-        // here there is a star: do the cycle until stabilization
+        // here there is a star: do the cycle until stabilization. Every round
+        // starts from the original signature and searches the module of the
+        // previous round only, i.e., the axioms stamped with the previous
+        // generation
+        wholeOntology = false;
         int size;
-        List<AxiomWrapper> oldModule = new ArrayList<AxiomWrapper>();
         do {
             size = module.size();
-            oldModule.clear();
-            oldModule.addAll(module);
+            List<AxiomWrapper> swap = previousModule;
+            previousModule = module;
+            module = swap;
+            module.clear();
+            generation++;
             topLocality = !topLocality;
-            sig = signature;
+            sig.setTo(starSeed);
             sig.setLocality(topLocality);
-            extractModule(oldModule);
+            extractModuleQueue();
         } while (size != module.size());
+        previousModule.clear();
+        report();
+    }
+
+    /** @param m
+     *            monitor to report the extractions to; null for none */
+    void setMonitor(DecompositionMonitor m) {
+        monitor = m;
+        checks = 0;
+        if (checker instanceof SyntacticLocalityChecker) {
+            lastHits = ((SyntacticLocalityChecker) checker).getCacheHits();
+            lastMisses = ((SyntacticLocalityChecker) checker).getCacheMisses();
+        }
+    }
+
+    /** report an extraction to the monitor */
+    private void report() {
+        if (monitor == null) {
+            return;
+        }
+        long hits = 0;
+        long misses = 0;
+        if (checker instanceof SyntacticLocalityChecker) {
+            SyntacticLocalityChecker c = (SyntacticLocalityChecker) checker;
+            hits = c.getCacheHits() - lastHits;
+            misses = c.getCacheMisses() - lastMisses;
+            lastHits = c.getCacheHits();
+            lastMisses = c.getCacheMisses();
+        }
+        monitor.modulesExtracted(1, checks, hits, misses);
+        checks = 0;
+    }
+
+    /** make room for all the axioms in the index in the stamps, and make sure
+     * that the generations of an extraction do not wrap */
+    private void prepareStamps() {
+        int nAxioms = sigIndex.getInterner().axiomCount();
+        if (stamps.length < nAxioms) {
+            int[] newStamps = new int[Math.max(nAxioms, stamps.length * 2)];
+            System.arraycopy(stamps, 0, newStamps, 0, stamps.length);
+            stamps = newStamps;
+        }
+        // an extraction uses one generation for the search space and one per
+        // STAR round, and every round but the last removes an axiom
+        if (generation > Integer.MAX_VALUE - stamps.length - 3) {
+            Arrays.fill(stamps, 0);
+            generation = 0;
+        }
     }
 
     /** @return the last computed module */
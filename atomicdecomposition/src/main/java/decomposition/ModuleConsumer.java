@@ -0,0 +1,18 @@
+package decomposition;
+
+import java.util.List;
+import java.util.Set;
+
+import org.semanticweb.owlapi.model.OWLEntity;
+
+/** receiver for the modules extracted in a batch; modules are passed as soon
+ * as they are extracted, in any order, possibly from several threads at once. */
+public interface ModuleConsumer {
+    /** @param index
+     *            position of the signature in the batch
+     * @param signature
+     *            signature the module was extracted for
+     * @param module
+     *            the module */
+    void module(int index, Set<OWLEntity> signature, List<AxiomWrapper> module);
+}
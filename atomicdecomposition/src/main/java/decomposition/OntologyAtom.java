@@ -1,9 +1,11 @@
 package decomposition;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -21,36 +23,54 @@ public class OntologyAtom {
     private List<AxiomWrapper> axioms = new ArrayList<AxiomWrapper>();
     /** set of axioms in the module (Atom's ideal) */
     private List<AxiomWrapper> module = new ArrayList<AxiomWrapper>();
-    /** set of atoms current one depends on */
+    /** set of atoms current one depends on; only direct dependencies after
+     * the graph is reduced */
     private Set<OntologyAtom> dependencies = new HashSet<OntologyAtom>();
-    /** set of all atoms current one depends on */
-    private Set<OntologyAtom> allDependencies = new HashSet<OntologyAtom>();
+    /** ids of all atoms current one depends on */
+    private final BitSet allDependencies = new BitSet();
+    /** ids of the atoms directly depending on current one */
+    private final BitSet dependents = new BitSet();
+    /** ids of all atoms depending on current one */
+    private final BitSet allDependents = new BitSet();
     /** unique atom's identifier */
     private int id = 0;
 
-    /** remove all atoms in AllDepAtoms from DepAtoms */
-    public void filterDep() {
-        for (OntologyAtom p : allDependencies) {
-            dependencies.remove(p);
+    /** build all dep atoms from the ones of the known dep atoms, which must
+     * have been built already; filter them from DepAtoms */
+    public void buildAllDepAtoms() {
+        // first gather all dep atoms from all known dep atoms
+        BitSet indirect = new BitSet();
+        for (OntologyAtom p : dependencies) {
+            indirect.or(p.allDependencies);
+        }
+        allDependencies.clear();
+        allDependencies.or(indirect);
+        // add direct deps to all deps and filter the others out from known
+        // dep atoms
+        for (Iterator<OntologyAtom> it = dependencies.iterator(); it.hasNext();) {
+            OntologyAtom p = it.next();
+            allDependencies.set(p.id);
+            if (indirect.get(p.id)) {
+                it.remove();
+            }
         }
     }
 
-    /** build all dep atoms; filter them from DepAtoms
-     * 
-     * @param checked
-     *            sets of atoms to check */
-    public void buildAllDepAtoms(Set<OntologyAtom> checked) {
-        // first gather all dep atoms from all known dep atoms
-        for (OntologyAtom p : dependencies) {
-            Set<OntologyAtom> Dep = p.getAllDepAtoms(checked);
-            allDependencies.addAll(Dep);
+    /** @param atom
+     *            atom depending on the current one
+     * @param direct
+     *            true if the dependency is direct */
+    void addDependent(OntologyAtom atom, boolean direct) {
+        allDependents.set(atom.id);
+        if (direct) {
+            dependents.set(atom.id);
         }
-        // now filter them out from known dep atoms
-        filterDep();
-        // add direct deps to all deps
-        allDependencies.addAll(dependencies);
-        // now the atom is checked
-        checked.add(this);
+    }
+
+    /** forget the dependent atoms */
+    void clearDependents() {
+        dependents.clear();
+        allDependents.clear();
     }
 
     // fill in the sets
@@ -85,18 +105,24 @@ public class OntologyAtom {
         }
     }
 
-    /** get all the atoms the current one depends on; build this set if necessary
-     * 
-     * @param checked
-     *            atoms to check
-     * @return all dependencies */
-    public Set<OntologyAtom> getAllDepAtoms(Set<OntologyAtom> checked) {
-        if (checked.contains(this)) {
-            buildAllDepAtoms(checked);
-        }
+    /** @return ids of all the atoms the current one depends on; the bitset
+     *         must not be modified */
+    public BitSet getAllDepAtoms() {
         return allDependencies;
     }
 
+    /** @return ids of the atoms directly depending on the current one; the
+     *         bitset must not be modified */
+    public BitSet getDependents() {
+        return dependents;
+    }
+
+    /** @return ids of all the atoms depending on the current one; the bitset
+     *         must not be modified */
+    public BitSet getAllDependents() {
+        return allDependents;
+    }
+
     // access to axioms
     /** @return all the atom's axioms */
     public List<AxiomWrapper> getAtomAxioms() {
@@ -108,7 +134,8 @@ public class OntologyAtom {
         return module;
     }
 
-    /** @return atoms a given one depends on */
+    /** @return atoms a given one depends on; after the graph is reduced, only
+     *         the direct dependencies */
     public Set<OntologyAtom> getDependencies() {
         return dependencies;
     }
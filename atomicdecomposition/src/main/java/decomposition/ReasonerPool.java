@@ -0,0 +1,66 @@
+package decomposition;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLRuntimeException;
+import org.semanticweb.owlapi.reasoner.InferenceType;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
+
+/** pool of reasoners built by the same factory for the same ontology;
+ * reasoners are not thread safe, so every concurrent query takes its own
+ * reasoner from the pool and gives it back when done. */
+public class ReasonerPool {
+    private final List<OWLReasoner> reasoners = new ArrayList<OWLReasoner>();
+    private final BlockingQueue<OWLReasoner> available;
+
+    /** @param factory
+     *            reasoner factory
+     * @param ontology
+     *            ontology for the reasoners
+     * @param size
+     *            number of reasoners; at least one reasoner is created */
+    public ReasonerPool(OWLReasonerFactory factory, OWLOntology ontology, int size) {
+        int n = Math.max(1, size);
+        available = new ArrayBlockingQueue<OWLReasoner>(n);
+        for (int i = 0; i < n; i++) {
+            OWLReasoner r = factory.createReasoner(ontology);
+            r.precomputeInferences(InferenceType.CLASS_HIERARCHY);
+            reasoners.add(r);
+            available.add(r);
+        }
+    }
+
+    /** @return a reasoner, waiting for one to be available; it must be given
+     *         back with release() */
+    public OWLReasoner take() {
+        try {
+            return available.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OWLRuntimeException(e);
+        }
+    }
+
+    /** @param r
+     *            reasoner taken from this pool */
+    public void release(OWLReasoner r) {
+        available.add(r);
+    }
+
+    /** @return number of reasoners in the pool */
+    public int size() {
+        return reasoners.size();
+    }
+
+    /** dispose all the reasoners */
+    public void dispose() {
+        for (OWLReasoner r : reasoners) {
+            r.dispose();
+        }
+    }
+}
@@ -5,6 +5,14 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.semanticweb.owlapi.model.OWLAnnotationAssertionAxiom;
 import org.semanticweb.owlapi.model.OWLAnnotationPropertyDomainAxiom;
@@ -56,7 +64,6 @@ import org.semanticweb.owlapi.model.OWLSubPropertyChainOfAxiom;
 import org.semanticweb.owlapi.model.OWLSymmetricObjectPropertyAxiom;
 import org.semanticweb.owlapi.model.OWLTransitiveObjectPropertyAxiom;
 import org.semanticweb.owlapi.model.SWRLRule;
-import org.semanticweb.owlapi.reasoner.InferenceType;
 import org.semanticweb.owlapi.reasoner.OWLReasoner;
 import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
 import org.semanticweb.owlapi.util.MultiMap;
@@ -65,12 +72,19 @@ import org.semanticweb.owlapi.util.MultiMap;
 public class SemanticLocalityChecker implements OWLAxiomVisitor,
         LocalityChecker {
 
-    /** Reasoner to detect the tautology */
-    OWLReasoner Kernel;
+    /** Reasoners to detect the tautology */
+    ReasonerPool Kernel;
     OWLDataFactory df;
     OWLReasonerFactory factory;
     /** map between axioms and concept expressions */
     MultiMap<OWLAxiom, OWLClassExpression> ExprMap = new MultiMap<OWLAxiom, OWLClassExpression>();
+    /** number of kernel reasoners */
+    private final int poolSize;
+    /** checker whose kernels and expressions are used; null if this checker
+     * builds its own */
+    private final SemanticLocalityChecker shared;
+    /** executor for batches of entailment checks; null until needed */
+    private ExecutorService executor = null;
 
     /**
      * @param axiom
@@ -108,10 +122,177 @@ public class SemanticLocalityChecker implements OWLAxiomVisitor,
      *        manager
      */
     public SemanticLocalityChecker(OWLReasonerFactory f, OWLOntologyManager m) {
+        this(f, m, 1);
+    }
+
+    /**
+     * @param f
+     *        reasoner factory
+     * @param m
+     *        manager
+     * @param poolSize
+     *        number of kernel reasoners; the pairwise checks of n-ary axioms
+     *        run in parallel if more than one
+     */
+    public SemanticLocalityChecker(OWLReasonerFactory f, OWLOntologyManager m,
+            int poolSize) {
         factory = f;
         manager = m;
         df = manager.getOWLDataFactory();
         isLocal = true;
+        this.poolSize = poolSize;
+        shared = null;
+    }
+
+    /**
+     * @param parent
+     *        checker whose kernels and expressions are used
+     */
+    private SemanticLocalityChecker(SemanticLocalityChecker parent) {
+        factory = parent.factory;
+        manager = parent.manager;
+        df = parent.df;
+        isLocal = true;
+        poolSize = parent.poolSize;
+        shared = parent;
+    }
+
+    /**
+     * @return factory for checkers sharing the kernel reasoners of this
+     *         checker, e.g., for parallel decompositions; such checkers can be
+     *         used concurrently, and rely on this checker to be preprocessed
+     */
+    public LocalityCheckerFactory getCheckerFactory() {
+        final SemanticLocalityChecker parent = this;
+        return new LocalityCheckerFactory() {
+            @Override
+            public LocalityChecker createChecker() {
+                return new SemanticLocalityChecker(parent);
+            }
+        };
+    }
+
+    /** @return the kernel reasoners */
+    private ReasonerPool kernels() {
+        return shared == null ? Kernel : shared.Kernel;
+    }
+
+    /** @return the expressions map */
+    private MultiMap<OWLAxiom, OWLClassExpression> exprs() {
+        return shared == null ? ExprMap : shared.ExprMap;
+    }
+
+    /**
+     * @param axiom
+     *        axiom
+     * @return true if the kernel entails the axiom
+     */
+    private boolean entailed(OWLAxiom axiom) {
+        ReasonerPool pool = kernels();
+        OWLReasoner r = pool.take();
+        try {
+            return r.isEntailed(axiom);
+        } finally {
+            pool.release(r);
+        }
+    }
+
+    /**
+     * @param e
+     *        class expression
+     * @return true if the expression is satisfiable wrt the kernel
+     */
+    private boolean satisfiable(OWLClassExpression e) {
+        ReasonerPool pool = kernels();
+        OWLReasoner r = pool.take();
+        try {
+            return r.isSatisfiable(e);
+        } finally {
+            pool.release(r);
+        }
+    }
+
+    /** @return the executor for batches of checks */
+    private synchronized ExecutorService getExecutor() {
+        if (shared != null) {
+            return shared.getExecutor();
+        }
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(poolSize, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "semantic-locality");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * check a batch of independent entailments; with more than one kernel,
+     * the checks are spread over the kernels, and stop at the first failure
+     * 
+     * @param axioms
+     *        axioms to check
+     * @return true if all the axioms are entailed
+     */
+    private boolean allEntailed(List<OWLAxiom> axioms) {
+        if (poolSize < 2 || axioms.size() < 2) {
+            for (OWLAxiom ax : axioms) {
+                if (!entailed(ax)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        CompletionService<Boolean> service = new ExecutorCompletionService<Boolean>(
+                getExecutor());
+        List<Future<Boolean>> tasks = new ArrayList<Future<Boolean>>();
+        for (final OWLAxiom ax : axioms) {
+            tasks.add(service.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return entailed(ax);
+                }
+            }));
+        }
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                if (!service.take().get()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OWLRuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new OWLRuntimeException(e.getCause());
+        } finally {
+            for (Future<Boolean> f : tasks) {
+                f.cancel(false);
+            }
+        }
+    }
+
+    /** dispose the kernel reasoners and stop the threads used for batches of
+     * checks; checkers sharing the kernels cannot be used afterwards */
+    public void dispose() {
+        if (shared != null) {
+            return;
+        }
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+        if (Kernel != null) {
+            Kernel.dispose();
+            Kernel = null;
+        }
     }
 
     @Override
@@ -120,9 +301,18 @@ public class SemanticLocalityChecker implements OWLAxiomVisitor,
         return isLocal;
     }
 
-    /* init kernel with the ontology signature */
+    @Override
+    public boolean local(AxiomWrapper axiom) {
+        return local(axiom.getAxiom());
+    }
+
+    /* init kernel with the ontology signature; checkers sharing the kernels of
+     * another checker do not need preprocessing */
     @Override
     public void preprocessOntology(Collection<AxiomWrapper> axioms) {
+        if (shared != null) {
+            return;
+        }
         ExprMap.clear();
         Signature s = new Signature();
         for (AxiomWrapper q : axioms) {
@@ -136,13 +326,15 @@ public class SemanticLocalityChecker implements OWLAxiomVisitor,
         for (OWLEntity p : s.getSignature()) {
             declarationAxioms.add(df.getOWLDeclarationAxiom(p));
         }
+        if (Kernel != null) {
+            Kernel.dispose();
+        }
         try {
-            Kernel = factory.createReasoner(manager
-                    .createOntology(declarationAxioms));
+            Kernel = new ReasonerPool(factory,
+                    manager.createOntology(declarationAxioms), poolSize);
         } catch (OWLOntologyCreationException e) {
             throw new OWLRuntimeException(e);
         }
-        Kernel.precomputeInferences(InferenceType.CLASS_HIERARCHY);
     }
 
     @Override
@@ -152,104 +344,91 @@ public class SemanticLocalityChecker implements OWLAxiomVisitor,
 
     @Override
     public void visit(OWLEquivalentClassesAxiom axiom) {
-        isLocal = false;
         List<OWLClassExpression> arguments = new ArrayList<OWLClassExpression>(
                 axiom.getClassExpressions());
         int size = arguments.size();
         OWLClassExpression C = arguments.get(0);
+        List<OWLAxiom> checks = new ArrayList<OWLAxiom>();
         for (int i = 1; i < size; i++) {
-            OWLClassExpression p = arguments.get(i);
-            if (!Kernel.isEntailed(df.getOWLEquivalentClassesAxiom(C, p))) {
-                return;
-            }
+            checks.add(df.getOWLEquivalentClassesAxiom(C, arguments.get(i)));
         }
-        isLocal = true;
+        isLocal = allEntailed(checks);
     }
 
     @Override
     public void visit(OWLDisjointClassesAxiom axiom) {
-        isLocal = false;
         List<OWLClassExpression> arguments = new ArrayList<OWLClassExpression>(
                 axiom.getClassExpressions());
+        isLocal = allEntailed(pairwiseDisjoint(arguments));
+    }
+
+    /**
+     * @param arguments
+     *        class expressions
+     * @return disjointness axioms for all pairs of arguments
+     */
+    private List<OWLAxiom> pairwiseDisjoint(List<OWLClassExpression> arguments) {
+        List<OWLAxiom> checks = new ArrayList<OWLAxiom>();
         int size = arguments.size();
         for (int i = 0; i < size; i++) {
-            OWLClassExpression p = arguments.get(i);
             for (int j = i + 1; j < size; j++) {
-                OWLClassExpression q = arguments.get(j);
-                if (!Kernel.isEntailed(df.getOWLDisjointClassesAxiom(p, q))) {
-                    return;
-                }
+                checks.add(df.getOWLDisjointClassesAxiom(arguments.get(i),
+                        arguments.get(j)));
             }
         }
-        isLocal = true;
+        return checks;
     }
 
     @Override
     public void visit(OWLDisjointUnionAxiom axiom) {
         isLocal = false;
         // check A = (or C1... Cn)
-        if (!Kernel.isEntailed(df.getOWLEquivalentClassesAxiom(
+        if (!entailed(df.getOWLEquivalentClassesAxiom(
                 axiom.getOWLClass(),
                 df.getOWLObjectIntersectionOf(axiom.getClassExpressions())))) {
             return;
         }
         // check disjoint(C1...Cn)
-        List<OWLClassExpression> arguments = new ArrayList<OWLClassExpression>(
-                axiom.getClassExpressions());
-        int size = arguments.size();
-        for (int i = 0; i < size; i++) {
-            for (int j = i + 1; j < size; j++) {
-                if (!Kernel.isEntailed(df.getOWLDisjointClassesAxiom(
-                        arguments.get(i), arguments.get(j)))) {
-                    return;
-                }
-            }
-        }
-        isLocal = true;
+        isLocal = allEntailed(pairwiseDisjoint(new ArrayList<OWLClassExpression>(
+                axiom.getClassExpressions())));
     }
 
     @Override
     public void visit(OWLEquivalentObjectPropertiesAxiom axiom) {
-        isLocal = false;
         List<OWLObjectPropertyExpression> arguments = new ArrayList<OWLObjectPropertyExpression>(
                 axiom.getProperties());
         int size = arguments.size();
         OWLObjectPropertyExpression R = arguments.get(0);
+        List<OWLAxiom> checks = new ArrayList<OWLAxiom>();
         for (int i = 1; i < size; i++) {
-            if (!(Kernel.isEntailed(df.getOWLSubObjectPropertyOfAxiom(R,
-                    arguments.get(i))) && Kernel.isEntailed(df
-                    .getOWLSubObjectPropertyOfAxiom(arguments.get(i), R)))) {
-                return;
-            }
+            checks.add(df.getOWLSubObjectPropertyOfAxiom(R, arguments.get(i)));
+            checks.add(df.getOWLSubObjectPropertyOfAxiom(arguments.get(i), R));
         }
-        isLocal = true;
+        isLocal = allEntailed(checks);
     }
 
     // tautology if all the subsumptions Ri [= Rj holds
     @Override
     public void visit(OWLEquivalentDataPropertiesAxiom axiom) {
-        isLocal = false;
         List<OWLDataPropertyExpression> arguments = new ArrayList<OWLDataPropertyExpression>(
                 axiom.getProperties());
         OWLDataPropertyExpression R = arguments.get(0);
+        List<OWLAxiom> checks = new ArrayList<OWLAxiom>();
         for (int i = 1; i < arguments.size(); i++) {
-            if (!(Kernel.isEntailed(df.getOWLSubDataPropertyOfAxiom(R,
-                    arguments.get(i))) && Kernel.isEntailed(df
-                    .getOWLSubDataPropertyOfAxiom(arguments.get(i), R)))) {
-                return;
-            }
+            checks.add(df.getOWLSubDataPropertyOfAxiom(R, arguments.get(i)));
+            checks.add(df.getOWLSubDataPropertyOfAxiom(arguments.get(i), R));
         }
-        isLocal = true;
+        isLocal = allEntailed(checks);
     }
 
     @Override
     public void visit(OWLDisjointObjectPropertiesAxiom axiom) {
-        isLocal = Kernel.isEntailed(axiom);
+        isLocal = entailed(axiom);
     }
 
     @Override
     public void visit(OWLDisjointDataPropertiesAxiom axiom) {
-        isLocal = Kernel.isEntailed(axiom);
+        isLocal = entailed(axiom);
     }
 
     // never local
@@ -267,134 +446,134 @@ public class SemanticLocalityChecker implements OWLAxiomVisitor,
     // R = inverse(S) is tautology iff R [= S- and S [= R-
     @Override
     public void visit(OWLInverseObjectPropertiesAxiom axiom) {
-        isLocal = Kernel.isEntailed(df.getOWLSubObjectPropertyOfAxiom(axiom
+        isLocal = entailed(df.getOWLSubObjectPropertyOfAxiom(axiom
                 .getFirstProperty(), axiom.getSecondProperty()
                 .getInverseProperty()))
-                && Kernel.isEntailed(df.getOWLSubObjectPropertyOfAxiom(axiom
+                && entailed(df.getOWLSubObjectPropertyOfAxiom(axiom
                         .getFirstProperty().getInverseProperty(), axiom
                         .getSecondProperty()));
     }
 
     @Override
     public void visit(OWLSubPropertyChainOfAxiom axiom) {
-        isLocal = Kernel.isEntailed(axiom);
+        isLocal = entailed(axiom);
     }
 
     @Override
     public void visit(OWLSubDataPropertyOfAxiom axiom) {
-        isLocal = Kernel.isEntailed(axiom);
+        isLocal = entailed(axiom);
     }
 
     @Override
     public void visit(OWLSubObjectPropertyOfAxiom axiom) {
-        isLocal = Kernel.isEntailed(axiom);
+        isLocal = entailed(axiom);
     }
 
     // Domain(R) = C is tautology iff ER.Top [= C
     @Override
     public void visit(OWLObjectPropertyDomainAxiom axiom) {
-        isLocal = true;
-        for (OWLClassExpression e : ExprMap.get(axiom)) {
-            isLocal &= Kernel.isEntailed(df.getOWLSubClassOfAxiom(e,
-                    axiom.getDomain()));
+        List<OWLAxiom> checks = new ArrayList<OWLAxiom>();
+        for (OWLClassExpression e : exprs().get(axiom)) {
+            checks.add(df.getOWLSubClassOfAxiom(e, axiom.getDomain()));
         }
+        isLocal = allEntailed(checks);
     }
 
     @Override
     public void visit(OWLDataPropertyDomainAxiom axiom) {
-        isLocal = true;
-        for (OWLClassExpression e : ExprMap.get(axiom)) {
-            isLocal &= Kernel.isEntailed(df.getOWLSubClassOfAxiom(e,
-                    axiom.getDomain()));
+        List<OWLAxiom> checks = new ArrayList<OWLAxiom>();
+        for (OWLClassExpression e : exprs().get(axiom)) {
+            checks.add(df.getOWLSubClassOfAxiom(e, axiom.getDomain()));
         }
+        isLocal = allEntailed(checks);
     }
 
     // Range(R) = C is tautology iff ER.~C is unsatisfiable
     @Override
     public void visit(OWLObjectPropertyRangeAxiom axiom) {
         isLocal = true;
-        for (OWLClassExpression e : ExprMap.get(axiom)) {
-            isLocal &= !Kernel.isSatisfiable(e);
+        for (OWLClassExpression e : exprs().get(axiom)) {
+            isLocal &= !satisfiable(e);
         }
     }
 
     @Override
     public void visit(OWLDataPropertyRangeAxiom axiom) {
         isLocal = true;
-        for (OWLClassExpression e : ExprMap.get(axiom)) {
-            isLocal &= !Kernel.isSatisfiable(e);
+        for (OWLClassExpression e : exprs().get(axiom)) {
+            isLocal &= !satisfiable(e);
         }
     }
 
     @Override
     public void visit(OWLTransitiveObjectPropertyAxiom axiom) {
-        isLocal = Kernel.isEntailed(axiom);
+        isLocal = entailed(axiom);
     }
 
     @Override
     public void visit(OWLReflexiveObjectPropertyAxiom axiom) {
-        isLocal = Kernel.isEntailed(axiom);
+        isLocal = entailed(axiom);
     }
 
     @Override
     public void visit(OWLIrreflexiveObjectPropertyAxiom axiom) {
-        isLocal = Kernel.isEntailed(axiom);
+        isLocal = entailed(axiom);
     }
 
     @Override
     public void visit(OWLSymmetricObjectPropertyAxiom axiom) {
-        isLocal = Kernel.isEntailed(axiom);
+        isLocal = entailed(axiom);
     }
 
     @Override
     public void visit(OWLAsymmetricObjectPropertyAxiom axiom) {
-        isLocal = Kernel.isEntailed(axiom);
+        isLocal = entailed(axiom);
     }
 
     @Override
     public void visit(OWLFunctionalObjectPropertyAxiom axiom) {
-        isLocal = Kernel.isEntailed(axiom);
+        isLocal = entailed(axiom);
     }
 
     @Override
     public void visit(OWLFunctionalDataPropertyAxiom axiom) {
-        isLocal = Kernel.isEntailed(axiom);
+        isLocal = entailed(axiom);
     }
 
     @Override
     public void visit(OWLInverseFunctionalObjectPropertyAxiom axiom) {
-        isLocal = Kernel.isEntailed(axiom);
+        isLocal = entailed(axiom);
     }
 
     @Override
     public void visit(OWLSubClassOfAxiom axiom) {
-        isLocal = Kernel.isEntailed(axiom);
+        isLocal = entailed(axiom);
     }
 
     // for top locality, this might be local
     @Override
     public void visit(OWLClassAssertionAxiom axiom) {
-        isLocal = Kernel.isEntailed(axiom);
+        isLocal = entailed(axiom);
     }
 
     @Override
     public void visit(OWLObjectPropertyAssertionAxiom axiom) {
-        isLocal = Kernel.isEntailed(axiom);
+        isLocal = entailed(axiom);
     }
 
     @Override
     public void visit(OWLNegativeObjectPropertyAssertionAxiom axiom) {
-        isLocal = Kernel.isEntailed(axiom);
+        isLocal = entailed(axiom);
     }
 
     @Override
     public void visit(OWLDataPropertyAssertionAxiom axiom) {
-        isLocal = Kernel.isEntailed(axiom);
+        isLocal = entailed(axiom);
     }
 
     @Override
     public void visit(OWLNegativeDataPropertyAssertionAxiom axiom) {
-        isLocal = Kernel.isEntailed(axiom);
+        isLocal = entailed(axiom);
     }
 
     @Override
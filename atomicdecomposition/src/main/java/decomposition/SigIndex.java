@@ -2,22 +2,49 @@ package decomposition;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.semanticweb.owlapi.model.OWLEntity;
-import org.semanticweb.owlapi.util.MultiMap;
+import org.semanticweb.owlapi.model.OWLRuntimeException;
+
+import uk.ac.manchester.cs.chainsaw.ArrayIntMap;
+import uk.ac.manchester.cs.chainsaw.FastSet;
+import uk.ac.manchester.cs.chainsaw.FastSetSimple;
 
 /** signature index
  * 
  * @author ignazio */
 public class SigIndex {
-    /** map between entities and axioms that contains them in their signature */
-    private MultiMap<OWLEntity, AxiomWrapper> Base = new MultiMap<OWLEntity, AxiomWrapper>();
+    /** number of axioms a worker checks at a time in parallel preprocessing */
+    private static final int block = 256;
+    /** non-locality flags for parallel preprocessing and saved indexes */
+    static final byte nonLocalBottom = 1;
+    static final byte nonLocalTop = 2;
+    /** flag of a saved axiom whose non-locality is not known */
+    static final byte nonLocalUnknown = 4;
+    /** map between entity ids and ids of axioms that contains them in their
+     * signature */
+    private ArrayIntMap Base = new ArrayIntMap();
+    /** frozen index, in compressed sparse row form: the ids of the axioms
+     * containing entity e are postings[offsets[e]] to postings[offsets[e + 1] -
+     * 1]. Both are null if the index is not frozen; Base is null if it is */
+    private int[] offsets = null;
+    private int[] postings = null;
+    /** ids for entities and axioms */
+    private final Interner interner = new Interner();
     /** locality checker */
     private LocalityChecker checker;
-    /** sets of axioms non-local wrt the empty signature */
-    private List<AxiomWrapper> NonLocalTrue = new ArrayList<AxiomWrapper>();
-    private List<AxiomWrapper> NonLocalFalse = new ArrayList<AxiomWrapper>();
+    /** sets of axioms non-local wrt the empty signature, in registration order;
+     * membership tests and removals take constant time */
+    private Set<AxiomWrapper> NonLocalTrue = new LinkedHashSet<AxiomWrapper>();
+    private Set<AxiomWrapper> NonLocalFalse = new LinkedHashSet<AxiomWrapper>();
     /** empty signature to test the non-locality */
     private Signature emptySig = new Signature();
     /** number of registered axioms */
@@ -59,8 +86,9 @@ public class SigIndex {
      * @param ax
      *            axiom */
     private void registerAx(AxiomWrapper ax) {
-        for (OWLEntity p : ax.getAxiom().getSignature()) {
-            Base.put(p, ax);
+        interner.register(ax);
+        for (int p : ax.getSignatureIds()) {
+            Base.put(p, ax.getId());
         }
         // check whether the axiom is non-local
         checkNonLocal(ax, false);
@@ -73,8 +101,11 @@ public class SigIndex {
      * @param ax
      *            axiom */
     private void unregisterAx(AxiomWrapper ax) {
-        for (OWLEntity p : ax.getAxiom().getSignature()) {
-            Base.remove(p, ax);
+        if (!interner.isRegistered(ax)) {
+            return;
+        }
+        for (int p : ax.getSignatureIds()) {
+            Base.get(p).remove(ax.getId());
         }
         // remove from the non-locality
         NonLocalFalse.remove(ax);
@@ -86,6 +117,7 @@ public class SigIndex {
      * @param ax
      *            the axiom to process */
     public void processAx(AxiomWrapper ax) {
+        thaw();
         if (ax.isUsed()) {
             registerAx(ax);
         } else {
@@ -103,9 +135,244 @@ public class SigIndex {
         }
     }
 
+    /** preprocess given set of axioms; the non-locality of the axioms wrt the
+     * empty signature, which needs two locality checks per axiom, is computed
+     * by worker threads with checkers of their own. Ids and posting lists are
+     * still built in the calling thread, since ids are given in axiom order
+     * and appending to the posting lists is cheap; the results are the same
+     * as the ones of the sequential preprocessing.
+     * 
+     * @param axioms
+     *            the axioms to process
+     * @param factory
+     *            factory for the locality checkers of the workers
+     * @param nThreads
+     *            number of worker threads; if less than 2, the axioms are
+     *            processed sequentially */
+    public void preprocessOntology(final Collection<AxiomWrapper> axioms,
+            final LocalityCheckerFactory factory, int nThreads) {
+        if (nThreads < 2) {
+            preprocessOntology(axioms);
+            return;
+        }
+        thaw();
+        final List<AxiomWrapper> toRegister = new ArrayList<AxiomWrapper>();
+        for (AxiomWrapper ax : axioms) {
+            if (ax.isUsed()) {
+                interner.register(ax);
+                for (int p : ax.getSignatureIds()) {
+                    Base.put(p, ax.getId());
+                }
+                toRegister.add(ax);
+            } else {
+                unregisterAx(ax);
+            }
+        }
+        // every worker writes the flags of its own blocks only
+        final byte[] flags = new byte[toRegister.size()];
+        final AtomicInteger next = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        List<Future<?>> workers = new ArrayList<Future<?>>();
+        for (int i = 0; i < nThreads; i++) {
+            workers.add(executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    LocalityChecker c = factory.createChecker();
+                    c.preprocessOntology(axioms);
+                    Signature empty = new Signature();
+                    for (int start = next.getAndAdd(block); start < flags.length; start = next
+                            .getAndAdd(block)) {
+                        int end = Math.min(start + block, flags.length);
+                        for (int index = start; index < end; index++) {
+                            flags[index] = nonLocality(c, empty,
+                                    toRegister.get(index));
+                        }
+                    }
+                }
+            }));
+        }
+        executor.shutdown();
+        try {
+            for (Future<?> f : workers) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new OWLRuntimeException(e);
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            throw new OWLRuntimeException(e.getCause());
+        }
+        // merge the flags in axiom order
+        for (int i = 0; i < flags.length; i++) {
+            if ((flags[i] & nonLocalBottom) != 0) {
+                NonLocalTrue.add(toRegister.get(i));
+            }
+            if ((flags[i] & nonLocalTop) != 0) {
+                NonLocalFalse.add(toRegister.get(i));
+            }
+            ++nRegistered;
+        }
+    }
+
+    /** rebuild the index from saved non-locality flags; no locality check is
+     * needed, except for the axioms whose flags are unknown
+     * 
+     * @param axioms
+     *            the axioms to process
+     * @param flags
+     *            non-locality flags of the axioms, in the same order */
+    void preprocessOntology(List<AxiomWrapper> axioms, byte[] flags) {
+        thaw();
+        for (int i = 0; i < flags.length; i++) {
+            AxiomWrapper ax = axioms.get(i);
+            if (!ax.isUsed()) {
+                unregisterAx(ax);
+            } else if ((flags[i] & nonLocalUnknown) != 0) {
+                registerAx(ax);
+            } else {
+                interner.register(ax);
+                for (int p : ax.getSignatureIds()) {
+                    Base.put(p, ax.getId());
+                }
+                if ((flags[i] & nonLocalBottom) != 0) {
+                    NonLocalTrue.add(ax);
+                }
+                if ((flags[i] & nonLocalTop) != 0) {
+                    NonLocalFalse.add(ax);
+                }
+                ++nRegistered;
+            }
+        }
+    }
+
+    /** @param ax
+     *            axiom
+     * @return the non-locality flags of the axiom, as saved; nonLocalUnknown if
+     *         the axiom is not in the index */
+    byte getFlags(AxiomWrapper ax) {
+        if (!interner.isRegistered(ax) || !ax.isUsed()) {
+            return nonLocalUnknown;
+        }
+        byte toReturn = 0;
+        if (NonLocalTrue.contains(ax)) {
+            toReturn |= nonLocalBottom;
+        }
+        if (NonLocalFalse.contains(ax)) {
+            toReturn |= nonLocalTop;
+        }
+        return toReturn;
+    }
+
+    /** @param c
+     *            locality checker
+     * @param empty
+     *            empty signature for the checker
+     * @param ax
+     *            axiom
+     * @return the non-locality flags of the axiom wrt the empty signature */
+    private static byte nonLocality(LocalityChecker c, Signature empty, AxiomWrapper ax) {
+        byte toReturn = 0;
+        empty.setLocality(false);
+        c.setSignatureValue(empty);
+        if (!c.local(ax.getAxiom())) {
+            toReturn |= nonLocalBottom;
+        }
+        empty.setLocality(true);
+        c.setSignatureValue(empty);
+        if (!c.local(ax.getAxiom())) {
+            toReturn |= nonLocalTop;
+        }
+        return toReturn;
+    }
+
+    /** turn the index into its compressed sparse row form: the posting lists
+     * of all entities are stored in a single int array, which takes a fraction
+     * of the memory of the per entity sets. A frozen index is never modified,
+     * so it can be read by several threads once it has been safely published
+     * to them (e.g., by submitting the tasks to an executor after freezing);
+     * processing an axiom or clearing the index makes it mutable again. */
+    public void freeze() {
+        if (offsets != null) {
+            return;
+        }
+        int nEntities = interner.entityCount();
+        int[] newOffsets = new int[nEntities + 1];
+        for (int e = 0; e < nEntities; e++) {
+            newOffsets[e + 1] = newOffsets[e] + Base.get(e).size();
+        }
+        int[] newPostings = new int[newOffsets[nEntities]];
+        for (int e = 0; e < nEntities; e++) {
+            FastSet axioms = Base.get(e);
+            for (int i = 0, start = newOffsets[e]; i < axioms.size(); i++) {
+                newPostings[start + i] = axioms.get(i);
+            }
+        }
+        offsets = newOffsets;
+        postings = newPostings;
+        Base = null;
+    }
+
+    /** make a frozen index mutable again */
+    private void thaw() {
+        if (offsets == null) {
+            return;
+        }
+        Base = new ArrayIntMap();
+        for (int e = 0; e + 1 < offsets.length; e++) {
+            for (int i = offsets[e]; i < offsets[e + 1]; i++) {
+                Base.put(e, postings[i]);
+            }
+        }
+        offsets = null;
+        postings = null;
+    }
+
+    /** @return true if the index is frozen */
+    public boolean isFrozen() {
+        return offsets != null;
+    }
+
+    /** @return the posting list offsets of a frozen index, null if the index is
+     *         not frozen; the array must not be modified */
+    public int[] getPostingOffsets() {
+        return offsets;
+    }
+
+    /** @return the posting lists of a frozen index, null if the index is not
+     *         frozen; the array must not be modified */
+    public int[] getPostings() {
+        return postings;
+    }
+
+    /** @param entity
+     *            the entity id
+     * @return position in {@link #getPostings()} of the first id of the axioms
+     *         referring the entity; the index must be frozen */
+    public int getPostingsStart(int entity) {
+        if (entity < 0 || entity + 1 >= offsets.length) {
+            return 0;
+        }
+        return offsets[entity];
+    }
+
+    /** @param entity
+     *            the entity id
+     * @return position in {@link #getPostings()} after the last id of the
+     *         axioms referring the entity; the index must be frozen */
+    public int getPostingsEnd(int entity) {
+        if (entity < 0 || entity + 1 >= offsets.length) {
+            return 0;
+        }
+        return offsets[entity + 1];
+    }
+
     /** clear internal structures */
     public void clear() {
-        Base.clear();
+        offsets = null;
+        postings = null;
+        Base = new ArrayIntMap();
         NonLocalFalse.clear();
         NonLocalTrue.clear();
     }
@@ -118,7 +385,44 @@ public class SigIndex {
      *            the entity
      * @return collection of axioms referring the entity */
     public Collection<AxiomWrapper> getAxioms(OWLEntity entity) {
-        return Base.get(entity);
+        List<AxiomWrapper> toReturn = new ArrayList<AxiomWrapper>();
+        int id = interner.getId(entity);
+        if (id < 0) {
+            return toReturn;
+        }
+        if (offsets != null) {
+            for (int i = getPostingsStart(id); i < getPostingsEnd(id); i++) {
+                toReturn.add(interner.getAxiom(postings[i]));
+            }
+            return toReturn;
+        }
+        FastSet axioms = Base.get(id);
+        for (int i = 0; i < axioms.size(); i++) {
+            toReturn.add(interner.getAxiom(axioms.get(i)));
+        }
+        return toReturn;
+    }
+
+    /** @param entity
+     *            the entity id
+     * @return ids of the axioms referring the entity; for a frozen index, this
+     *         is a copy of the posting list: hot paths should read
+     *         {@link #getPostings()} between {@link #getPostingsStart(int)} and
+     *         {@link #getPostingsEnd(int)} instead */
+    public FastSet getAxioms(int entity) {
+        if (offsets == null) {
+            return Base.get(entity);
+        }
+        FastSet toReturn = new FastSetSimple();
+        for (int i = getPostingsStart(entity); i < getPostingsEnd(entity); i++) {
+            toReturn.add(postings[i]);
+        }
+        return toReturn;
+    }
+
+    /** @return the interner for entity and axiom ids */
+    public Interner getInterner() {
+        return interner;
     }
 
     /** get the non-local axioms with top-locality value TOP
@@ -129,4 +433,13 @@ public class SigIndex {
     public Collection<AxiomWrapper> getNonLocal(boolean top) {
         return top ? NonLocalFalse : NonLocalTrue;
     }
+
+    /** @param ax
+     *            axiom
+     * @param top
+     *            true if top locality should be used
+     * @return true if ax is non-local wrt the empty signature */
+    public boolean isNonLocal(AxiomWrapper ax, boolean top) {
+        return getNonLocal(top).contains(ax);
+    }
 }
@@ -1,6 +1,7 @@
 package decomposition;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -8,9 +9,14 @@ import java.util.Set;
 
 import org.semanticweb.owlapi.model.OWLEntity;
 
-/** class to hold the signature of a module */
+/** class to hold the signature of a module. Entities known to the interner
+ * are kept as bits, the others as a set. */
 public class Signature {
-    /** set to keep all the elements in signature */
+    /** interner for entity ids; null if no interner is used */
+    private Interner interner = null;
+    /** ids of the interned elements in signature */
+    private final BitSet ids = new BitSet();
+    /** set to keep all the elements in signature that are not interned */
     private final Set<OWLEntity> set = new HashSet<OWLEntity>();
     /** true if concept TOP-locality; false if concept BOTTOM-locality */
     private boolean topCLocality = false;
@@ -26,17 +32,86 @@ public class Signature {
         addAll(sig);
     }
 
+    /** use an interner for the entity ids; the entities known to the interner
+     * are moved to the id set
+     *
+     * @param i
+     *            interner */
+    public void setInterner(Interner i) {
+        if (interner == i) {
+            return;
+        }
+        if (interner != null) {
+            for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                set.add(interner.getEntity(id));
+            }
+            ids.clear();
+        }
+        interner = i;
+        List<OWLEntity> elements = new ArrayList<OWLEntity>(set);
+        set.clear();
+        addAll(elements);
+    }
+
+    /** make this signature a copy of another one, reusing the storage of this
+     * signature
+     *
+     * @param s
+     *            signature to copy */
+    public void setTo(Signature s) {
+        if (s == this) {
+            return;
+        }
+        interner = s.interner;
+        ids.clear();
+        ids.or(s.ids);
+        set.clear();
+        set.addAll(s.set);
+        topCLocality = s.topCLocality;
+        topRLocality = s.topRLocality;
+    }
+
+    /** @return the interner for the entity ids; null if no interner is used */
+    public Interner getInterner() {
+        return interner;
+    }
+
+    /** @return true if the signature uses an interner */
+    public boolean isInterned() {
+        return interner != null;
+    }
+
     /** @param p
      *            entity to add to signature
      * @return true if p was not in the signature already */
     public boolean add(OWLEntity p) {
+        if (interner != null) {
+            int id = interner.getId(p);
+            if (id > -1) {
+                return add(id);
+            }
+        }
         return set.add(p);
     }
 
+    /** @param id
+     *            id of the entity to add to signature; the signature must use
+     *            an interner
+     * @return true if the entity was not in the signature already */
+    public boolean add(int id) {
+        if (ids.get(id)) {
+            return false;
+        }
+        ids.set(id);
+        return true;
+    }
+
     /** @param p
      *            all entities to add */
     public void addAll(Collection<OWLEntity> p) {
-        set.addAll(p);
+        for (OWLEntity e : p) {
+            add(e);
+        }
     }
 
     /** @param top
@@ -63,26 +138,52 @@ public class Signature {
             return true;
         }
         if (obj instanceof Signature) {
-            return set.equals(((Signature) obj).set);
+            return getSignature().equals(((Signature) obj).getSignature());
         }
         return false;
     }
 
     @Override
     public int hashCode() {
-        return set.hashCode();
+        return getSignature().hashCode();
     }
 
     /** @param p
      *            entity to find
      * @return true iff signature contains p */
     public boolean contains(OWLEntity p) {
+        if (interner != null) {
+            int id = interner.getId(p);
+            if (id > -1) {
+                return ids.get(id);
+            }
+        }
         return set.contains(p);
     }
 
+    /** @param id
+     *            entity id
+     * @return true iff signature contains the entity with the id */
+    public boolean contains(int id) {
+        return ids.get(id);
+    }
+
+    /** @return the ids of the interned entities; the bitset must not be
+     *         modified */
+    public BitSet getIds() {
+        return ids;
+    }
+
     /** @return the set of entities */
     public Set<OWLEntity> getSignature() {
-        return set;
+        if (ids.isEmpty()) {
+            return set;
+        }
+        Set<OWLEntity> toReturn = new HashSet<OWLEntity>(set);
+        for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            toReturn.add(interner.getEntity(id));
+        }
+        return toReturn;
     }
 
     /** @return true iff concepts are treated as TOPs */
@@ -100,8 +201,8 @@ public class Signature {
      * @return intersection */
     public List<OWLEntity> intersect(Signature s2) {
         List<OWLEntity> ret = new ArrayList<OWLEntity>();
-        Set<OWLEntity> s = new HashSet<OWLEntity>(set);
-        s.retainAll(s2.set);
+        Set<OWLEntity> s = new HashSet<OWLEntity>(getSignature());
+        s.retainAll(s2.getSignature());
         ret.addAll(s);
         return ret;
     }
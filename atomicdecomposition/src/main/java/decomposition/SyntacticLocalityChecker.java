@@ -1,6 +1,10 @@
 package decomposition;
 
-import java.util.*;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 import org.semanticweb.owlapi.expression.OWLExpressionParser;
 import org.semanticweb.owlapi.model.OWLAnnotationAssertionAxiom;
@@ -22,6 +26,7 @@ import org.semanticweb.owlapi.model.OWLDisjointClassesAxiom;
 import org.semanticweb.owlapi.model.OWLDisjointDataPropertiesAxiom;
 import org.semanticweb.owlapi.model.OWLDisjointObjectPropertiesAxiom;
 import org.semanticweb.owlapi.model.OWLDisjointUnionAxiom;
+import org.semanticweb.owlapi.model.OWLEntity;
 import org.semanticweb.owlapi.model.OWLEquivalentClassesAxiom;
 import org.semanticweb.owlapi.model.OWLEquivalentDataPropertiesAxiom;
 import org.semanticweb.owlapi.model.OWLEquivalentObjectPropertiesAxiom;
@@ -49,8 +54,12 @@ import org.semanticweb.owlapi.model.OWLSymmetricObjectPropertyAxiom;
 import org.semanticweb.owlapi.model.OWLTransitiveObjectPropertyAxiom;
 import org.semanticweb.owlapi.model.SWRLRule;
 
-/** syntactic locality checker for DL axioms */
+/** syntactic locality checker for DL axioms. Locality of an axiom only
+ * depends on which entities of the axiom signature are in the signature and on
+ * the locality polarity, so results are cached on these values. */
 public class SyntacticLocalityChecker implements OWLAxiomVisitor, LocalityChecker {
+    /** default number of cached locality results */
+    public static final int DEFAULT_CACHE_SIZE = 100000;
     private Signature sig = new Signature();
     /** top evaluator */
     TopEquivalenceEvaluator TopEval;
@@ -58,6 +67,118 @@ public class SyntacticLocalityChecker implements OWLAxiomVisitor, LocalityChecke
     BotEquivalenceEvaluator BotEval;
     /** remember the axiom locality value here */
     boolean isLocal;
+    /** cached locality results; null if caching is disabled */
+    private final Map<LocalityKey, Boolean> cache;
+    /** number of locality checks answered from the cache */
+    private long cacheHits = 0;
+    /** number of locality checks computed */
+    private long cacheMisses = 0;
+
+    /** key for a locality result: axiom, projection of the signature on the
+     * axiom signature, and polarity */
+    private static final class LocalityKey {
+        /** the axiom; null if the axiom id is used */
+        private final OWLAxiom axiom;
+        /** interned axiom id; -1 if the axiom is used */
+        private final int axiomId;
+        /** projection bits for axioms with up to 62 entities, with the
+         * polarity in the two top bits */
+        private long projection = 0;
+        /** projection and polarity for larger axioms; null otherwise */
+        private BitSet largeProjection = null;
+        private final int hashcode;
+
+        LocalityKey(OWLAxiom axiom, Signature sig) {
+            this.axiom = axiom;
+            axiomId = -1;
+            Set<OWLEntity> signature = axiom.getSignature();
+            init(signature.size());
+            int i = 0;
+            // the axiom signature iterates in a stable order for equal axioms
+            for (OWLEntity e : signature) {
+                if (sig.contains(e)) {
+                    set(i);
+                }
+                i++;
+            }
+            setPolarity(signature.size(), sig);
+            hashcode = axiom.hashCode() * 37 + projectionHash();
+        }
+
+        LocalityKey(AxiomWrapper axiom, Signature sig) {
+            this.axiom = null;
+            axiomId = axiom.getId();
+            int[] ids = axiom.getSignatureIds();
+            init(ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                if (sig.contains(ids[i])) {
+                    set(i);
+                }
+            }
+            setPolarity(ids.length, sig);
+            hashcode = axiomId * 37 + projectionHash();
+        }
+
+        private void init(int size) {
+            if (size > 62) {
+                largeProjection = new BitSet(size + 2);
+            }
+        }
+
+        private void set(int i) {
+            if (largeProjection == null) {
+                projection |= 1L << i;
+            } else {
+                largeProjection.set(i);
+            }
+        }
+
+        private void setPolarity(int size, Signature sig) {
+            if (largeProjection == null) {
+                if (sig.topCLocal()) {
+                    projection |= 1L << 62;
+                }
+                if (sig.topRLocal()) {
+                    projection |= 1L << 63;
+                }
+            } else {
+                largeProjection.set(size, sig.topCLocal());
+                largeProjection.set(size + 1, sig.topRLocal());
+            }
+        }
+
+        private int projectionHash() {
+            if (largeProjection == null) {
+                return (int) (projection ^ projection >>> 32);
+            }
+            return largeProjection.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashcode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof LocalityKey)) {
+                return false;
+            }
+            LocalityKey k = (LocalityKey) obj;
+            if (projection != k.projection || hashcode != k.hashcode
+                    || axiomId != k.axiomId) {
+                return false;
+            }
+            if (largeProjection == null ? k.largeProjection != null
+                    : !largeProjection.equals(k.largeProjection)) {
+                return false;
+            }
+            return axiom == null ? k.axiom == null : axiom.equals(k.axiom);
+        }
+    }
 
     /** @return true iff EXPR is top equivalent */
     @Override
@@ -75,8 +196,53 @@ public class SyntacticLocalityChecker implements OWLAxiomVisitor, LocalityChecke
 
     /** init c'tor */
     public SyntacticLocalityChecker() {
+        this(DEFAULT_CACHE_SIZE);
+    }
+
+    /** @param cacheSize
+     *            maximum number of cached locality results; 0 disables the
+     *            cache. The least recently used results are evicted first. */
+    public SyntacticLocalityChecker(final int cacheSize) {
         TopEval = new TopEquivalenceEvaluator(this);
         BotEval = new BotEquivalenceEvaluator(this);
+        if (cacheSize > 0) {
+            cache = new LinkedHashMap<LocalityKey, Boolean>(16, 0.75F, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<LocalityKey, Boolean> eldest) {
+                    return size() > cacheSize;
+                }
+            };
+        } else {
+            cache = null;
+        }
+    }
+
+    /** @return number of locality checks answered from the cache */
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    /** @return number of locality checks that were computed */
+    public long getCacheMisses() {
+        return cacheMisses;
+    }
+
+    /** @return fraction of locality checks answered from the cache */
+    public double getCacheHitRate() {
+        long total = cacheHits + cacheMisses;
+        if (total == 0) {
+            return 0;
+        }
+        return (double) cacheHits / total;
+    }
+
+    /** drop all cached locality results */
+    public void clearCache() {
+        if (cache != null) {
+            cache.clear();
+        }
     }
 
     @Override
@@ -94,7 +260,38 @@ public class SyntacticLocalityChecker implements OWLAxiomVisitor, LocalityChecke
     /** @return true iff an AXIOM is local wrt defined policy */
     @Override
     public boolean local(OWLAxiom axiom) {
+        if (cache == null) {
+            axiom.accept(this);
+            return isLocal;
+        }
+        return local(axiom, new LocalityKey(axiom, sig));
+    }
+
+    /** axioms interned with the signature interner use their ids for the
+     * cache key */
+    @Override
+    public boolean local(AxiomWrapper axiom) {
+        if (cache == null || axiom.getInterner() == null
+                || axiom.getInterner() != sig.getInterner()) {
+            return local(axiom.getAxiom());
+        }
+        return local(axiom.getAxiom(), new LocalityKey(axiom, sig));
+    }
+
+    /** @param axiom
+     *            axiom to check
+     * @param key
+     *            cache key for the axiom and the current signature
+     * @return true iff the axiom is local */
+    private boolean local(OWLAxiom axiom, LocalityKey key) {
+        Boolean cached = cache.get(key);
+        if (cached != null) {
+            cacheHits++;
+            return cached;
+        }
+        cacheMisses++;
         axiom.accept(this);
+        cache.put(key, isLocal);
         return isLocal;
     }
 
@@ -336,6 +533,8 @@ public class SyntacticLocalityChecker implements OWLAxiomVisitor, LocalityChecke
 
     @Override
     public void preprocessOntology(Collection<AxiomWrapper> s) {
+        // the axiom set has changed
+        clearCache();
         sig = new Signature();
         for (AxiomWrapper ax : s) {
             sig.addAll(ax.getAxiom().getSignature());
@@ -1,8 +1,9 @@
 package uk.ac.manchester.cs.atomicdecomposition;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 
 import org.semanticweb.owlapi.model.OWLAxiom;
 import org.semanticweb.owlapi.model.OWLEntity;
@@ -10,9 +11,13 @@ import org.semanticweb.owlapi.model.OWLEntity;
 /** An atom in the atomic decomposition */
 public class Atom {
     private final Collection<OWLAxiom> axioms;
-    private List<OWLEntity> signature;
+    private Set<OWLEntity> signature;
     private Collection<OWLEntity> label;
     private int hashcode;
+    /** cached principal ideal; null until computed */
+    Set<OWLAxiom> principalIdeal = null;
+    /** cached principal ideal signature; null until computed */
+    Set<OWLEntity> principalIdealSignature = null;
 
     /** @param ax
      *            axiom
@@ -23,10 +28,11 @@ public class Atom {
 
     private void initSignature() {
         if (signature == null) {
-            signature = new ArrayList<OWLEntity>();
+            Set<OWLEntity> set = new HashSet<OWLEntity>();
             for (OWLAxiom ax : axioms) {
-                signature.addAll(ax.getSignature());
+                set.addAll(ax.getSignature());
             }
+            signature = Collections.unmodifiableSet(set);
         }
     }
 
@@ -37,7 +43,7 @@ public class Atom {
         hashcode = this.axioms.hashCode();
     }
 
-    /** @return signature for the atom */
+    /** @return signature for the atom; the collection cannot be modified */
     public Collection<OWLEntity> getSignature() {
         initSignature();
         return signature;
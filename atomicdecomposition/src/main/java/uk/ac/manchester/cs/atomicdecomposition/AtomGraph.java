@@ -0,0 +1,387 @@
+package uk.ac.manchester.cs.atomicdecomposition;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import org.semanticweb.owlapi.model.OWLRuntimeException;
+
+import decomposition.AtomList;
+import decomposition.OntologyAtom;
+
+/** read only snapshot of the atom dependency graph. Direct dependencies and
+ * direct dependents are stored as adjacency arrays indexed by atom id; atoms
+ * are sorted by level, the length of the longest dependency path from the
+ * atom to a bottom atom, so that the levels are slices of a topological order
+ * and no query needs to build a set. The snapshot does not change when the
+ * decomposition is updated. */
+public class AtomGraph {
+    /** atoms by id; null for removed atoms */
+    private final Atom[] atoms;
+    private final Map<Atom, Integer> ids;
+    /** direct dependencies of atom i: out[outOffsets[i]] to
+     * out[outOffsets[i+1]-1] */
+    private final int[] outOffsets;
+    private final int[] out;
+    /** direct dependents of atom i: in[inOffsets[i]] to in[inOffsets[i+1]-1] */
+    private final int[] inOffsets;
+    private final int[] in;
+    /** ids of the atoms sorted by level */
+    private final int[] order;
+    /** atoms in level l: order[levelOffsets[l]] to
+     * order[levelOffsets[l+1]-1] */
+    private final int[] levelOffsets;
+    private final int[] top;
+    private final int[] bottom;
+
+    /** @param atoms
+     *            atoms by id; null for removed atoms
+     * @param list
+     *            decomposer structure with reduced dependencies */
+    AtomGraph(List<Atom> atoms, AtomList list) {
+        int n = list.size();
+        this.atoms = atoms.toArray(new Atom[n]);
+        ids = new HashMap<Atom, Integer>();
+        outOffsets = new int[n + 1];
+        inOffsets = new int[n + 1];
+        int size = 0;
+        for (int i = 0; i < n; i++) {
+            OntologyAtom a = list.get(i);
+            if (a != null) {
+                ids.put(this.atoms[i], i);
+                size++;
+                outOffsets[i + 1] = a.getDependencies().size();
+                inOffsets[i + 1] = a.getDependents().cardinality();
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            outOffsets[i + 1] += outOffsets[i];
+            inOffsets[i + 1] += inOffsets[i];
+        }
+        out = new int[outOffsets[n]];
+        in = new int[inOffsets[n]];
+        int nTop = 0;
+        int nBottom = 0;
+        for (int i = 0; i < n; i++) {
+            OntologyAtom a = list.get(i);
+            if (a == null) {
+                continue;
+            }
+            int index = outOffsets[i];
+            for (OntologyAtom d : a.getDependencies()) {
+                out[index++] = d.getId();
+            }
+            Arrays.sort(out, outOffsets[i], index);
+            index = inOffsets[i];
+            BitSet dependents = a.getDependents();
+            for (int j = dependents.nextSetBit(0); j >= 0; j = dependents
+                    .nextSetBit(j + 1)) {
+                in[index++] = j;
+            }
+            if (inOffsets[i] == inOffsets[i + 1]) {
+                nTop++;
+            }
+            if (outOffsets[i] == outOffsets[i + 1]) {
+                nBottom++;
+            }
+        }
+        top = new int[nTop];
+        bottom = new int[nBottom];
+        nTop = 0;
+        nBottom = 0;
+        for (int i = 0; i < n; i++) {
+            if (list.get(i) != null) {
+                if (inOffsets[i] == inOffsets[i + 1]) {
+                    top[nTop++] = i;
+                }
+                if (outOffsets[i] == outOffsets[i + 1]) {
+                    bottom[nBottom++] = i;
+                }
+            }
+        }
+        // levels in topological order, from the bottom atoms up
+        int[] level = new int[n];
+        int[] missing = new int[n];
+        int[] queue = new int[size];
+        int head = 0;
+        int tail = 0;
+        for (int i : bottom) {
+            queue[tail++] = i;
+        }
+        for (int i = 0; i < n; i++) {
+            missing[i] = outOffsets[i + 1] - outOffsets[i];
+        }
+        int maxLevel = -1;
+        while (head < tail) {
+            int a = queue[head++];
+            maxLevel = Math.max(maxLevel, level[a]);
+            for (int k = inOffsets[a]; k < inOffsets[a + 1]; k++) {
+                int d = in[k];
+                level[d] = Math.max(level[d], level[a] + 1);
+                if (--missing[d] == 0) {
+                    queue[tail++] = d;
+                }
+            }
+        }
+        if (tail < size) {
+            throw new OWLRuntimeException("Atom dependencies contain a cycle");
+        }
+        // counting sort by level; atoms in a level are sorted by id
+        levelOffsets = new int[maxLevel + 2];
+        for (int k = 0; k < size; k++) {
+            levelOffsets[level[queue[k]] + 1]++;
+        }
+        for (int l = 0; l <= maxLevel; l++) {
+            levelOffsets[l + 1] += levelOffsets[l];
+        }
+        order = new int[size];
+        int[] next = Arrays.copyOf(levelOffsets, levelOffsets.length);
+        for (int i = 0; i < n; i++) {
+            if (list.get(i) != null) {
+                order[next[level[i]]++] = i;
+            }
+        }
+    }
+
+    /** @param atom
+     *            atom
+     * @return id of the atom
+     * @throws OWLRuntimeException
+     *             if the atom is not in the graph */
+    public int getId(Atom atom) {
+        Integer id = ids.get(atom);
+        if (id == null) {
+            throw new OWLRuntimeException("Atom not in the decomposition: " + atom);
+        }
+        return id;
+    }
+
+    /** @param id
+     *            id
+     * @return atom with the id, or null if there is none */
+    public Atom getAtom(int id) {
+        if (id < 0 || id >= atoms.length) {
+            return null;
+        }
+        return atoms[id];
+    }
+
+    /** @return number of atoms */
+    public int size() {
+        return order.length;
+    }
+
+    /** @return number of direct dependencies */
+    public int getEdgeCount() {
+        return out.length;
+    }
+
+    /** @return number of levels; bottom atoms are in level 0 */
+    public int getLevelCount() {
+        return levelOffsets.length - 1;
+    }
+
+    /** @param atom
+     *            atom
+     * @return true if no atom depends on atom */
+    public boolean isTop(Atom atom) {
+        int id = getId(atom);
+        return inOffsets[id] == inOffsets[id + 1];
+    }
+
+    /** @param atom
+     *            atom
+     * @return true if atom depends on no atom */
+    public boolean isBottom(Atom atom) {
+        int id = getId(atom);
+        return outOffsets[id] == outOffsets[id + 1];
+    }
+
+    /** @return the top atoms; the list cannot be modified */
+    public List<Atom> getTopAtoms() {
+        return new Slice(top, 0, top.length);
+    }
+
+    /** @return the bottom atoms; the list cannot be modified */
+    public List<Atom> getBottomAtoms() {
+        return new Slice(bottom, 0, bottom.length);
+    }
+
+    /** @param atom
+     *            atom
+     * @return the atoms atom directly depends on; the list cannot be modified */
+    public List<Atom> getDirectDependencies(Atom atom) {
+        int id = getId(atom);
+        return new Slice(out, outOffsets[id], outOffsets[id + 1]);
+    }
+
+    /** @param atom
+     *            atom
+     * @return the atoms directly depending on atom; the list cannot be
+     *         modified */
+    public List<Atom> getDirectDependents(Atom atom) {
+        int id = getId(atom);
+        return new Slice(in, inOffsets[id], inOffsets[id + 1]);
+    }
+
+    /** @param level
+     *            level
+     * @return the atoms in the level; the list cannot be modified */
+    public List<Atom> getLevel(int level) {
+        return new Slice(order, levelOffsets[level], levelOffsets[level + 1]);
+    }
+
+    /** @return all atoms, each after the atoms it depends on */
+    public Iterator<Atom> topologicalOrder() {
+        return new Slice(order, 0, order.length).iterator();
+    }
+
+    /** @return the levels, from the bottom atoms up; every atom depends only on
+     *         atoms in lower levels */
+    public Iterator<List<Atom>> levels() {
+        return new Iterator<List<Atom>>() {
+            private int level = 0;
+
+            @Override
+            public boolean hasNext() {
+                return level < getLevelCount();
+            }
+
+            @Override
+            public List<Atom> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return getLevel(level++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /** breadth first visit of the atoms reachable from atom through at most
+     * depth direct dependencies or dependents; atoms are computed as the
+     * iterator advances
+     * 
+     * @param atom
+     *            atom to start from; it is the first atom returned
+     * @param depth
+     *            maximum number of edges from atom
+     * @return the atoms within depth edges of atom */
+    public Iterator<Atom> neighbourhood(Atom atom, final int depth) {
+        final int start = getId(atom);
+        return new Iterator<Atom>() {
+            private final BitSet visited = new BitSet();
+            private int[] queue = new int[] { start };
+            private int head = 0;
+            private int tail = 1;
+            /** end of the current distance in the queue */
+            private int levelEnd = 1;
+            private int distance = 0;
+            {
+                visited.set(start);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return head < tail;
+            }
+
+            @Override
+            public Atom next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                int a = queue[head++];
+                if (distance < depth) {
+                    enqueue(out, outOffsets[a], outOffsets[a + 1]);
+                    enqueue(in, inOffsets[a], inOffsets[a + 1]);
+                }
+                if (head == levelEnd) {
+                    distance++;
+                    levelEnd = tail;
+                }
+                return atoms[a];
+            }
+
+            private void enqueue(int[] edges, int from, int to) {
+                for (int k = from; k < to; k++) {
+                    int d = edges[k];
+                    if (!visited.get(d)) {
+                        visited.set(d);
+                        if (tail == queue.length) {
+                            queue = Arrays.copyOf(queue, tail * 2);
+                        }
+                        queue[tail++] = d;
+                    }
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /** write the graph as an edge list: a first line with the number of atoms
+     * and of edges, then one line per direct dependency with the id of the
+     * dependent atom and the id of the atom it depends on
+     * 
+     * @param writer
+     *            writer to use; it is not closed
+     * @throws IOException
+     *             if writing fails */
+    public void writeEdgeList(Writer writer) throws IOException {
+        StringBuilder b = new StringBuilder();
+        b.append(size()).append(' ').append(getEdgeCount()).append('\n');
+        for (int i = 0; i < atoms.length; i++) {
+            for (int k = outOffsets[i]; k < outOffsets[i + 1]; k++) {
+                b.append(i).append(' ').append(out[k]).append('\n');
+            }
+            if (b.length() > 8192) {
+                writer.write(b.toString());
+                b.setLength(0);
+            }
+        }
+        writer.write(b.toString());
+        writer.flush();
+    }
+
+    /** read only view over a range of atom ids */
+    private class Slice extends AbstractList<Atom> {
+        private final int[] ids;
+        private final int from;
+        private final int to;
+
+        Slice(int[] ids, int from, int to) {
+            this.ids = ids;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public Atom get(int index) {
+            if (index < 0 || index >= to - from) {
+                throw new IndexOutOfBoundsException("Index: " + index + " size: "
+                        + size());
+            }
+            return atoms[ids[from + index]];
+        }
+
+        @Override
+        public int size() {
+            return to - from;
+        }
+    }
+}
@@ -1,31 +1,47 @@
 package uk.ac.manchester.cs.atomicdecomposition;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.semanticweb.owlapi.model.OWLAxiom;
 import org.semanticweb.owlapi.model.OWLEntity;
 import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyChangeListener;
 import org.semanticweb.owlapi.util.MultiMap;
 
 import uk.ac.manchester.cs.chainsaw.FastSet;
 import uk.ac.manchester.cs.owlapi.modularity.ModuleType;
+import decomposition.AtomList;
 import decomposition.AxiomSelector;
 import decomposition.AxiomWrapper;
 import decomposition.Decomposer;
-import decomposition.IdentityMultiMap;
+import decomposition.DecomposerIO;
+import decomposition.LocalityChecker;
+import decomposition.LocalityCheckerFactory;
 import decomposition.OntologyAtom;
 import decomposition.SyntacticLocalityChecker;
 
-/** atomc decomposition implementation */
-public class AtomicDecomposerOWLAPITOOLS implements AtomicDecomposition {
+/** atomc decomposition implementation; it can be registered as an ontology
+ * change listener to keep the decomposition up to date */
+public class AtomicDecomposerOWLAPITOOLS implements AtomicDecomposition,
+        OWLOntologyChangeListener {
     Set<OWLAxiom> globalAxioms;
     Set<OWLAxiom> tautologies;
     final MultiMap<OWLEntity, Atom> termBasedIndex = new MultiMap<OWLEntity, Atom>() {
@@ -38,10 +54,22 @@ public class AtomicDecomposerOWLAPITOOLS implements AtomicDecomposition {
     };
     List<Atom> atoms;
     Map<Atom, Integer> atomIndex = new HashMap<Atom, Integer>();
-    IdentityMultiMap<Atom, Atom> dependents = new IdentityMultiMap<Atom, Atom>();
-    IdentityMultiMap<Atom, Atom> dependencies = new IdentityMultiMap<Atom, Atom>();
+    /** atom of every axiom in an atom */
+    final Map<OWLAxiom, Atom> axiomIndex = new HashMap<OWLAxiom, Atom>();
     Decomposer decomposer;
+    /** graph of the current atoms; null until requested after a change */
+    private AtomGraph graph = null;
     private final ModuleType type;
+    /** ontology whose changes are tracked; null if the decomposition was built
+     * from a list of axioms */
+    private OWLOntology ontology = null;
+    private final int nThreads;
+    private static final LocalityCheckerFactory syntacticCheckers = new LocalityCheckerFactory() {
+        @Override
+        public LocalityChecker createChecker() {
+            return new SyntacticLocalityChecker();
+        }
+    };
 
     Set<OWLAxiom> asSet(Collection<AxiomWrapper> c) {
         Set<OWLAxiom> toReturn = new HashSet<OWLAxiom>();
@@ -54,7 +82,7 @@ public class AtomicDecomposerOWLAPITOOLS implements AtomicDecomposition {
     /** @param o
      *            o */
     public AtomicDecomposerOWLAPITOOLS(OWLOntology o) {
-        this(AxiomSelector.selectAxioms(o), ModuleType.BOT);
+        this(o, ModuleType.BOT);
     }
 
     /** @param o
@@ -62,7 +90,66 @@ public class AtomicDecomposerOWLAPITOOLS implements AtomicDecomposition {
      * @param type
      *            type */
     public AtomicDecomposerOWLAPITOOLS(OWLOntology o, ModuleType type) {
-        this(AxiomSelector.selectAxioms(o), type);
+        this(o, type, 1);
+    }
+
+    /** @param o
+     *            o
+     * @param type
+     *            type
+     * @param nThreads
+     *            number of threads to use for the decomposition */
+    public AtomicDecomposerOWLAPITOOLS(OWLOntology o, ModuleType type, int nThreads) {
+        this(AxiomSelector.selectAxioms(o), type, nThreads);
+        ontology = o;
+    }
+
+    /** use a decomposition saved in a file if it was computed for the same
+     * axioms and module type; otherwise, compute the decomposition and save it
+     * to the file
+     * 
+     * @param o
+     *            o
+     * @param type
+     *            type
+     * @param nThreads
+     *            number of threads to use for the decomposition
+     * @param cache
+     *            file holding the saved decomposition; if it cannot be
+     *            written, a warning is logged */
+    public AtomicDecomposerOWLAPITOOLS(OWLOntology o, ModuleType type, int nThreads,
+            File cache) {
+        this.type = type;
+        this.nThreads = nThreads;
+        ontology = o;
+        List<OWLAxiom> axioms = AxiomSelector.selectAxioms(o);
+        if (cache.exists()) {
+            try {
+                decomposer = DecomposerIO.load(AxiomSelector.wrap(axioms),
+                        new SyntacticLocalityChecker(), type, cache);
+            } catch (IOException e) {
+                // unreadable file: the decomposition is computed again
+                decomposer = null;
+            } catch (RuntimeException e) {
+                // a file with inconsistent contents is a cache miss as well
+                Logger.getLogger(AtomicDecomposerOWLAPITOOLS.class.getName()).log(
+                        Level.WARNING, "Cannot read the decomposition from " + cache, e);
+                decomposer = null;
+            }
+        }
+        if (decomposer == null) {
+            decomposer = new Decomposer(AxiomSelector.wrap(axioms),
+                    new SyntacticLocalityChecker());
+            decomposer.getAOS(this.type, syntacticCheckers, nThreads);
+            try {
+                DecomposerIO.save(decomposer, cache);
+            } catch (IOException e) {
+                // the decomposition is still usable without the cache
+                Logger.getLogger(AtomicDecomposerOWLAPITOOLS.class.getName()).log(
+                        Level.WARNING, "Cannot save the decomposition to " + cache, e);
+            }
+        }
+        loadAtoms();
     }
 
     /** @param axioms
@@ -70,27 +157,177 @@ public class AtomicDecomposerOWLAPITOOLS implements AtomicDecomposition {
      * @param type
      *            type */
     public AtomicDecomposerOWLAPITOOLS(List<OWLAxiom> axioms, ModuleType type) {
+        this(axioms, type, 1);
+    }
+
+    /** @param axioms
+     *            axioms
+     * @param type
+     *            type
+     * @param nThreads
+     *            number of threads to use for the decomposition */
+    public AtomicDecomposerOWLAPITOOLS(List<OWLAxiom> axioms, ModuleType type,
+            int nThreads) {
         this.type = type;
+        this.nThreads = nThreads;
         decomposer = new Decomposer(AxiomSelector.wrap(axioms),
                 new SyntacticLocalityChecker());
-        int size = decomposer.getAOS(this.type).size();
+        decomposer.getAOS(this.type, syntacticCheckers, nThreads);
+        loadAtoms();
+    }
+
+    /** build the atoms and indexes from the decomposer structure */
+    private void loadAtoms() {
+        graph = null;
         atoms = new ArrayList<Atom>();
-        for (int i = 0; i < size; i++) {
-            final Atom atom = new Atom(asSet(decomposer.getAOS().get(i).getAtomAxioms()));
-            atoms.add(atom);
-            atomIndex.put(atom, i);
-            for (OWLEntity e : atom.getSignature()) {
-                termBasedIndex.put(e, atom);
+        atomIndex.clear();
+        axiomIndex.clear();
+        termBasedIndex.clear();
+        AtomList list = decomposer.getAOS();
+        for (int i = 0; i < list.size(); i++) {
+            addAtom(list.get(i));
+        }
+    }
+
+    /** @param a
+     *            atom in the decomposer structure to add; can be null */
+    private void addAtom(OntologyAtom a) {
+        if (a == null) {
+            return;
+        }
+        final Atom atom = new Atom(asSet(a.getAtomAxioms()));
+        while (atoms.size() <= a.getId()) {
+            atoms.add(null);
+        }
+        atoms.set(a.getId(), atom);
+        atomIndex.put(atom, a.getId());
+        for (OWLAxiom ax : atom.getAxioms()) {
+            axiomIndex.put(ax, atom);
+        }
+        for (OWLEntity e : atom.getSignature()) {
+            termBasedIndex.put(e, atom);
+        }
+    }
+
+    /** @param a
+     *            atom in the decomposer structure to remove */
+    private void removeAtom(OntologyAtom a) {
+        Atom atom = atoms.get(a.getId());
+        atoms.set(a.getId(), null);
+        atomIndex.remove(atom);
+        for (OWLAxiom ax : atom.getAxioms()) {
+            if (axiomIndex.get(ax) == atom) {
+                axiomIndex.remove(ax);
             }
         }
-        for (int i = 0; i < size; i++) {
-            Set<OntologyAtom> dependentIndexes = decomposer.getAOS().get(i)
-                    .getDependencies();
-            for (OntologyAtom j : dependentIndexes) {
-                dependencies.put(atoms.get(i), atoms.get(j.getId()));
-                dependents.put(atoms.get(j.getId()), atoms.get(i));
+        for (OWLEntity e : atom.getSignature()) {
+            termBasedIndex.remove(e, atom);
+        }
+    }
+
+    /** update the decomposition with axiom changes. Only the atoms affected by
+     * the change are rebuilt; changes to the imports closure cause a full
+     * rebuild. If the decomposition was built from an ontology, changes to
+     * ontologies outside its imports closure are ignored; removed axioms which
+     * are still in the imports closure are ignored. */
+    @Override
+    public void ontologiesChanged(List<? extends OWLOntologyChange> changes) {
+        Set<OWLAxiom> added = new HashSet<OWLAxiom>();
+        Set<OWLAxiom> removed = new HashSet<OWLAxiom>();
+        Set<OWLOntology> closure = ontology == null ? null : ontology
+                .getImportsClosure();
+        boolean importsChanged = false;
+        for (OWLOntologyChange change : changes) {
+            if (closure != null && !closure.contains(change.getOntology())) {
+                continue;
+            }
+            if (change.isImportChange()) {
+                importsChanged = true;
+            } else if (change.isAxiomChange()
+                    && AxiomSelector.isSelected(change.getAxiom().getAxiomType())) {
+                OWLAxiom ax = change.getAxiom();
+                if (change.isAddAxiom()) {
+                    if (!removed.remove(ax)) {
+                        added.add(ax);
+                    }
+                } else if (!added.remove(ax)) {
+                    removed.add(ax);
+                }
             }
         }
+        if (importsChanged && ontology != null) {
+            decomposer = new Decomposer(AxiomSelector.wrap(AxiomSelector
+                    .selectAxioms(ontology)), new SyntacticLocalityChecker());
+            decomposer.getAOS(type, syntacticCheckers, nThreads);
+            loadAtoms();
+            return;
+        }
+        if (ontology != null) {
+            for (Iterator<OWLAxiom> it = removed.iterator(); it.hasNext();) {
+                if (ontology.containsAxiom(it.next(), true)) {
+                    it.remove();
+                }
+            }
+        }
+        List<OntologyAtom> oldAtoms = new ArrayList<OntologyAtom>();
+        List<OntologyAtom> newAtoms = new ArrayList<OntologyAtom>();
+        if (!decomposer.updateAOS(added, removed, oldAtoms, newAtoms)) {
+            loadAtoms();
+            return;
+        }
+        graph = null;
+        for (OntologyAtom a : oldAtoms) {
+            removeAtom(a);
+        }
+        for (OntologyAtom a : newAtoms) {
+            addAtom(a);
+        }
+    }
+
+    /** save the decomposition; it can be read back with
+     * {@link #AtomicDecomposerOWLAPITOOLS(OWLOntology, ModuleType, int, File)}
+     * 
+     * @param file
+     *            file to write
+     * @throws IOException
+     *             if the file cannot be written */
+    public void save(File file) throws IOException {
+        DecomposerIO.save(decomposer, file);
+    }
+
+    /** write the atom dependencies as an edge list; atoms are identified by
+     * their id in {@link #getGraph()}
+     * 
+     * @param writer
+     *            writer to use; it is not closed
+     * @throws IOException
+     *             if writing fails */
+    public void writeEdgeList(Writer writer) throws IOException {
+        getGraph().writeEdgeList(writer);
+    }
+
+    /** @return the graph of the atoms; it is built on the first call after a
+     *         change, and it is not updated by later changes */
+    public AtomGraph getGraph() {
+        if (graph == null) {
+            graph = new AtomGraph(atoms, decomposer.getAOS());
+        }
+        return graph;
+    }
+
+    @Override
+    public Iterator<Atom> topologicalOrder() {
+        return getGraph().topologicalOrder();
+    }
+
+    @Override
+    public Iterator<List<Atom>> levels() {
+        return getGraph().levels();
+    }
+
+    @Override
+    public Iterator<Atom> neighbourhood(Atom atom, int depth) {
+        return getGraph().neighbourhood(atom, depth);
     }
 
     int getModuleType() {
@@ -99,38 +336,133 @@ public class AtomicDecomposerOWLAPITOOLS implements AtomicDecomposition {
 
     @Override
     public Set<Atom> getAtoms() {
-        return new HashSet<Atom>(atoms);
+        Set<Atom> toReturn = new HashSet<Atom>(atoms);
+        toReturn.remove(null);
+        return toReturn;
     }
 
     @Override
     public Atom getAtomForAxiom(OWLAxiom axiom) {
-        for (int i = 0; i < atoms.size(); i++) {
-            if (atoms.get(i).contains(axiom)) {
-                return atoms.get(i);
+        return axiomIndex.get(axiom);
+    }
+
+    @Override
+    public Map<OWLAxiom, Atom> getAtomsForAxioms(Collection<OWLAxiom> axioms) {
+        Map<OWLAxiom, Atom> toReturn = new HashMap<OWLAxiom, Atom>();
+        for (OWLAxiom ax : axioms) {
+            Atom atom = axiomIndex.get(ax);
+            if (atom != null) {
+                toReturn.put(ax, atom);
             }
         }
-        return null;
+        return toReturn;
+    }
+
+    /** @param atom
+     *            atom
+     * @return the atom in the decomposer structure */
+    private OntologyAtom getOntologyAtom(Atom atom) {
+        return decomposer.getAOS().get(atomIndex.get(atom));
     }
 
     @Override
     public boolean isTopAtom(Atom atom) {
-        return !dependents.containsKey(atom);
+        return getGraph().isTop(atom);
     }
 
     @Override
     public boolean isBottomAtom(Atom atom) {
-        return !dependencies.containsKey(atom);
+        return getGraph().isBottom(atom);
     }
 
+    /** the ideal is computed on the first call and cached in the atom; it is a
+     * read only view over the axioms of the atom and of its dependencies */
     @Override
     public Set<OWLAxiom> getPrincipalIdeal(Atom atom) {
-        return asSet(getAtomModule(atomIndex.get(atom)));
+        if (atom.principalIdeal == null) {
+            atom.principalIdeal = new PrincipalIdeal(atom);
+        }
+        return atom.principalIdeal;
     }
 
+    /** the signature is computed on the first call and cached in the atom; it
+     * cannot be modified */
     @Override
     public Set<OWLEntity> getPrincipalIdealSignature(Atom atom) {
-        // TODO Auto-generated method stub
-        return null;
+        if (atom.principalIdealSignature == null) {
+            Set<OWLEntity> signature = new HashSet<OWLEntity>(atom.getSignature());
+            BitSet deps = getOntologyAtom(atom).getAllDepAtoms();
+            for (int i = deps.nextSetBit(0); i >= 0; i = deps.nextSetBit(i + 1)) {
+                signature.addAll(atoms.get(i).getSignature());
+            }
+            atom.principalIdealSignature = Collections.unmodifiableSet(signature);
+        }
+        return atom.principalIdealSignature;
+    }
+
+    /** principal ideal of an atom: read only view over the axioms of the atom
+     * and of the atoms it depends on, sharing the dependency set of the
+     * decomposer structure */
+    private class PrincipalIdeal extends AbstractSet<OWLAxiom> {
+        private final Atom atom;
+        private final BitSet dependencies;
+        private final int size;
+
+        PrincipalIdeal(Atom atom) {
+            this.atom = atom;
+            dependencies = getOntologyAtom(atom).getAllDepAtoms();
+            int n = atom.getAxioms().size();
+            for (int i = dependencies.nextSetBit(0); i >= 0; i = dependencies
+                    .nextSetBit(i + 1)) {
+                n += atoms.get(i).getAxioms().size();
+            }
+            size = n;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            Atom a = axiomIndex.get(o);
+            if (a == null) {
+                return false;
+            }
+            return a == atom || dependencies.get(atomIndex.get(a));
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<OWLAxiom> iterator() {
+            return new Iterator<OWLAxiom>() {
+                /** id of the next atom to visit; -1 if none */
+                private int next = dependencies.nextSetBit(0);
+                private Iterator<OWLAxiom> current = atom.getAxioms().iterator();
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext() && next >= 0) {
+                        current = atoms.get(next).getAxioms().iterator();
+                        next = dependencies.nextSetBit(next + 1);
+                    }
+                    return current.hasNext();
+                }
+
+                @Override
+                public OWLAxiom next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return current.next();
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
     }
 
     @Override
@@ -140,7 +472,17 @@ public class AtomicDecomposerOWLAPITOOLS implements AtomicDecomposition {
 
     @Override
     public Set<Atom> getDependencies(Atom atom, boolean direct) {
-        return explore(atom, direct, dependencies);
+        OntologyAtom a = getOntologyAtom(atom);
+        if (direct) {
+            Set<Atom> toReturn = new HashSet<Atom>();
+            for (OntologyAtom d : a.getDependencies()) {
+                toReturn.add(atoms.get(d.getId()));
+            }
+            return toReturn;
+        }
+        Set<Atom> toReturn = asSet(a.getAllDepAtoms());
+        toReturn.add(atom);
+        return toReturn;
     }
 
     @Override
@@ -150,33 +492,13 @@ public class AtomicDecomposerOWLAPITOOLS implements AtomicDecomposition {
 
     @Override
     public Set<Atom> getDependents(Atom atom, boolean direct) {
-        return explore(atom, direct, dependents);
-    }
-
-    Set<Atom> explore(Atom atom, boolean direct, IdentityMultiMap<Atom, Atom> multimap) {
+        OntologyAtom a = getOntologyAtom(atom);
         if (direct) {
-            Set<Atom> hashSet = new HashSet<Atom>(multimap.get(atom));
-            for (Atom a : multimap.get(atom)) {
-                hashSet.removeAll(multimap.get(a));
-            }
-            return hashSet;
-        }
-        Map<Atom, Atom> toReturn = new HashMap<Atom, Atom>();
-        toReturn.put(atom, atom);
-        List<Atom> toDo = new ArrayList<Atom>();
-        toDo.add(atom);
-        for (int i = 0; i < toDo.size(); i++) {
-            final Atom key = toDo.get(i);
-            if (key != null) {
-                Collection<Atom> c = multimap.get(key);
-                for (Atom a : c) {
-                    if (toReturn.put(a, a) == null) {
-                        toDo.add(a);
-                    }
-                }
-            }
+            return asSet(a.getDependents());
         }
-        return toReturn.keySet();
+        Set<Atom> toReturn = asSet(a.getAllDependents());
+        toReturn.add(atom);
+        return toReturn;
     }
 
     @Override
@@ -188,9 +510,7 @@ public class AtomicDecomposerOWLAPITOOLS implements AtomicDecomposition {
 
     @Override
     public Set<Atom> getTopAtoms() {
-        Set<Atom> keys = getAtoms();
-        keys.removeAll(dependencies.getAllValues());
-        return keys;
+        return new HashSet<Atom>(getGraph().getTopAtoms());
     }
 
     Set<Atom> asSet(Iterable<Integer> keys) {
@@ -209,11 +529,17 @@ public class AtomicDecomposerOWLAPITOOLS implements AtomicDecomposition {
         return s;
     }
 
+    Set<Atom> asSet(BitSet keys) {
+        Set<Atom> s = new HashSet<Atom>();
+        for (int i = keys.nextSetBit(0); i >= 0; i = keys.nextSetBit(i + 1)) {
+            s.add(atoms.get(i));
+        }
+        return s;
+    }
+
     @Override
     public Set<Atom> getBottomAtoms() {
-        Set<Atom> keys = getAtoms();
-        keys.removeAll(dependents.getAllValues());
-        return keys;
+        return new HashSet<Atom>(getGraph().getBottomAtoms());
     }
 
     Atom getAtomByID(Object id) {
@@ -252,8 +578,17 @@ public class AtomicDecomposerOWLAPITOOLS implements AtomicDecomposition {
         return decomposer.getAOS().get(index).getModule();
     }
 
+    /** the module is built from the atoms if the decomposition was built for
+     * the same module type; otherwise, it is extracted from the axioms */
     Collection<AxiomWrapper> getModule(Set<OWLEntity> signature, boolean useSemantics,
             ModuleType moduletype) {
+        if (!useSemantics) {
+            Collection<AxiomWrapper> module = decomposer.getModuleFromAtoms(signature,
+                    moduletype);
+            if (module != null) {
+                return module;
+            }
+        }
         return decomposer.getModule(signature, useSemantics, moduletype);
     }
 }
@@ -1,5 +1,8 @@
 package uk.ac.manchester.cs.atomicdecomposition;
 
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -29,6 +32,12 @@ public interface AtomicDecomposition {
      * @return Atom containing axiom */
     Atom getAtomForAxiom(OWLAxiom axiom);
 
+    /** @param axioms
+     *            the axioms to search
+     * @return map from each axiom to the atom containing it; axioms which are
+     *         not in any atom are not in the map */
+    Map<OWLAxiom, Atom> getAtomsForAxioms(Collection<OWLAxiom> axioms);
+
     /** @return map between entities and atoms referencing them */
     Map<OWLEntity, Set<Atom>> getTermBasedIndex();
 
@@ -76,4 +85,19 @@ public interface AtomicDecomposition {
      *            true if only direct dependents should be returned
      * @return dependents set for atom; it includes atom */
     Set<Atom> getDependents(Atom atom, boolean direct);
+
+    /** @return all atoms, each after the atoms it depends on */
+    Iterator<Atom> topologicalOrder();
+
+    /** @return the atoms by level: bottom atoms first, then the atoms whose
+     *         dependencies are all in the previous levels */
+    Iterator<List<Atom>> levels();
+
+    /** @param atom
+     *            atom to start from
+     * @param depth
+     *            maximum number of direct dependencies or dependents to follow
+     * @return atom, then the atoms within depth direct edges of it, nearest
+     *         first */
+    Iterator<Atom> neighbourhood(Atom atom, int depth);
 }
@@ -1,28 +1,42 @@
 package uk.ac.manchester.cs.chainsaw;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
-/** a multimap for int to collection of int values. */
+/** a multimap for int to collection of int values. Keys are expected to be
+ * small non negative ints, such as interned ids, and index an array of value
+ * sets directly; keys and values are never boxed. Value sets are sorted
+ * arrays; large sets whose values are dense are switched to bitmaps, as the
+ * array and bitmap containers in Roaring bitmaps. */
 public class ArrayIntMap {
-    private final List<FastSet> map = new ArrayList<FastSet>();
+    /** size over which a value set can become a bitmap */
+    private static final int denseSize = 4096;
+    private FastSet[] map = new FastSet[16];
+    /** position after the last key */
+    private int end = 0;
 
     /** @param key
      *            key
      * @param value
      *            value */
     public void put(int key, int value) {
-        if (key >= map.size()) {
-            while (key >= map.size()) {
-                map.add(null);
-            }
+        if (key >= map.length) {
+            map = Arrays.copyOf(map, Math.max(key + 1, map.length + (map.length >> 1)));
+        }
+        if (key >= end) {
+            end = key + 1;
         }
-        FastSet set = map.get(key);
+        FastSet set = map[key];
         if (set == null) {
             set = new FastSetSimple();
-            map.set(key, set);
+            map[key] = set;
         }
         set.add(value);
+        // a bitmap is smaller than an array when there is at least one value
+        // every 32 ints
+        if (set.size() >= denseSize && set instanceof FastSetSimple && set.get(0) > -1
+                && set.get(set.size() - 1) / 32 < set.size()) {
+            map[key] = new FastSetBitmap(set);
+        }
     }
 
     /** returns a mutable set of values connected to the key; if no value is
@@ -32,8 +46,8 @@ public class ArrayIntMap {
      *            key
      * @return the set of values connected with the key */
     public FastSet get(int key) {
-        if (key < map.size()) {
-            FastSet collection = map.get(key);
+        if (key > -1 && key < end) {
+            FastSet collection = map[key];
             if (collection != null) {
                 return collection;
             }
@@ -41,44 +55,80 @@ public class ArrayIntMap {
         return new FastSetSimple();
     }
 
-    /** @return the set of keys */
-    public List<Integer> keySet() {
-        List<Integer> toReturn = new ArrayList<Integer>();
-        for (int i = 0; i < map.size(); i++) {
-            if (map.get(i) != null) {
-                toReturn.add(i);
+    /** cursor over the keys: for (int k = m.nextKey(0); k > -1; k =
+     * m.nextKey(k + 1))
+     * 
+     * @param from
+     *            first key to check
+     * @return the first key not smaller than from, or -1 if there is none */
+    public int nextKey(int from) {
+        for (int i = Math.max(from, 0); i < end; i++) {
+            if (map[i] != null) {
+                return i;
             }
         }
+        return -1;
+    }
+
+    /** @return the set of keys */
+    public FastSet keySet() {
+        FastSet toReturn = new FastSetSimple();
+        for (int i = nextKey(0); i > -1; i = nextKey(i + 1)) {
+            toReturn.add(i);
+        }
         return toReturn;
     }
 
     /** @return all values in the map */
-    public List<Integer> getAllValues() {
-        List<Integer> list = new ArrayList<Integer>();
-        for (FastSet f : map) {
+    public FastSet getAllValues() {
+        int total = 0;
+        for (int i = 0; i < end; i++) {
+            if (map[i] != null) {
+                total += map[i].size();
+            }
+        }
+        FastSetSimple toReturn = new FastSetSimple();
+        if (total == 0) {
+            return toReturn;
+        }
+        // concatenate, sort and drop the duplicates
+        int[] all = new int[total];
+        int index = 0;
+        for (int i = 0; i < end; i++) {
+            FastSet f = map[i];
             if (f != null) {
-                for (int i = 0; i < f.size(); i++) {
-                    list.add(f.get(i));
+                for (int j = 0; j < f.size(); j++) {
+                    all[index++] = f.get(j);
                 }
             }
         }
-        return list;
+        Arrays.sort(all);
+        int size = 1;
+        for (int i = 1; i < total; i++) {
+            if (all[i] != all[size - 1]) {
+                all[size++] = all[i];
+            }
+        }
+        toReturn.values = all;
+        toReturn.size = size;
+        return toReturn;
     }
 
     /** @param k
      *            key
      * @return true if k is a key for the map */
     public boolean containsKey(int k) {
-        return k < map.size() && map.get(k) != null;
+        return k > -1 && k < end && map[k] != null;
     }
 
     /** Clear the map */
     public void clear() {
-        map.clear();
+        Arrays.fill(map, 0, end, null);
+        end = 0;
     }
 
     @Override
     public String toString() {
-        return "MultiMap " + map.toString();
+        return "MultiMap " + Arrays.toString(Arrays.copyOf(map, end));
     }
 }
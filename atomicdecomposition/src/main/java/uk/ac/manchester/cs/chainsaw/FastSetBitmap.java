@@ -0,0 +1,290 @@
+package uk.ac.manchester.cs.chainsaw;
+
+import java.util.Arrays;
+
+/** sorted set of non negative ints backed by a bitmap, for dense sets: n ints
+ * with values up to m take m/8 bytes instead of 4n, and adding or removing an
+ * element does not shift the others. Positional access counts the bits a word
+ * at a time; the position of the last element read is remembered, so that
+ * reading the elements in order costs a word scan per element. */
+public class FastSetBitmap implements FastSet {
+    private long[] words = new long[0];
+    private int size = 0;
+    /** position of the last element read, -1 if unknown */
+    private int cursorIndex = -1;
+    /** value of the last element read */
+    private int cursorValue = -1;
+
+    /** default constructor */
+    public FastSetBitmap() {}
+
+    /** @param c
+     *            elements to copy */
+    public FastSetBitmap(FastSet c) {
+        addAll(c);
+    }
+
+    private void resetCursor() {
+        cursorIndex = -1;
+        cursorValue = -1;
+    }
+
+    private boolean getBit(int i) {
+        int w = i >>> 6;
+        return w < words.length && (words[w] & 1L << i) != 0;
+    }
+
+    /** @param from
+     *            first value to check
+     * @return the first element not smaller than from, or -1 if there is none */
+    private int nextSetBit(int from) {
+        int w = from >>> 6;
+        if (w >= words.length) {
+            return -1;
+        }
+        long word = words[w] & -1L << from;
+        while (true) {
+            if (word != 0) {
+                return w * 64 + Long.numberOfTrailingZeros(word);
+            }
+            if (++w == words.length) {
+                return -1;
+            }
+            word = words[w];
+        }
+    }
+
+    /** @param i
+     *            position
+     * @return the element at position i, counting the bits of whole words */
+    private int select(int i) {
+        int w = 0;
+        int count = Long.bitCount(words[0]);
+        while (count <= i) {
+            i -= count;
+            count = Long.bitCount(words[++w]);
+        }
+        long word = words[w];
+        for (; i > 0; i--) {
+            // drop the lowest bit
+            word &= word - 1;
+        }
+        return w * 64 + Long.numberOfTrailingZeros(word);
+    }
+
+    @Override
+    public void add(int e) {
+        if (e < 0) {
+            throw new IllegalArgumentException("Illegal argument " + e
+                    + ": negative values cannot be stored in a bitmap");
+        }
+        if (!getBit(e)) {
+            int w = e >>> 6;
+            if (w >= words.length) {
+                words = Arrays.copyOf(words, Math.max(w + 1, words.length * 2));
+            }
+            words[w] |= 1L << e;
+            size++;
+            resetCursor();
+        }
+    }
+
+    @Override
+    public void addAll(FastSet c) {
+        if (c instanceof FastSetBitmap) {
+            long[] other = ((FastSetBitmap) c).words;
+            if (other.length > words.length) {
+                words = Arrays.copyOf(words, other.length);
+            }
+            size = 0;
+            for (int w = 0; w < words.length; w++) {
+                if (w < other.length) {
+                    words[w] |= other[w];
+                }
+                size += Long.bitCount(words[w]);
+            }
+            resetCursor();
+            return;
+        }
+        for (int i = 0; i < c.size(); i++) {
+            add(c.get(i));
+        }
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(words, 0L);
+        size = 0;
+        resetCursor();
+    }
+
+    @Override
+    public boolean contains(int o) {
+        return o > -1 && getBit(o);
+    }
+
+    @Override
+    public boolean containsAll(FastSet c) {
+        if (c.size() > size) {
+            return false;
+        }
+        if (c instanceof FastSetBitmap) {
+            long[] other = ((FastSetBitmap) c).words;
+            for (int w = 0; w < other.length; w++) {
+                long mine = w < words.length ? words[w] : 0L;
+                if ((other[w] & ~mine) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        for (int i = 0; i < c.size(); i++) {
+            if (!contains(c.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void remove(int o) {
+        if (contains(o)) {
+            words[o >>> 6] &= ~(1L << o);
+            size--;
+            resetCursor();
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int[] toIntArray() {
+        int[] toReturn = new int[size];
+        int index = 0;
+        for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+            toReturn[index++] = i;
+        }
+        return toReturn;
+    }
+
+    @Override
+    public boolean intersect(FastSet f) {
+        return containsAny(f);
+    }
+
+    @Override
+    public int get(int i) {
+        if (i < 0 || i >= size) {
+            throw new IllegalArgumentException("Illegal argument " + i
+                    + ": no such element");
+        }
+        if (cursorIndex > -1 && i >= cursorIndex && i - cursorIndex < 64) {
+            while (cursorIndex < i) {
+                cursorValue = nextSetBit(cursorValue + 1);
+                cursorIndex++;
+            }
+        } else {
+            cursorValue = select(i);
+            cursorIndex = i;
+        }
+        return cursorValue;
+    }
+
+    @Override
+    public void removeAt(int o) {
+        if (o > -1 && o < size) {
+            remove(get(o));
+        }
+    }
+
+    @Override
+    public void removeAll(int i, int end) {
+        if (end < -1 || end < i || end > size || i < -1 || i > size) {
+            throw new IllegalArgumentException("illegal arguments: " + i + " " + end
+                    + " size: " + size);
+        }
+        if (i == end || i < 0) {
+            return;
+        }
+        int value = get(i);
+        for (int k = i; k < end; k++) {
+            int next = nextSetBit(value + 1);
+            words[value >>> 6] &= ~(1L << value);
+            value = next;
+        }
+        size -= end - i;
+        resetCursor();
+    }
+
+    @Override
+    public void removeAllValues(int... values) {
+        for (int v : values) {
+            remove(v);
+        }
+    }
+
+    @Override
+    public boolean containsAny(FastSet c) {
+        if (c instanceof FastSetBitmap) {
+            long[] other = ((FastSetBitmap) c).words;
+            for (int w = Math.min(words.length, other.length) - 1; w >= 0; w--) {
+                if ((words[w] & other[w]) != 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (int i = 0; i < c.size(); i++) {
+            if (contains(c.get(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object arg0) {
+        if (arg0 == null) {
+            return false;
+        }
+        if (this == arg0) {
+            return true;
+        }
+        if (arg0 instanceof FastSet) {
+            FastSet arg = (FastSet) arg0;
+            return size == arg.size() && containsAll(arg);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = size;
+        for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+            h = 31 * h + i;
+        }
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder();
+        b.append('[');
+        for (int i = nextSetBit(0); i >= 0; i = nextSetBit(i + 1)) {
+            if (b.length() > 1) {
+                b.append(", ");
+            }
+            b.append(i);
+        }
+        b.append(']');
+        return b.toString();
+    }
+}
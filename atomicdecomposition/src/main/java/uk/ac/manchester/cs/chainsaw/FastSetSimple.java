@@ -7,9 +7,15 @@ package uk.ac.manchester.cs.chainsaw;
  You should have received a copy of the GNU Lesser General Public License along with this library; if not, write to the Free Software Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301 USA*/
 import java.util.Arrays;
 
-/** @author ignazio */
+/** sorted set of ints backed by an array. The array grows geometrically;
+ * comparisons between sets of very different sizes use exponential search in
+ * the larger set.
+ * 
+ * @author ignazio */
 public class FastSetSimple implements FastSet {
     private static final int limit = 5;
+    /** size ratio over which exponential search is used instead of a merge */
+    private static final int gallopRatio = 8;
 
     @Override
     public String toString() {
@@ -66,6 +72,68 @@ public class FastSetSimple implements FastSet {
         return -lowerbound - 1;
     }
 
+    /** exponential search
+     * 
+     * @param a
+     *            sorted array
+     * @param from
+     *            first position to search
+     * @param to
+     *            position after the last one to search
+     * @param key
+     *            value to find
+     * @return the first position in [from, to) holding a value not smaller
+     *         than key, or to if there is none */
+    protected static int gallop(int[] a, int from, int to, int key) {
+        if (from >= to || a[from] >= key) {
+            return from;
+        }
+        // a[low] < key; the answer is in (low, high]
+        int low = from;
+        int step = 1;
+        int high = from + 1;
+        while (high < to && a[high] < key) {
+            low = high;
+            step <<= 1;
+            high = from + step;
+        }
+        if (high > to) {
+            high = to;
+        }
+        low++;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (a[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /** @param c
+     *            set
+     * @return the sorted elements of c; only the first c.size() positions are
+     *         meaningful, and the array must not be modified */
+    private static int[] elements(FastSet c) {
+        if (c instanceof FastSetSimple) {
+            return ((FastSetSimple) c).values;
+        }
+        return c.toIntArray();
+    }
+
+    /** make room for at least n elements, growing the array by half its size
+     * 
+     * @param n
+     *            number of elements */
+    protected void ensureCapacity(int n) {
+        if (n > values.length) {
+            values = Arrays.copyOf(values,
+                    Math.max(n, values.length + (values.length >> 1)));
+        }
+    }
+
     /** default constructor */
     public FastSetSimple() {}
 
@@ -124,28 +192,26 @@ public class FastSetSimple implements FastSet {
 
     @Override
     public void add(int e) {
-        int pos = -1;
         if (values == null) {
             init();
-            // pos stays at -1, in an empty set that's the place to start - it
-            // will become 0
-        } else {
-            // else find the right place
-            pos = insertionIndex(e);
+            values[0] = e;
+            size = 1;
+            return;
+        }
+        // elements are often added in increasing order
+        if (size > 0 && e > values[size - 1]) {
+            ensureCapacity(size + 1);
+            values[size++] = e;
+            return;
         }
+        int pos = insertionIndex(e);
         if (pos > -1) {
             return;
         }
         int i = -pos - 1;
         // i is now the insertion point
-        if (i >= values.length || size >= values.length) {
-            // no space left, increase
-            values = Arrays.copyOf(values, values.length + defaultSize);
-        }
-        // size ensured, shift and insert now
-        for (int j = size - 1; j >= i; j--) {
-            values[j + 1] = values[j];
-        }
+        ensureCapacity(size + 1);
+        System.arraycopy(values, i, values, i + 1, size - i);
         values[i] = e;
         // increase used size
         size++;
@@ -156,49 +222,48 @@ public class FastSetSimple implements FastSet {
         if (c.isEmpty()) {
             return;
         }
-        // merge two sorted arrays: how bad can it be?
+        int csize = c.size();
+        int[] cvalues = elements(c);
         if (values == null) {
             // extreme case: just copy the other set
-            values = Arrays.copyOf(((FastSetSimple) c).values, c.size());
-            size = c.size();
+            values = Arrays.copyOf(cvalues, Math.max(csize, defaultSize));
+            size = csize;
+            return;
+        }
+        if (cvalues[0] > values[size - 1]) {
+            // all the new elements go after the existing ones
+            ensureCapacity(size + csize);
+            System.arraycopy(cvalues, 0, values, size, csize);
+            size += csize;
             return;
         }
-        int newsize = size + c.size();
-        int[] merge = new int[newsize / defaultSize * defaultSize + defaultSize];
+        // merge two sorted arrays
+        int[] merge = new int[Math.max(size + csize, values.length)];
         int i = 0;
         int j = 0;
         int index = 0;
-        for (; i < size() && j < c.size(); index++) {
-            if (values[i] < c.get(j)) {
-                merge[index] = values[i];
-                i++;
-            } else if (c.get(j) < values[i]) {
-                merge[index] = c.get(j);
-                j++;
-            }
-            // the result must be a set: equal elements advance both indexes
-            else if (values[i] == c.get(j)) {
-                merge[index] = values[i];
-                i++;
+        while (i < size && j < csize) {
+            if (values[i] < cvalues[j]) {
+                merge[index++] = values[i++];
+            } else if (cvalues[j] < values[i]) {
+                merge[index++] = cvalues[j++];
+            } else {
+                // the result must be a set: equal elements advance both
+                // indexes
+                merge[index++] = values[i++];
                 j++;
             }
         }
         // remaining elements in one set or the other
-        if (i < size()) {
-            for (; i < size(); i++, index++) {
-                merge[index] = values[i];
-            }
-            // new size here
-            newsize = index;
+        if (i < size) {
+            System.arraycopy(values, i, merge, index, size - i);
+            index += size - i;
         } else {
-            for (; j < c.size(); j++, index++) {
-                merge[index] = c.get(j);
-            }
-            // new size here
-            newsize = index;
+            System.arraycopy(cvalues, j, merge, index, csize - j);
+            index += csize - j;
         }
         values = merge;
-        size = newsize;
+        size = index;
     }
 
     @Override
@@ -225,39 +290,40 @@ public class FastSetSimple implements FastSet {
         if (isEmpty()) {
             return false;
         }
-        if (c.size() > size) {
+        int csize = c.size();
+        if (csize > size) {
             return false;
         }
-        if (get(0) > c.get(0) || get(size - 1) < c.get(c.size() - 1)) {
+        if (get(0) > c.get(0) || get(size - 1) < c.get(csize - 1)) {
             // c boundaries are outside this set
             return false;
         }
+        int[] cvalues = elements(c);
         int i = 0;
-        int j = 0;
-        int currentValue;
-        while (j < c.size()) {
-            currentValue = c.get(j);
-            boolean found = false;
-            while (i < size) {
-                if (get(i) == currentValue) {
-                    // found the current value, next element in c - increase j
-                    found = true;
-                    break;
-                }
-                if (get(i) > currentValue) {
-                    // found a value larger than the value it's looking for - c
-                    // is not contained
+        if (csize * gallopRatio < size) {
+            for (int j = 0; j < csize; j++) {
+                i = gallop(values, i, size, cvalues[j]);
+                if (i == size || values[i] != cvalues[j]) {
                     return false;
                 }
-                // get(i) is < than current value: check next i
                 i++;
             }
-            if (!found) {
-                // finished exploring this and currentValue was not found - it
-                // happens if currentValue < any element in this set
+            return true;
+        }
+        for (int j = 0; j < csize; j++) {
+            int currentValue = cvalues[j];
+            // skip the smaller values; the last element of this set is not
+            // smaller than any element of c
+            while (values[i] < currentValue) {
+                i++;
+            }
+            if (values[i] != currentValue) {
+                return false;
+            }
+            i++;
+            if (i == size && j < csize - 1) {
                 return false;
             }
-            j++;
         }
         return true;
     }
@@ -272,25 +338,49 @@ public class FastSetSimple implements FastSet {
         if (c.isEmpty() || size == 0) {
             return false;
         }
+        int csize = c.size();
+        if (get(0) > c.get(csize - 1) || get(size - 1) < c.get(0)) {
+            return false;
+        }
+        int[] cvalues = elements(c);
+        if (csize * gallopRatio < size) {
+            return containsAny(values, size, cvalues, csize);
+        }
+        if (size * gallopRatio < csize) {
+            return containsAny(cvalues, csize, values, size);
+        }
         int i = 0;
         int j = 0;
-        int currentValue;
-        while (j < c.size()) {
-            currentValue = c.get(j);
-            while (i < size) {
-                if (get(i) == currentValue) {
-                    // found the current value, next element in c - increase j
-                    return true;
-                }
-                if (get(i) > currentValue) {
-                    // found a value larger than the value it's looking for - c
-                    // is not contained
-                    break;
-                }
-                // get(i) is < than current value: check next i
+        while (i < size && j < csize) {
+            if (values[i] < cvalues[j]) {
                 i++;
+            } else if (values[i] > cvalues[j]) {
+                j++;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** @param large
+     *            sorted array
+     * @param largeSize
+     *            number of elements in large
+     * @param small
+     *            sorted array
+     * @param smallSize
+     *            number of elements in small
+     * @return true if the arrays have a common element, found by exponential
+     *         search of the small array elements in the large one */
+    private static boolean containsAny(int[] large, int largeSize, int[] small,
+            int smallSize) {
+        int i = 0;
+        for (int j = 0; j < smallSize && i < largeSize; j++) {
+            i = gallop(large, i, largeSize, small[j]);
+            if (i < largeSize && large[i] == small[j]) {
+                return true;
             }
-            j++;
         }
         return false;
     }
@@ -361,9 +451,7 @@ public class FastSetSimple implements FastSet {
                 size = 0;
                 return;
             }
-            for (int j = i; j < size - 1; j++) {
-                values[j] = values[j + 1];
-            }
+            System.arraycopy(values, i + 1, values, i, size - i - 1);
             size--;
         }
         if (size == 0) {
@@ -389,9 +477,7 @@ public class FastSetSimple implements FastSet {
             size = i;
         } else {
             int delta = end - i;
-            for (int j = i; j < size - delta; j++) {
-                values[j] = values[j + delta];
-            }
+            System.arraycopy(values, end, values, i, size - end);
             size -= delta;
         }
         if (size == 0) {
@@ -408,19 +494,20 @@ public class FastSetSimple implements FastSet {
             remove(vals[0]);
             return;
         }
-        Arrays.sort(vals);
-        int originalsize = size;
-        for (int i = 0, j = 0; i < originalsize && j < vals.length; i++) {
-            if (values[i] == vals[j]) {
-                values[i] = Integer.MAX_VALUE;
-                size--;
-                j++;
+        // sort a copy: the caller's array is left alone
+        int[] sorted = vals.clone();
+        Arrays.sort(sorted);
+        // compact the array, skipping the values to remove
+        int index = 0;
+        for (int i = 0, j = 0; i < size; i++) {
+            j = gallop(sorted, j, sorted.length, values[i]);
+            if (j == sorted.length || sorted[j] != values[i]) {
+                values[index++] = values[i];
             }
         }
+        size = index;
         if (size == 0) {
             values = null;
-        } else {
-            Arrays.sort(values, 0, originalsize);
         }
     }
 }
@@ -0,0 +1,118 @@
+package decomposition.test;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+
+import uk.ac.manchester.cs.atomicdecomposition.Atom;
+import uk.ac.manchester.cs.atomicdecomposition.AtomGraph;
+import uk.ac.manchester.cs.atomicdecomposition.AtomicDecomposerOWLAPITOOLS;
+import uk.ac.manchester.cs.owlapi.modularity.ModuleType;
+
+@SuppressWarnings("javadoc")
+public class AtomGraphTestCase {
+    @Test
+    public void shouldTraverseInDependencyOrder() throws OWLOntologyCreationException {
+        OWLOntology o = ParallelDecompositionTestCase.getRandomOntology(new Random(11),
+                400);
+        AtomicDecomposerOWLAPITOOLS ad = new AtomicDecomposerOWLAPITOOLS(o,
+                ModuleType.BOT);
+        Set<Atom> atoms = ad.getAtoms();
+        // every atom comes after its dependencies
+        Set<Atom> seen = new HashSet<Atom>();
+        for (Iterator<Atom> it = ad.topologicalOrder(); it.hasNext();) {
+            Atom a = it.next();
+            Set<Atom> dependencies = ad.getDependencies(a);
+            dependencies.remove(a);
+            assertTrue(seen.containsAll(dependencies));
+            assertTrue(seen.add(a));
+        }
+        assertEquals(atoms, seen);
+        // levels partition the atoms; each atom depends on the previous level
+        Map<Atom, Integer> levels = new HashMap<Atom, Integer>();
+        int level = 0;
+        for (Iterator<List<Atom>> it = ad.levels(); it.hasNext(); level++) {
+            for (Atom a : it.next()) {
+                levels.put(a, level);
+            }
+        }
+        assertEquals(atoms, levels.keySet());
+        for (Atom a : atoms) {
+            int max = -1;
+            for (Atom d : ad.getDependencies(a, true)) {
+                assertTrue(levels.get(d) < levels.get(a));
+                max = Math.max(max, levels.get(d));
+            }
+            assertEquals(max + 1, levels.get(a).intValue());
+        }
+    }
+
+    @Test
+    public void shouldMatchDependencyQueries() throws OWLOntologyCreationException,
+            IOException {
+        OWLOntology o = ParallelDecompositionTestCase.getRandomOntology(new Random(11),
+                400);
+        AtomicDecomposerOWLAPITOOLS ad = new AtomicDecomposerOWLAPITOOLS(o,
+                ModuleType.BOT);
+        AtomGraph graph = ad.getGraph();
+        Set<Atom> top = new HashSet<Atom>();
+        Set<Atom> bottom = new HashSet<Atom>();
+        int edges = 0;
+        for (Atom a : ad.getAtoms()) {
+            Set<Atom> dependencies = ad.getDependencies(a, true);
+            Set<Atom> dependents = ad.getDependents(a, true);
+            assertEquals(dependencies, new HashSet<Atom>(graph.getDirectDependencies(a)));
+            assertEquals(dependents, new HashSet<Atom>(graph.getDirectDependents(a)));
+            edges += dependencies.size();
+            if (dependents.isEmpty()) {
+                top.add(a);
+            }
+            if (dependencies.isEmpty()) {
+                bottom.add(a);
+            }
+            assertEquals(dependents.isEmpty(), ad.isTopAtom(a));
+            assertEquals(dependencies.isEmpty(), ad.isBottomAtom(a));
+            // the neighbourhood at distance one holds the direct edges
+            Set<Atom> expected = new HashSet<Atom>(dependencies);
+            expected.addAll(dependents);
+            expected.add(a);
+            Iterator<Atom> it = ad.neighbourhood(a, 1);
+            assertEquals(a, it.next());
+            Set<Atom> actual = new HashSet<Atom>();
+            actual.add(a);
+            while (it.hasNext()) {
+                assertTrue(actual.add(it.next()));
+            }
+            assertEquals(expected, actual);
+            Iterator<Atom> self = ad.neighbourhood(a, 0);
+            assertEquals(a, self.next());
+            assertFalse(self.hasNext());
+        }
+        assertEquals(top, ad.getTopAtoms());
+        assertEquals(bottom, ad.getBottomAtoms());
+        assertEquals(edges, graph.getEdgeCount());
+        StringWriter w = new StringWriter();
+        ad.writeEdgeList(w);
+        String[] lines = w.toString().split("\n");
+        assertEquals(graph.size() + " " + edges, lines[0]);
+        assertEquals(edges + 1, lines.length);
+        for (int i = 1; i < lines.length; i++) {
+            String[] ids = lines[i].split(" ");
+            Atom from = graph.getAtom(Integer.parseInt(ids[0]));
+            Atom to = graph.getAtom(Integer.parseInt(ids[1]));
+            assertTrue(ad.getDependencies(from, true).contains(to));
+        }
+    }
+}
@@ -2,13 +2,17 @@ package decomposition.test;
 
 import static org.junit.Assert.*;
 
+import java.util.HashSet;
+import java.util.Random;
 import java.util.Set;
 
 import org.junit.Test;
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAxiom;
 import org.semanticweb.owlapi.model.OWLClass;
 import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLEntity;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
 import org.semanticweb.owlapi.model.OWLOntologyManager;
@@ -37,6 +41,55 @@ public class AtomicDecomposerDepedenciesTest {
         assertEquals(0, dependencies.size());
     }
 
+    @Test
+    public void shouldReduceDependenciesToDirectOnes()
+            throws OWLOntologyCreationException {
+        // given
+        AtomicDecomposition ad = new AtomicDecomposerOWLAPITOOLS(getOntology());
+        assertEquals(1, ad.getTopAtoms().size());
+        Atom top = ad.getTopAtoms().iterator().next();
+        Atom bottom = ad.getBottomAtoms().iterator().next();
+        // when
+        Set<Atom> direct = ad.getDependencies(top, true);
+        Set<Atom> all = ad.getDependencies(top, false);
+        all.remove(top);
+        Set<Atom> dependents = ad.getDependents(bottom, false);
+        dependents.remove(bottom);
+        // then
+        assertEquals(1, direct.size());
+        assertFalse(direct.contains(bottom));
+        assertEquals(2, all.size());
+        assertTrue(all.contains(bottom));
+        assertEquals(1, ad.getDependents(bottom, true).size());
+        assertEquals(2, dependents.size());
+        assertTrue(ad.isTopAtom(top));
+        assertTrue(ad.isBottomAtom(bottom));
+    }
+
+    @Test
+    public void shouldCachePrincipalIdeals() throws OWLOntologyCreationException {
+        AtomicDecomposition ad = new AtomicDecomposerOWLAPITOOLS(
+                ParallelDecompositionTestCase.getRandomOntology(new Random(5), 200));
+        for (Atom atom : ad.getAtoms()) {
+            Set<OWLAxiom> expected = new HashSet<OWLAxiom>();
+            Set<OWLEntity> signature = new HashSet<OWLEntity>();
+            for (Atom d : ad.getDependencies(atom)) {
+                expected.addAll(d.getAxioms());
+            }
+            for (OWLAxiom ax : expected) {
+                signature.addAll(ax.getSignature());
+            }
+            Set<OWLAxiom> ideal = ad.getPrincipalIdeal(atom);
+            assertEquals(expected, ideal);
+            assertEquals(expected.size(), ideal.size());
+            assertEquals(expected, new HashSet<OWLAxiom>(ideal));
+            assertSame(ideal, ad.getPrincipalIdeal(atom));
+            assertEquals(signature, ad.getPrincipalIdealSignature(atom));
+            assertSame(ad.getPrincipalIdealSignature(atom),
+                    ad.getPrincipalIdealSignature(atom));
+        }
+    }
+
     private OWLOntology getOntology() throws OWLOntologyCreationException {
         OWLOntologyManager m = OWLManager.createOWLOntologyManager();
         OWLOntology o = m.createOntology();
@@ -0,0 +1,138 @@
+package decomposition.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+
+import uk.ac.manchester.cs.owlapi.modularity.ModuleType;
+import decomposition.AxiomSelector;
+import decomposition.AxiomWrapper;
+import decomposition.Decomposer;
+import decomposition.LocalityChecker;
+import decomposition.LocalityCheckerFactory;
+import decomposition.Modularizer;
+import decomposition.ModuleConsumer;
+import decomposition.Signature;
+import decomposition.SyntacticLocalityChecker;
+
+@SuppressWarnings("javadoc")
+public class BatchModuleExtractionTestCase {
+    private static final LocalityCheckerFactory factory = new LocalityCheckerFactory() {
+        @Override
+        public LocalityChecker createChecker() {
+            return new SyntacticLocalityChecker();
+        }
+    };
+
+    @Test
+    public void shouldExtractSameModulesAsSingleExtraction()
+            throws OWLOntologyCreationException {
+        OWLOntology o = ParallelDecompositionTestCase.getRandomOntology(
+                new Random(11), 300);
+        Decomposer decomposer = new Decomposer(AxiomSelector.wrap(AxiomSelector
+                .selectAxioms(o)), new SyntacticLocalityChecker());
+        List<Set<OWLEntity>> signatures = getSignatures(o, new Random(3), 100);
+        for (ModuleType type : ModuleType.values()) {
+            List<Set<AxiomWrapper>> expected = new ArrayList<Set<AxiomWrapper>>();
+            for (Set<OWLEntity> sig : signatures) {
+                expected.add(new HashSet<AxiomWrapper>(decomposer.getModule(sig,
+                        false, type)));
+            }
+            for (int nThreads : new int[] { 1, 4 }) {
+                final ConcurrentMap<Integer, Set<AxiomWrapper>> actual = new ConcurrentHashMap<Integer, Set<AxiomWrapper>>();
+                decomposer.getModules(signatures, type, factory, nThreads,
+                        new ModuleConsumer() {
+                            @Override
+                            public void module(int index, Set<OWLEntity> signature,
+                                    List<AxiomWrapper> module) {
+                                actual.put(index, new HashSet<AxiomWrapper>(module));
+                            }
+                        });
+                assertEquals(type.toString(), signatures.size(), actual.size());
+                for (int i = 0; i < signatures.size(); i++) {
+                    assertEquals(type + " " + nThreads, expected.get(i), actual.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldExtractSameModulesFromAtoms() throws OWLOntologyCreationException {
+        OWLOntology o = ParallelDecompositionTestCase.getRandomOntology(
+                new Random(13), 300);
+        List<Set<OWLEntity>> signatures = getSignatures(o, new Random(5), 100);
+        for (ModuleType type : ModuleType.values()) {
+            Decomposer decomposer = new Decomposer(AxiomSelector.wrap(AxiomSelector
+                    .selectAxioms(o)), new SyntacticLocalityChecker());
+            decomposer.getAOS(type);
+            for (Set<OWLEntity> sig : signatures) {
+                Collection<AxiomWrapper> fromAtoms = decomposer.getModuleFromAtoms(sig,
+                        type);
+                if (type == ModuleType.STAR) {
+                    assertNull(fromAtoms);
+                } else {
+                    assertEquals(type.toString(), new HashSet<AxiomWrapper>(
+                            decomposer.getModule(sig, false, type)),
+                            new HashSet<AxiomWrapper>(fromAtoms));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldReachStarFixpoint() throws OWLOntologyCreationException {
+        OWLOntology o = ParallelDecompositionTestCase.getRandomOntology(
+                new Random(17), 300);
+        Decomposer decomposer = new Decomposer(AxiomSelector.wrap(AxiomSelector
+                .selectAxioms(o)), new SyntacticLocalityChecker());
+        Modularizer modularizer = decomposer.getModularizer();
+        for (Set<OWLEntity> sig : getSignatures(o, new Random(7), 100)) {
+            Set<AxiomWrapper> bot = new HashSet<AxiomWrapper>(decomposer.getModule(sig,
+                    false, ModuleType.BOT));
+            Set<AxiomWrapper> star = new HashSet<AxiomWrapper>(decomposer.getModule(
+                    sig, false, ModuleType.STAR));
+            assertTrue(bot.containsAll(star));
+            // alternate TOP and BOT extractions from the previous module, with
+            // a fresh copy of the signature every round
+            List<AxiomWrapper> expected = new ArrayList<AxiomWrapper>(bot);
+            ModuleType type = ModuleType.TOP;
+            int size;
+            do {
+                size = expected.size();
+                modularizer.extract(expected, new Signature(sig), type);
+                expected = new ArrayList<AxiomWrapper>(modularizer.getModule());
+                type = type == ModuleType.TOP ? ModuleType.BOT : ModuleType.TOP;
+            } while (size != expected.size());
+            assertEquals(new HashSet<AxiomWrapper>(expected), star);
+            // a STAR module is its own STAR module
+            modularizer.extract(new ArrayList<AxiomWrapper>(star), new Signature(sig),
+                    ModuleType.STAR);
+            assertEquals(star, new HashSet<AxiomWrapper>(modularizer.getModule()));
+        }
+    }
+
+    static List<Set<OWLEntity>> getSignatures(OWLOntology o, Random r, int n) {
+        List<OWLEntity> entities = new ArrayList<OWLEntity>(o.getSignature());
+        List<Set<OWLEntity>> signatures = new ArrayList<Set<OWLEntity>>();
+        for (int i = 0; i < n; i++) {
+            Set<OWLEntity> sig = new HashSet<OWLEntity>();
+            for (int j = r.nextInt(4); j >= 0; j--) {
+                sig.add(entities.get(r.nextInt(entities.size())));
+            }
+            signatures.add(sig);
+        }
+        return signatures;
+    }
+}
@@ -0,0 +1,170 @@
+package decomposition.test;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+
+import uk.ac.manchester.cs.owlapi.modularity.ModuleType;
+import decomposition.AxiomSelector;
+import decomposition.AxiomWrapper;
+import decomposition.Decomposer;
+import decomposition.DecompositionCancelledException;
+import decomposition.DecompositionListener;
+import decomposition.DecompositionMonitor;
+import decomposition.DecompositionPhase;
+import decomposition.LocalityChecker;
+import decomposition.LocalityCheckerFactory;
+import decomposition.SyntacticLocalityChecker;
+
+@SuppressWarnings("javadoc")
+public class DecompositionMonitorTestCase {
+    private static final LocalityCheckerFactory factory = new LocalityCheckerFactory() {
+        @Override
+        public LocalityChecker createChecker() {
+            return new SyntacticLocalityChecker();
+        }
+    };
+
+    private static class RecordingListener implements DecompositionListener {
+        final List<DecompositionPhase> started = new ArrayList<DecompositionPhase>();
+        final List<DecompositionPhase> finished = new ArrayList<DecompositionPhase>();
+        int processed = 0;
+        int notifications = 0;
+
+        @Override
+        public void phaseStarted(DecompositionPhase p) {
+            started.add(p);
+        }
+
+        @Override
+        public void phaseFinished(DecompositionPhase p, long nanos) {
+            assertTrue(nanos >= 0);
+            finished.add(p);
+        }
+
+        @Override
+        public synchronized void progress(int p, int total) {
+            assertTrue(p <= total);
+            processed = Math.max(processed, p);
+            notifications++;
+        }
+    }
+
+    private static Decomposer decomposer(OWLOntology o) {
+        List<AxiomWrapper> axioms = AxiomSelector.wrap(AxiomSelector.selectAxioms(o));
+        return new Decomposer(axioms, new SyntacticLocalityChecker());
+    }
+
+    @Test
+    public void shouldReportPhasesAndCounters() throws OWLOntologyCreationException {
+        OWLOntology o = ParallelDecompositionTestCase.getRandomOntology(new Random(7),
+                300);
+        for (int threads : new int[] { 1, 4 }) {
+            Decomposer d = decomposer(o);
+            DecompositionMonitor monitor = d.getMonitor();
+            RecordingListener listener = new RecordingListener();
+            monitor.addListener(listener);
+            int atoms = threads == 1 ? d.getAOS(ModuleType.BOT).size() : d.getAOS(
+                    ModuleType.BOT, factory, threads).size();
+            assertEquals(listener.started, listener.finished);
+            assertTrue(listener.started.contains(DecompositionPhase.INDEX));
+            assertTrue(listener.started.contains(DecompositionPhase.ATOMS));
+            assertTrue(listener.started.contains(DecompositionPhase.GRAPH));
+            assertNull(monitor.getPhase());
+            assertTrue(monitor.getAxiomsTotal() > 0);
+            assertEquals(monitor.getAxiomsTotal(), monitor.getAxiomsProcessed());
+            assertEquals(monitor.getAxiomsTotal(), listener.processed);
+            // at most one notification per 1% step, plus the last one
+            assertTrue(listener.notifications <= 101);
+            assertTrue(listener.notifications < monitor.getAxiomsTotal());
+            assertEquals(atoms, monitor.getAtomsCreated());
+            assertTrue(monitor.getModulesExtracted() > 0);
+            assertTrue(monitor.getLocalityChecks() > 0);
+            assertTrue(monitor.getPhaseNanos(DecompositionPhase.ATOMS) > 0);
+            assertEquals(-1, monitor.getEstimatedRemainingMillis());
+        }
+    }
+
+    @Test
+    public void shouldCancelAndRestoreAxioms() throws OWLOntologyCreationException {
+        OWLOntology o = ParallelDecompositionTestCase.getRandomOntology(new Random(7),
+                300);
+        for (int threads : new int[] { 1, 4 }) {
+            List<AxiomWrapper> axioms = AxiomSelector.wrap(AxiomSelector
+                    .selectAxioms(o));
+            Decomposer d = new Decomposer(axioms, new SyntacticLocalityChecker());
+            final DecompositionMonitor monitor = d.getMonitor();
+            RecordingListener canceller = new RecordingListener() {
+                @Override
+                public synchronized void progress(int p, int total) {
+                    if (p > 10) {
+                        monitor.cancel();
+                    }
+                }
+            };
+            monitor.addListener(canceller);
+            try {
+                if (threads == 1) {
+                    d.getAOS(ModuleType.BOT);
+                } else {
+                    d.getAOS(ModuleType.BOT, factory, threads);
+                }
+                fail("decomposition should have been cancelled");
+            } catch (DecompositionCancelledException e) {
+                assertTrue(monitor.isCancelled());
+            }
+            assertTrue(monitor.getAxiomsProcessed() < monitor.getAxiomsTotal());
+            // tautologies are back in the ontology
+            for (AxiomWrapper w : axioms) {
+                assertTrue(w.isUsed());
+            }
+            // the next decomposition runs once the monitor is reset
+            monitor.removeListener(canceller);
+            monitor.reset();
+            assertTrue(d.getAOS(ModuleType.BOT).size() > 0);
+        }
+    }
+
+    @Test
+    public void shouldKeepCancellationRequestedBeforeStart()
+            throws OWLOntologyCreationException {
+        OWLOntology o = ParallelDecompositionTestCase.getRandomOntology(new Random(7),
+                300);
+        Decomposer d = decomposer(o);
+        DecompositionMonitor monitor = d.getMonitor();
+        monitor.cancel();
+        try {
+            d.getAOS(ModuleType.BOT, factory, 4);
+            fail("decomposition should have been cancelled");
+        } catch (DecompositionCancelledException e) {
+            assertTrue(monitor.isCancelled());
+        }
+        assertEquals(0, monitor.getAxiomsProcessed());
+        monitor.reset();
+        assertFalse(monitor.isCancelled());
+        assertTrue(d.getAOS(ModuleType.BOT).size() > 0);
+    }
+
+    @Test
+    public void shouldRegisterWithMBeanServer() throws Exception {
+        DecompositionMonitor monitor = new DecompositionMonitor();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = monitor.register("test");
+        assertTrue(server.isRegistered(name));
+        assertEquals(Boolean.FALSE, server.getAttribute(name, "Cancelled"));
+        server.invoke(name, "cancel", null, null);
+        assertTrue(monitor.isCancelled());
+        monitor.unregister();
+        assertFalse(server.isRegistered(name));
+    }
+}
@@ -0,0 +1,258 @@
+package decomposition.test;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnonymousIndividual;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+
+import uk.ac.manchester.cs.atomicdecomposition.AtomicDecomposerOWLAPITOOLS;
+import uk.ac.manchester.cs.atomicdecomposition.AtomicDecomposition;
+import uk.ac.manchester.cs.owlapi.modularity.ModuleType;
+import decomposition.AxiomSelector;
+import decomposition.AxiomWrapper;
+import decomposition.Decomposer;
+import decomposition.DecomposerIO;
+import decomposition.SyntacticLocalityChecker;
+
+@SuppressWarnings("javadoc")
+public class DecompositionPersistenceTestCase {
+    @Test
+    public void shouldReadSavedDecomposition() throws OWLOntologyCreationException,
+            IOException {
+        OWLOntology o = ParallelDecompositionTestCase.getRandomOntology(
+                new Random(7), 300);
+        File file = File.createTempFile("decomposition", ".ad");
+        try {
+            for (ModuleType type : ModuleType.values()) {
+                AtomicDecomposerOWLAPITOOLS computed = new AtomicDecomposerOWLAPITOOLS(
+                        o, type);
+                computed.save(file);
+                AtomicDecomposition read = new AtomicDecomposerOWLAPITOOLS(o, type,
+                        1, file);
+                ParallelDecompositionTestCase.compare(type.toString(), computed, read);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void shouldIgnoreStaleDecomposition() throws OWLOntologyCreationException,
+            IOException {
+        OWLOntology o = ParallelDecompositionTestCase.getRandomOntology(
+                new Random(7), 100);
+        File file = File.createTempFile("decomposition", ".ad");
+        try {
+            new AtomicDecomposerOWLAPITOOLS(o, ModuleType.BOT).save(file);
+            // a different module type
+            assertNull(DecomposerIO.load(
+                    AxiomSelector.wrap(AxiomSelector.selectAxioms(o)),
+                    new SyntacticLocalityChecker(), ModuleType.TOP, file));
+            // different axioms: the file is written again
+            OWLDataFactory f = o.getOWLOntologyManager().getOWLDataFactory();
+            OWLAxiom ax = f.getOWLSubClassOfAxiom(
+                    f.getOWLClass(IRI.create("urn:test#C1")),
+                    f.getOWLClass(IRI.create("urn:test#C0")));
+            o.getOWLOntologyManager().addAxiom(o, ax);
+            assertNull(DecomposerIO.load(
+                    AxiomSelector.wrap(AxiomSelector.selectAxioms(o)),
+                    new SyntacticLocalityChecker(), ModuleType.BOT, file));
+            AtomicDecomposition read = new AtomicDecomposerOWLAPITOOLS(o,
+                    ModuleType.BOT, 1, file);
+            assertNotNull(read.getAtomForAxiom(ax));
+            assertNotNull(DecomposerIO.load(
+                    AxiomSelector.wrap(AxiomSelector.selectAxioms(o)),
+                    new SyntacticLocalityChecker(), ModuleType.BOT, file));
+            // a corrupted file is replaced as well
+            FileOutputStream out = new FileOutputStream(file);
+            out.write(new byte[] { 1, 2, 3 });
+            out.close();
+            ParallelDecompositionTestCase.compare("corrupted",
+                    new AtomicDecomposerOWLAPITOOLS(o, ModuleType.BOT),
+                    new AtomicDecomposerOWLAPITOOLS(o, ModuleType.BOT, 1, file));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void shouldRestoreIndexWithoutLocalityChecks()
+            throws OWLOntologyCreationException, IOException {
+        OWLOntology o = ParallelDecompositionTestCase.getRandomOntology(
+                new Random(11), 200);
+        File file = File.createTempFile("decomposition", ".ad");
+        try {
+            Decomposer computed = new Decomposer(AxiomSelector.wrap(AxiomSelector
+                    .selectAxioms(o)), new SyntacticLocalityChecker());
+            computed.getAOS(ModuleType.BOT);
+            DecomposerIO.save(computed, file);
+            final AtomicInteger checks = new AtomicInteger();
+            SyntacticLocalityChecker counting = new SyntacticLocalityChecker() {
+                @Override
+                public boolean local(OWLAxiom axiom) {
+                    checks.incrementAndGet();
+                    return super.local(axiom);
+                }
+            };
+            Decomposer read = DecomposerIO.load(
+                    AxiomSelector.wrap(AxiomSelector.selectAxioms(o)), counting,
+                    ModuleType.BOT, file);
+            assertEquals(0, checks.get());
+            // the restored index gives the same modules
+            for (OWLEntity e : o.getSignature()) {
+                Set<OWLEntity> sig = Collections.singleton(e);
+                assertEquals(axioms(computed.getModule(sig, false, ModuleType.BOT)),
+                        axioms(read.getModule(sig, false, ModuleType.BOT)));
+                assertEquals(axioms(computed.getModuleFromAtoms(sig, ModuleType.BOT)),
+                        axioms(read.getModuleFromAtoms(sig, ModuleType.BOT)));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    private static Set<OWLAxiom> axioms(Collection<AxiomWrapper> wrappers) {
+        Set<OWLAxiom> toReturn = new HashSet<OWLAxiom>();
+        for (AxiomWrapper p : wrappers) {
+            toReturn.add(p.getAxiom());
+        }
+        return toReturn;
+    }
+
+    @Test
+    public void shouldDecomposeIfCacheCannotBeSaved()
+            throws OWLOntologyCreationException, IOException {
+        OWLOntology o = ParallelDecompositionTestCase.getRandomOntology(
+                new Random(7), 100);
+        File dir = File.createTempFile("decomposition", "");
+        dir.delete();
+        // the parent directory does not exist, so the file cannot be written
+        File file = new File(dir, "decomposition.ad");
+        AtomicDecomposition read = new AtomicDecomposerOWLAPITOOLS(o, ModuleType.BOT,
+                1, file);
+        assertFalse(file.exists());
+        ParallelDecompositionTestCase.compare("not saved",
+                new AtomicDecomposerOWLAPITOOLS(o, ModuleType.BOT), read);
+    }
+
+    @Test
+    public void shouldReplaceCacheFileWithoutLeavingTemporaryFiles()
+            throws OWLOntologyCreationException, IOException {
+        OWLOntology o = ParallelDecompositionTestCase.getRandomOntology(
+                new Random(7), 100);
+        File dir = File.createTempFile("decomposition", "");
+        dir.delete();
+        dir.mkdir();
+        File file = new File(dir, "decomposition.ad");
+        try {
+            new AtomicDecomposerOWLAPITOOLS(o, ModuleType.BOT).save(file);
+            new AtomicDecomposerOWLAPITOOLS(o, ModuleType.TOP).save(file);
+            assertArrayEquals(new String[] { file.getName() }, dir.list());
+            assertNull(DecomposerIO.load(
+                    AxiomSelector.wrap(AxiomSelector.selectAxioms(o)),
+                    new SyntacticLocalityChecker(), ModuleType.BOT, file));
+            assertNotNull(DecomposerIO.load(
+                    AxiomSelector.wrap(AxiomSelector.selectAxioms(o)),
+                    new SyntacticLocalityChecker(), ModuleType.TOP, file));
+        } finally {
+            file.delete();
+            dir.delete();
+        }
+    }
+
+    /** each anonymous individual is linked to a different named class, so
+     * that all the axioms can be told apart */
+    private static OWLOntology anonymousOntology(boolean reversed)
+            throws OWLOntologyCreationException {
+        OWLOntologyManager m = OWLManager.createOWLOntologyManager();
+        OWLOntology o = m.createOntology();
+        OWLDataFactory f = m.getOWLDataFactory();
+        OWLObjectProperty p = f.getOWLObjectProperty(IRI.create("urn:test#p"));
+        for (int k = 0; k < 20; k++) {
+            int i = reversed ? 19 - k : k;
+            OWLClass c = f.getOWLClass(IRI.create("urn:test#C" + i));
+            OWLAnonymousIndividual a = f.getOWLAnonymousIndividual();
+            m.addAxiom(o, f.getOWLClassAssertionAxiom(c, a));
+            m.addAxiom(o, f.getOWLObjectPropertyAssertionAxiom(p,
+                    f.getOWLNamedIndividual(IRI.create("urn:test#i" + i)), a));
+            m.addAxiom(o, f.getOWLSubClassOfAxiom(c,
+                    f.getOWLClass(IRI.create("urn:test#C" + (i + 1)))));
+        }
+        return o;
+    }
+
+    @Test
+    public void shouldReadDecompositionWithOtherAnonymousIndividuals()
+            throws OWLOntologyCreationException, IOException {
+        File file = File.createTempFile("decomposition", ".ad");
+        try {
+            new AtomicDecomposerOWLAPITOOLS(anonymousOntology(false), ModuleType.BOT)
+                    .save(file);
+            // same axioms, with different node ids
+            OWLOntology o = anonymousOntology(true);
+            Decomposer read = DecomposerIO.load(
+                    AxiomSelector.wrap(AxiomSelector.selectAxioms(o)),
+                    new SyntacticLocalityChecker(), ModuleType.BOT, file);
+            assertNotNull(read);
+            Decomposer computed = new Decomposer(AxiomSelector.wrap(AxiomSelector
+                    .selectAxioms(o)), new SyntacticLocalityChecker());
+            computed.getAOS(ModuleType.BOT);
+            for (OWLEntity e : o.getSignature()) {
+                Set<OWLEntity> sig = Collections.singleton(e);
+                assertEquals(axioms(computed.getModuleFromAtoms(sig, ModuleType.BOT)),
+                        axioms(read.getModuleFromAtoms(sig, ModuleType.BOT)));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void shouldNotSaveAxiomsDifferingInAnonymousIndividuals()
+            throws OWLOntologyCreationException, IOException {
+        OWLOntologyManager m = OWLManager.createOWLOntologyManager();
+        OWLOntology o = m.createOntology();
+        OWLDataFactory f = m.getOWLDataFactory();
+        OWLClass c = f.getOWLClass(IRI.create("urn:test#C"));
+        m.addAxiom(o, f.getOWLClassAssertionAxiom(c, f.getOWLAnonymousIndividual()));
+        m.addAxiom(o, f.getOWLClassAssertionAxiom(c, f.getOWLAnonymousIndividual()));
+        File file = File.createTempFile("decomposition", ".ad");
+        file.delete();
+        try {
+            try {
+                new AtomicDecomposerOWLAPITOOLS(o, ModuleType.BOT).save(file);
+                fail("the axioms have no canonical order");
+            } catch (IOException e) {
+                assertFalse(file.exists());
+            }
+            // the decomposition is still computed
+            AtomicDecomposition ad = new AtomicDecomposerOWLAPITOOLS(o, ModuleType.BOT,
+                    1, file);
+            assertFalse(file.exists());
+            assertEquals(new AtomicDecomposerOWLAPITOOLS(o, ModuleType.BOT).getAtoms(),
+                    ad.getAtoms());
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package decomposition.test;
+
+import java.util.Random;
+
+import uk.ac.manchester.cs.chainsaw.FastSet;
+import uk.ac.manchester.cs.chainsaw.FastSetBitmap;
+import uk.ac.manchester.cs.chainsaw.FastSetSimple;
+
+/** times the FastSet operations for the array and bitmap implementations, on
+ * sets of similar and of very different sizes. Not part of the test suite: run
+ * main() with the set size and the number of repetitions as arguments. */
+@SuppressWarnings("javadoc")
+public class FastSetPerformanceTest {
+    private static FastSet create(boolean dense) {
+        return dense ? new FastSetBitmap() : new FastSetSimple();
+    }
+
+    private static FastSet random(boolean dense, Random r, int size, int range) {
+        FastSet set = create(dense);
+        for (int i = 0; i < size; i++) {
+            set.add(r.nextInt(range));
+        }
+        return set;
+    }
+
+    private static void run(boolean dense, int size, int repetitions) {
+        Random r = new Random(23);
+        int range = size * 4;
+        // the results are accumulated so that the work is not optimized away
+        int check = 0;
+        long start = System.nanoTime();
+        for (int k = 0; k < repetitions; k++) {
+            FastSet set = create(dense);
+            for (int i = 0; i < size; i++) {
+                set.add(r.nextInt(range));
+            }
+            check += set.size();
+        }
+        long add = System.nanoTime() - start;
+        FastSet large = random(dense, r, size, range);
+        FastSet similar = random(dense, r, size, range);
+        FastSet[] small = new FastSet[1000];
+        for (int i = 0; i < small.length; i++) {
+            small[i] = random(dense, r, 4, range);
+        }
+        start = System.nanoTime();
+        for (int k = 0; k < repetitions; k++) {
+            for (FastSet s : small) {
+                check += large.containsAny(s) ? 1 : 0;
+                check += large.containsAll(s) ? 1 : 0;
+                check += s.containsAny(large) ? 1 : 0;
+            }
+        }
+        long smallLarge = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int k = 0; k < repetitions; k++) {
+            check += large.containsAny(similar) ? 1 : 0;
+            check += large.containsAll(similar) ? 1 : 0;
+            FastSet union = create(dense);
+            union.addAll(large);
+            union.addAll(similar);
+            check += union.size();
+        }
+        long sameSize = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (int k = 0; k < repetitions; k++) {
+            FastSet copy = create(dense);
+            copy.addAll(large);
+            while (!copy.isEmpty()) {
+                copy.removeAt(copy.size() / 2);
+            }
+            for (int i = 0; i < large.size(); i++) {
+                check += large.get(i);
+            }
+        }
+        long removeAndScan = System.nanoTime() - start;
+        System.out.println("FastSetPerformanceTest " + (dense ? "bitmap" : "array")
+                + " size: " + size + " add: " + add / 1000000 + "ms small/large: "
+                + smallLarge / 1000000 + "ms same size: " + sameSize / 1000000
+                + "ms remove and scan: " + removeAndScan / 1000000 + "ms (" + check
+                + ")");
+    }
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        run(false, size, repetitions);
+        run(true, size, repetitions);
+    }
+}
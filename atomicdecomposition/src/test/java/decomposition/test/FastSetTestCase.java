@@ -0,0 +1,185 @@
+package decomposition.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import uk.ac.manchester.cs.chainsaw.ArrayIntMap;
+import uk.ac.manchester.cs.chainsaw.FastSet;
+import uk.ac.manchester.cs.chainsaw.FastSetBitmap;
+import uk.ac.manchester.cs.chainsaw.FastSetSimple;
+
+@SuppressWarnings("javadoc")
+public class FastSetTestCase {
+    private interface SetFactory {
+        FastSet create();
+    }
+
+    private static final SetFactory simple = new SetFactory() {
+        @Override
+        public FastSet create() {
+            return new FastSetSimple();
+        }
+    };
+    private static final SetFactory bitmap = new SetFactory() {
+        @Override
+        public FastSet create() {
+            return new FastSetBitmap();
+        }
+    };
+
+    @Test
+    public void shouldBehaveAsSortedSet() {
+        for (SetFactory first : new SetFactory[] { simple, bitmap }) {
+            for (SetFactory second : new SetFactory[] { simple, bitmap }) {
+                check(first, second, new Random(5));
+            }
+        }
+    }
+
+    private void check(SetFactory first, SetFactory second, Random r) {
+        for (int round = 0; round < 200; round++) {
+            // sizes and ranges vary, so that both merges and exponential
+            // searches are used
+            int range = 1 + r.nextInt(2000);
+            FastSet a = first.create();
+            FastSet b = second.create();
+            TreeSet<Integer> ea = new TreeSet<Integer>();
+            TreeSet<Integer> eb = new TreeSet<Integer>();
+            fill(a, ea, r, r.nextInt(300), range);
+            fill(b, eb, r, r.nextInt(r.nextBoolean() ? 10 : 300), range);
+            assertContent(ea, a);
+            assertContent(eb, b);
+            TreeSet<Integer> common = new TreeSet<Integer>(ea);
+            common.retainAll(eb);
+            assertEquals(!common.isEmpty(), a.containsAny(b));
+            assertEquals(!common.isEmpty(), b.intersect(a));
+            assertEquals(ea.containsAll(eb), a.containsAll(b));
+            // a subset built from a
+            FastSet sub = second.create();
+            for (int i : ea) {
+                if (r.nextInt(10) == 0) {
+                    sub.add(i);
+                }
+            }
+            assertTrue(a.containsAll(sub));
+            a.addAll(b);
+            ea.addAll(eb);
+            assertContent(ea, a);
+            // removals by value, by position and by range
+            int[] values = new int[r.nextInt(20)];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = r.nextInt(range);
+                ea.remove(values[i]);
+            }
+            a.removeAllValues(values);
+            assertContent(ea, a);
+            if (!ea.isEmpty()) {
+                int position = r.nextInt(ea.size());
+                ea.remove(a.get(position));
+                a.removeAt(position);
+                assertContent(ea, a);
+            }
+            if (ea.size() > 2) {
+                int start = r.nextInt(ea.size() / 2);
+                int end = start + r.nextInt(ea.size() - start);
+                List<Integer> list = new ArrayList<Integer>(ea);
+                ea.removeAll(list.subList(start, end));
+                a.removeAll(start, end);
+                assertContent(ea, a);
+            }
+        }
+    }
+
+    private void fill(FastSet set, TreeSet<Integer> expected, Random r, int n, int range) {
+        for (int i = 0; i < n; i++) {
+            int value = r.nextInt(range);
+            set.add(value);
+            expected.add(value);
+        }
+    }
+
+    private void assertContent(TreeSet<Integer> expected, FastSet actual) {
+        assertEquals(expected.size(), actual.size());
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        int i = 0;
+        int[] array = actual.toIntArray();
+        for (int value : expected) {
+            assertEquals(value, actual.get(i));
+            assertEquals(value, array[i]);
+            assertTrue(actual.contains(value));
+            i++;
+        }
+        assertFalse(actual.contains(-1));
+    }
+
+    @Test
+    public void shouldNotSortTheValuesToRemove() {
+        FastSet set = new FastSetSimple();
+        for (int i = 0; i < 10; i++) {
+            set.add(i);
+        }
+        int[] values = { 7, 2, 5 };
+        set.removeAllValues(values);
+        assertArrayEquals(new int[] { 7, 2, 5 }, values);
+        assertEquals(7, set.size());
+        assertFalse(set.contains(2));
+        assertFalse(set.contains(5));
+        assertFalse(set.contains(7));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectNegativeValuesInBitmap() {
+        new FastSetBitmap().add(-1);
+    }
+
+    @Test
+    public void shouldSwitchDenseValuesToBitmap() {
+        ArrayIntMap map = new ArrayIntMap();
+        for (int i = 0; i < 10000; i++) {
+            map.put(1, i);
+            map.put(2, i * 100);
+        }
+        assertTrue(map.get(1) instanceof FastSetBitmap);
+        assertTrue(map.get(2) instanceof FastSetSimple);
+        assertEquals(10000, map.get(1).size());
+        assertEquals(9999, map.get(1).get(9999));
+        map.get(1).remove(5);
+        assertFalse(map.get(1).contains(5));
+        assertEquals(6, map.get(1).get(5));
+    }
+
+    @Test
+    public void shouldIterateKeysAndValuesWithoutBoxing() {
+        ArrayIntMap map = new ArrayIntMap();
+        Random r = new Random(3);
+        TreeSet<Integer> keys = new TreeSet<Integer>();
+        TreeSet<Integer> values = new TreeSet<Integer>();
+        for (int i = 0; i < 500; i++) {
+            int key = r.nextInt(100) * 3;
+            int value = r.nextInt(1000);
+            map.put(key, value);
+            keys.add(key);
+            values.add(value);
+        }
+        assertContent(keys, map.keySet());
+        assertContent(values, map.getAllValues());
+        int k = map.nextKey(0);
+        for (int key : keys) {
+            assertEquals(key, k);
+            assertTrue(map.containsKey(k));
+            k = map.nextKey(k + 1);
+        }
+        assertEquals(-1, k);
+        assertFalse(map.containsKey(1));
+        assertTrue(map.get(1).isEmpty());
+        map.clear();
+        assertEquals(-1, map.nextKey(0));
+        assertTrue(map.getAllValues().isEmpty());
+    }
+}
@@ -0,0 +1,102 @@
+package decomposition.test;
+
+import static org.junit.Assert.*;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLObject;
+
+import decomposition.AxiomWrapper;
+import decomposition.HybridLocalityChecker;
+import decomposition.LocalityChecker;
+import decomposition.Signature;
+import decomposition.SyntacticLocalityChecker;
+
+@SuppressWarnings("javadoc")
+public class HybridLocalityTestCase {
+    private final OWLDataFactory df = OWLManager.getOWLDataFactory();
+    private final OWLClass a = df.getOWLClass(IRI.create("urn:test#A"));
+    private final OWLClass b = df.getOWLClass(IRI.create("urn:test#B"));
+    private final OWLClass c = df.getOWLClass(IRI.create("urn:test#C"));
+
+    /** semantic checker stub: only the axioms in the set are local */
+    private static class Stub implements LocalityChecker {
+        final Set<OWLAxiom> local = new HashSet<OWLAxiom>();
+        int calls = 0;
+        Signature sig;
+
+        @Override
+        public boolean local(OWLAxiom axiom) {
+            calls++;
+            return local.contains(axiom);
+        }
+
+        @Override
+        public boolean local(AxiomWrapper axiom) {
+            return local(axiom.getAxiom());
+        }
+
+        @Override
+        public void preprocessOntology(Collection<AxiomWrapper> vec) {}
+
+        @Override
+        public void setSignatureValue(Signature s) {
+            sig = s;
+        }
+
+        @Override
+        public Signature getSignature() {
+            return sig;
+        }
+
+        @Override
+        public boolean isTopEquivalent(OWLObject expr) {
+            return false;
+        }
+
+        @Override
+        public boolean isBotEquivalent(OWLObject expr) {
+            return false;
+        }
+    }
+
+    @Test
+    public void shouldAskSemanticCheckerOnlyForNonLocalAxioms() {
+        Stub semantic = new Stub();
+        OWLAxiom semanticallyLocal = df.getOWLSubClassOfAxiom(a,
+                df.getOWLObjectUnionOf(b, df.getOWLObjectComplementOf(b)));
+        OWLAxiom nonLocal = df.getOWLSubClassOfAxiom(a, b);
+        OWLAxiom syntacticallyLocal = df.getOWLSubClassOfAxiom(c, b);
+        semantic.local.add(semanticallyLocal);
+        HybridLocalityChecker checker = new HybridLocalityChecker(
+                new SyntacticLocalityChecker(), semantic);
+        Set<OWLEntity> entities = new HashSet<OWLEntity>();
+        entities.add(a);
+        // B in the signature: B or not B is not syntactically top equivalent
+        entities.add(b);
+        Signature sig = new Signature(entities);
+        checker.setSignatureValue(sig);
+        assertSame(sig, semantic.getSignature());
+        assertTrue(checker.local(syntacticallyLocal));
+        assertEquals(0, semantic.calls);
+        assertFalse(checker.local(nonLocal));
+        assertTrue(checker.local(semanticallyLocal));
+        assertEquals(2, semantic.calls);
+        assertEquals(3, checker.getChecks(AxiomType.SUBCLASS_OF));
+        assertEquals(2, checker.getSemanticChecks(AxiomType.SUBCLASS_OF));
+        assertEquals(1, checker.getChangedAnswers(AxiomType.SUBCLASS_OF));
+        assertEquals(0, checker.getChecks(AxiomType.DISJOINT_CLASSES));
+        checker.clearCounters();
+        assertTrue(checker.getCheckedTypes().isEmpty());
+    }
+}
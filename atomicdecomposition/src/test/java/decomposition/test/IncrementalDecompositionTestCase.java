@@ -0,0 +1,49 @@
+package decomposition.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.model.AddAxiom;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.RemoveAxiom;
+
+import uk.ac.manchester.cs.atomicdecomposition.AtomicDecomposerOWLAPITOOLS;
+import uk.ac.manchester.cs.atomicdecomposition.AtomicDecomposition;
+import uk.ac.manchester.cs.owlapi.modularity.ModuleType;
+
+@SuppressWarnings("javadoc")
+public class IncrementalDecompositionTestCase {
+    @Test
+    public void shouldMatchFullDecompositionAfterChanges()
+            throws OWLOntologyCreationException {
+        for (ModuleType type : ModuleType.values()) {
+            Random r = new Random(17);
+            OWLOntology o = ParallelDecompositionTestCase.getRandomOntology(r, 200);
+            List<OWLAxiom> extra = new ArrayList<OWLAxiom>(ParallelDecompositionTestCase
+                    .getRandomOntology(r, 200).getLogicalAxioms());
+            OWLOntologyManager m = o.getOWLOntologyManager();
+            AtomicDecomposerOWLAPITOOLS ad = new AtomicDecomposerOWLAPITOOLS(o, type);
+            m.addOntologyChangeListener(ad);
+            for (int i = 0; i < 30; i++) {
+                List<OWLOntologyChange> changes = new ArrayList<OWLOntologyChange>();
+                List<OWLAxiom> axioms = new ArrayList<OWLAxiom>(o.getLogicalAxioms());
+                changes.add(new RemoveAxiom(o, axioms.get(r.nextInt(axioms.size()))));
+                if (i % 3 == 0) {
+                    changes.add(new RemoveAxiom(o, axioms.get(r.nextInt(axioms.size()))));
+                }
+                changes.add(new AddAxiom(o, extra.get(r.nextInt(extra.size()))));
+                m.applyChanges(changes);
+                ParallelDecompositionTestCase.compare(type + " change " + i,
+                        new AtomicDecomposerOWLAPITOOLS(o, type), ad);
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package decomposition.test;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+
+import uk.ac.manchester.cs.owlapi.modularity.ModuleType;
+import decomposition.AxiomSelector;
+import decomposition.AxiomWrapper;
+import decomposition.Decomposer;
+import decomposition.SyntacticLocalityChecker;
+
+/** compares module extraction from the axioms with module extraction from the
+ * atomic decomposition. Not part of the test suite: run main() with the
+ * ontology size and the number of signatures as arguments. */
+@SuppressWarnings("javadoc")
+public class ModuleExtractionPerformanceTest {
+    private static void run(int size, int signatures, ModuleType type)
+            throws OWLOntologyCreationException {
+        OWLOntology o = ParallelDecompositionTestCase.getRandomOntology(new Random(17),
+                size);
+        List<Set<OWLEntity>> sigs = BatchModuleExtractionTestCase.getSignatures(o,
+                new Random(19), signatures);
+        Decomposer decomposer = new Decomposer(AxiomSelector.wrap(AxiomSelector
+                .selectAxioms(o)), new SyntacticLocalityChecker());
+        decomposer.getAOS(type);
+        // warm up and check
+        for (Set<OWLEntity> sig : sigs) {
+            Collection<AxiomWrapper> fromAtoms = decomposer.getModuleFromAtoms(sig, type);
+            assertEquals(new HashSet<AxiomWrapper>(decomposer.getModule(sig, false, type)),
+                    new HashSet<AxiomWrapper>(fromAtoms));
+        }
+        long start = System.nanoTime();
+        for (Set<OWLEntity> sig : sigs) {
+            decomposer.getModule(sig, false, type);
+        }
+        long axioms = System.nanoTime() - start;
+        start = System.nanoTime();
+        for (Set<OWLEntity> sig : sigs) {
+            decomposer.getModuleFromAtoms(sig, type);
+        }
+        long atoms = System.nanoTime() - start;
+        System.out.println("ModuleExtractionPerformanceTest " + type + " axioms: "
+                + size + " signatures: " + signatures + " from axioms: " + axioms
+                / 1000000 + "ms from atoms: " + atoms / 1000000 + "ms");
+    }
+
+    public static void main(String[] args) throws OWLOntologyCreationException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int signatures = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        run(size, signatures, ModuleType.BOT);
+        run(size, signatures, ModuleType.TOP);
+    }
+}
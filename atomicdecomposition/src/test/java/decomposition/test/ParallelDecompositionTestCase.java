@@ -0,0 +1,262 @@
+package decomposition.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+
+import uk.ac.manchester.cs.atomicdecomposition.Atom;
+import uk.ac.manchester.cs.atomicdecomposition.AtomicDecomposerOWLAPITOOLS;
+import uk.ac.manchester.cs.atomicdecomposition.AtomicDecomposition;
+import uk.ac.manchester.cs.owlapi.modularity.ModuleType;
+import decomposition.AxiomSelector;
+import decomposition.AxiomWrapper;
+import decomposition.LocalityChecker;
+import decomposition.LocalityCheckerFactory;
+import decomposition.SigIndex;
+import decomposition.SyntacticLocalityChecker;
+
+@SuppressWarnings("javadoc")
+public class ParallelDecompositionTestCase {
+    @Test
+    public void shouldBuildSameAtomsOnChain() throws OWLOntologyCreationException {
+        OWLOntology o = getChainOntology();
+        for (ModuleType type : ModuleType.values()) {
+            compare(o, type);
+        }
+    }
+
+    @Test
+    public void shouldBuildSameAtomsOnRandomOntology()
+            throws OWLOntologyCreationException {
+        OWLOntology o = getRandomOntology(new Random(42), 300);
+        for (ModuleType type : ModuleType.values()) {
+            compare(o, type);
+        }
+    }
+
+    @Test
+    public void shouldBuildSameSigIndex() throws OWLOntologyCreationException {
+        OWLOntology o = getRandomOntology(new Random(42), 3000);
+        // both indexes are used at the same time, so they cannot share wrappers
+        SigIndex sequential = new SigIndex(new SyntacticLocalityChecker());
+        sequential.preprocessOntology(AxiomSelector.wrap(AxiomSelector.selectAxioms(o)));
+        SigIndex parallel = new SigIndex(new SyntacticLocalityChecker());
+        parallel.preprocessOntology(AxiomSelector.wrap(AxiomSelector.selectAxioms(o)),
+                new LocalityCheckerFactory() {
+                    @Override
+                    public LocalityChecker createChecker() {
+                        return new SyntacticLocalityChecker();
+                    }
+                }, 4);
+        assertEquals(sequential.nProcessedAx(), parallel.nProcessedAx());
+        for (boolean top : new boolean[] { true, false }) {
+            assertEquals(axioms(sequential.getNonLocal(top)),
+                    axioms(parallel.getNonLocal(top)));
+        }
+        for (OWLEntity e : o.getSignature()) {
+            assertEquals(axioms(sequential.getAxioms(e)), axioms(parallel.getAxioms(e)));
+        }
+        // a frozen index has the same posting lists
+        parallel.freeze();
+        assertTrue(parallel.isFrozen());
+        for (OWLEntity e : o.getSignature()) {
+            assertEquals(axioms(sequential.getAxioms(e)), axioms(parallel.getAxioms(e)));
+        }
+        // processing an axiom makes it mutable again
+        AxiomWrapper removed = parallel.getNonLocal(false).iterator().next();
+        removed.setUsed(false);
+        parallel.processAx(removed);
+        assertFalse(parallel.isFrozen());
+        assertFalse(parallel.isNonLocal(removed, false));
+        for (OWLEntity e : removed.getAxiom().getSignature()) {
+            assertFalse(parallel.getAxioms(e).contains(removed));
+        }
+    }
+
+    @Test
+    public void shouldReindexWrappersFromAnotherIndex()
+            throws OWLOntologyCreationException {
+        OWLOntology o = getRandomOntology(new Random(42), 300);
+        List<AxiomWrapper> wrappers = AxiomSelector.wrap(AxiomSelector.selectAxioms(o));
+        // the first index gives the wrappers ids in a different order
+        List<AxiomWrapper> reversed = new ArrayList<AxiomWrapper>(wrappers);
+        Collections.reverse(reversed);
+        new SigIndex(new SyntacticLocalityChecker()).preprocessOntology(reversed);
+        SigIndex shared = new SigIndex(new SyntacticLocalityChecker());
+        shared.preprocessOntology(wrappers);
+        SigIndex fresh = new SigIndex(new SyntacticLocalityChecker());
+        fresh.preprocessOntology(AxiomSelector.wrap(AxiomSelector.selectAxioms(o)));
+        assertEquals(fresh.nProcessedAx(), shared.nProcessedAx());
+        for (boolean top : new boolean[] { true, false }) {
+            assertEquals(axioms(fresh.getNonLocal(top)), axioms(shared.getNonLocal(top)));
+        }
+        for (OWLEntity e : o.getSignature()) {
+            assertEquals(axioms(fresh.getAxioms(e)), axioms(shared.getAxioms(e)));
+        }
+    }
+
+    private List<OWLAxiom> axioms(Collection<AxiomWrapper> wrappers) {
+        List<OWLAxiom> list = new ArrayList<OWLAxiom>();
+        for (AxiomWrapper w : wrappers) {
+            list.add(w.getAxiom());
+        }
+        return list;
+    }
+
+    private void compare(OWLOntology o, ModuleType type) {
+        compare(type.toString(), new AtomicDecomposerOWLAPITOOLS(o, type),
+                new AtomicDecomposerOWLAPITOOLS(o, type, 4));
+    }
+
+    private OWLOntology getChainOntology() throws OWLOntologyCreationException {
+        OWLOntologyManager m = OWLManager.createOWLOntologyManager();
+        OWLOntology o = m.createOntology();
+        OWLDataFactory f = m.getOWLDataFactory();
+        OWLClass powerYoga = f.getOWLClass(IRI.create("urn:test#PowerYoga"));
+        OWLClass yoga = f.getOWLClass(IRI.create("urn:test#Yoga"));
+        OWLClass relaxation = f.getOWLClass(IRI.create("urn:test#Relaxation"));
+        OWLClass activity = f.getOWLClass(IRI.create("urn:test#Activity"));
+        m.addAxiom(o, f.getOWLSubClassOfAxiom(powerYoga, yoga));
+        m.addAxiom(o, f.getOWLSubClassOfAxiom(yoga, relaxation));
+        m.addAxiom(o, f.getOWLSubClassOfAxiom(relaxation, activity));
+        return o;
+    }
+
+    /** check that two decompositions have the same atoms, tautologies,
+     * dependencies, indexes and principal ideals */
+    static void compare(String message, AtomicDecomposition expected,
+            AtomicDecomposition actual) {
+        assertEquals(message, expected.getAtoms(), actual.getAtoms());
+        assertEquals(message, expected.getTautologies(), actual.getTautologies());
+        assertEquals(message, expected.getTopAtoms(), actual.getTopAtoms());
+        assertEquals(message, expected.getBottomAtoms(), actual.getBottomAtoms());
+        assertEquals(message, dependencies(expected, true), dependencies(actual, true));
+        assertEquals(message, dependencies(expected, false),
+                dependencies(actual, false));
+        assertEquals(message, expected.getTermBasedIndex(), actual.getTermBasedIndex());
+        assertEquals(message, atomsForAxioms(expected), atomsForAxioms(actual));
+        for (Atom a : expected.getAtoms()) {
+            assertEquals(message, expected.getPrincipalIdeal(a),
+                    actual.getPrincipalIdeal(a));
+            assertEquals(message, expected.getPrincipalIdealSignature(a),
+                    actual.getPrincipalIdealSignature(a));
+        }
+    }
+
+    private static Map<Atom, Set<Atom>> dependencies(AtomicDecomposition ad,
+            boolean direct) {
+        Map<Atom, Set<Atom>> map = new HashMap<Atom, Set<Atom>>();
+        for (Atom a : ad.getAtoms()) {
+            map.put(a, ad.getDependencies(a, direct));
+        }
+        return map;
+    }
+
+    private static Map<OWLAxiom, Atom> atomsForAxioms(AtomicDecomposition ad) {
+        List<OWLAxiom> axioms = new ArrayList<OWLAxiom>();
+        for (Atom a : ad.getAtoms()) {
+            axioms.addAll(a.getAxioms());
+            for (OWLAxiom ax : a.getAxioms()) {
+                assertSame(a, ad.getAtomForAxiom(ax));
+            }
+        }
+        axioms.addAll(ad.getTautologies());
+        Map<OWLAxiom, Atom> map = ad.getAtomsForAxioms(axioms);
+        for (OWLAxiom ax : ad.getTautologies()) {
+            assertNull(ad.getAtomForAxiom(ax));
+        }
+        return map;
+    }
+
+    static OWLOntology getRandomOntology(Random r, int size)
+            throws OWLOntologyCreationException {
+        OWLOntologyManager m = OWLManager.createOWLOntologyManager();
+        OWLOntology o = m.createOntology();
+        OWLDataFactory f = m.getOWLDataFactory();
+        OWLClass[] classes = new OWLClass[size / 2];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = f.getOWLClass(IRI.create("urn:test#C" + i));
+        }
+        OWLObjectProperty[] properties = new OWLObjectProperty[5];
+        for (int i = 0; i < properties.length; i++) {
+            properties[i] = f.getOWLObjectProperty(IRI.create("urn:test#p" + i));
+        }
+        OWLNamedIndividual[] individuals = new OWLNamedIndividual[10];
+        for (int i = 0; i < individuals.length; i++) {
+            individuals[i] = f.getOWLNamedIndividual(IRI.create("urn:test#i" + i));
+        }
+        // axioms mostly refer to classes with a lower index in their right hand
+        // side, so that the ontology is not a single big cycle
+        for (int i = 0; i < size; i++) {
+            int index = 1 + r.nextInt(classes.length - 1);
+            OWLClass a = classes[index];
+            OWLClass b = classes[r.nextInt(index)];
+            OWLClass c = classes[r.nextInt(index)];
+            OWLObjectProperty p = properties[r.nextInt(properties.length)];
+            OWLObjectProperty q = properties[r.nextInt(properties.length)];
+            switch (r.nextInt(20)) {
+                case 0:
+                case 1:
+                case 2:
+                    m.addAxiom(o, f.getOWLSubClassOfAxiom(a,
+                            f.getOWLObjectSomeValuesFrom(p, b)));
+                    break;
+                case 3:
+                case 4:
+                    m.addAxiom(o, f.getOWLEquivalentClassesAxiom(a,
+                            f.getOWLObjectIntersectionOf(b,
+                                    f.getOWLObjectSomeValuesFrom(p, c))));
+                    break;
+                case 5:
+                case 6:
+                    m.addAxiom(o, f.getOWLDisjointClassesAxiom(a, b));
+                    break;
+                case 7:
+                    m.addAxiom(o, f.getOWLObjectPropertyDomainAxiom(p, b));
+                    break;
+                case 8:
+                    m.addAxiom(o, f.getOWLSubObjectPropertyOfAxiom(p, q));
+                    break;
+                case 9:
+                    m.addAxiom(o, f.getOWLClassAssertionAxiom(a,
+                            individuals[r.nextInt(individuals.length)]));
+                    break;
+                case 10:
+                    m.addAxiom(o, f.getOWLSubClassOfAxiom(
+                            f.getOWLObjectAllValuesFrom(p, a), b));
+                    break;
+                case 11:
+                    m.addAxiom(o, f.getOWLDeclarationAxiom(a));
+                    break;
+                default:
+                    m.addAxiom(o, f.getOWLSubClassOfAxiom(a, b));
+                    break;
+            }
+        }
+        // a tautology and an axiom which is not local wrt the empty signature
+        m.addAxiom(o, f.getOWLSubClassOfAxiom(classes[0], f.getOWLThing()));
+        m.addAxiom(o, f.getOWLSubClassOfAxiom(f.getOWLThing(),
+                f.getOWLObjectSomeValuesFrom(properties[0], classes[1])));
+        return o;
+    }
+}
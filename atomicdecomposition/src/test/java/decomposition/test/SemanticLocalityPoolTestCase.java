@@ -0,0 +1,105 @@
+package decomposition.test;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClassExpression;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLDisjointClassesAxiom;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.reasoner.OWLReasonerFactory;
+
+import decomposition.AxiomSelector;
+import decomposition.AxiomWrapper;
+import decomposition.LocalityChecker;
+import decomposition.SemanticLocalityChecker;
+
+@SuppressWarnings("javadoc")
+public class SemanticLocalityPoolTestCase {
+    private OWLOntologyManager m;
+    private OWLDataFactory df;
+    private OWLReasonerFactory factory;
+    private final AtomicInteger queries = new AtomicInteger();
+    /** the disjointness of these two classes is not entailed */
+    private OWLDisjointClassesAxiom notEntailed;
+
+    @Before
+    public void setUp() {
+        m = OWLManager.createOWLOntologyManager();
+        df = m.getOWLDataFactory();
+        notEntailed = df.getOWLDisjointClassesAxiom(cl("A"), cl("E"));
+        factory = mock(OWLReasonerFactory.class);
+        when(factory.createReasoner(any(OWLOntology.class))).thenAnswer(
+                new Answer<OWLReasoner>() {
+                    @Override
+                    public OWLReasoner answer(InvocationOnMock invocation) {
+                        OWLReasoner r = mock(OWLReasoner.class);
+                        when(r.isEntailed(any(OWLAxiom.class))).thenAnswer(
+                                new Answer<Boolean>() {
+                                    @Override
+                                    public Boolean answer(InvocationOnMock i) {
+                                        queries.incrementAndGet();
+                                        return !notEntailed.equals(i.getArguments()[0]);
+                                    }
+                                });
+                        return r;
+                    }
+                });
+    }
+
+    private OWLClassExpression cl(String name) {
+        return df.getOWLClass(IRI.create("urn:test#" + name));
+    }
+
+    private List<AxiomWrapper> wrap(OWLAxiom... axioms) {
+        List<OWLAxiom> list = new ArrayList<OWLAxiom>();
+        Collections.addAll(list, axioms);
+        return AxiomSelector.wrap(list);
+    }
+
+    @Test
+    public void shouldCheckPairsAcrossPool() {
+        OWLAxiom local = df.getOWLDisjointClassesAxiom(cl("A"), cl("B"), cl("C"),
+                cl("D"));
+        OWLAxiom nonLocal = df.getOWLDisjointClassesAxiom(cl("A"), cl("B"), cl("C"),
+                cl("E"));
+        SemanticLocalityChecker checker = new SemanticLocalityChecker(factory, m, 4);
+        checker.preprocessOntology(wrap(local, nonLocal));
+        verify(factory, times(4)).createReasoner(any(OWLOntology.class));
+        assertTrue(checker.local(local));
+        assertEquals(6, queries.get());
+        assertFalse(checker.local(nonLocal));
+        checker.dispose();
+    }
+
+    @Test
+    public void shouldShareKernelsWithCreatedCheckers() {
+        OWLAxiom local = df.getOWLEquivalentClassesAxiom(cl("A"), cl("B"), cl("C"));
+        SemanticLocalityChecker checker = new SemanticLocalityChecker(factory, m, 2);
+        checker.preprocessOntology(wrap(local, notEntailed));
+        LocalityChecker worker = checker.getCheckerFactory().createChecker();
+        worker.preprocessOntology(wrap(local, notEntailed));
+        verify(factory, times(2)).createReasoner(any(OWLOntology.class));
+        assertTrue(worker.local(local));
+        assertFalse(worker.local(notEntailed));
+        Set<OWLClassExpression> none = Collections.emptySet();
+        assertTrue(worker.local(df.getOWLDisjointClassesAxiom(none)));
+        checker.dispose();
+    }
+}
@@ -58,6 +58,23 @@ public class SyntacticLocalityTestCase {
         test(df.getOWLEquivalentClassesAxiom(owlNothing, owlThing, a, b), false, a);
     }
 
+    @Test
+    public void shouldCacheLocalityOnSignatureProjection() {
+        axiom = df.getOWLSubClassOfAxiom(a, b);
+        test(axiom, false, a);
+        test(axiom, true, b);
+        // c is not in the axiom signature: same projection as {a}
+        test(axiom, false, a, c);
+        assertEquals(1, testSubject.getCacheHits());
+        assertEquals(2, testSubject.getCacheMisses());
+        // different polarity
+        test(axiom, true, true, a);
+        assertEquals(3, testSubject.getCacheMisses());
+        testSubject.preprocessOntology(Arrays.asList(new AxiomWrapper(axiom)));
+        test(axiom, false, a);
+        assertEquals(4, testSubject.getCacheMisses());
+    }
+
     @Test
     public void shouldBeLocalowlDisjointClassesAxiom() {
         axiom = df.getOWLDisjointClassesAxiom(a, b);
@@ -0,0 +1,324 @@
+/*
+ * This file is part of the OWL API.
+ *
+ * The contents of this file are subject to the LGPL License, Version 3.0.
+ *
+ * Copyright (C) 2011, The University of Manchester
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ *
+ * Alternatively, the contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2011, University of Manchester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.manchester.cs.owl.owlapi.alternateimpls;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyChangeBroadcastStrategy;
+import org.semanticweb.owlapi.model.OWLOntologyChangeListener;
+
+/** broadcast strategy delivering changes on an executor, so that the thread
+ * applying the changes does not wait for the listeners. Changes are delivered
+ * to each listener by one thread at a time, in the order they were broadcast;
+ * changes broadcast while a listener is busy are delivered together, in one
+ * call. A thread broadcasting changes waits while a listener has more than
+ * capacity changes not yet delivered, so that a slow listener slows down the
+ * writers instead of accumulating changes without bound; threads delivering
+ * changes never wait, so listeners can apply changes themselves.
+ * <p>
+ * Set it as default strategy, or add a listener with it, on a
+ * {@link LockingOWLOntologyManagerImpl}: the manager hands changes to
+ * asynchronous strategies after releasing its listener lock.
+ * 
+ * @author ignazio */
+public class AsynchronousChangeBroadcastStrategy implements
+        OWLOntologyChangeBroadcastStrategy {
+    private static final long serialVersionUID = 6530851873950316962L;
+    /** true on the threads delivering changes */
+    private static final ThreadLocal<Boolean> delivering = new ThreadLocal<Boolean>();
+    private final int capacity;
+    private transient Executor executor;
+    /** executor created by this strategy, shut down by {@link #shutdown()} */
+    private transient ExecutorService ownExecutor;
+    private transient ConcurrentMap<OWLOntologyChangeListener, Delivery> deliveries;
+    /** true once shutdown() has been called */
+    private transient volatile boolean shuttingDown;
+
+    /** strategy with its own daemon threads and a capacity of 10000 changes
+     * per listener */
+    public AsynchronousChangeBroadcastStrategy() {
+        this(10000);
+    }
+
+    /** @param capacity
+     *            number of changes that can be queued for a listener before
+     *            writers wait; a single broadcast larger than capacity is
+     *            queued once the listener has received all previous changes */
+    public AsynchronousChangeBroadcastStrategy(int capacity) {
+        this(null, capacity);
+    }
+
+    /** @param executor
+     *            executor delivering the changes; if null, the strategy creates
+     *            its own daemon threads
+     * @param capacity
+     *            number of changes that can be queued for a listener before
+     *            writers wait */
+    public AsynchronousChangeBroadcastStrategy(Executor executor, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: "
+                    + capacity);
+        }
+        this.capacity = capacity;
+        this.executor = executor;
+        init();
+    }
+
+    private void init() {
+        deliveries = new ConcurrentHashMap<OWLOntologyChangeListener, Delivery>();
+        if (executor == null) {
+            ownExecutor = Executors.newCachedThreadPool(new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "change-broadcast-"
+                            + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            executor = ownExecutor;
+        }
+    }
+
+    private void readObject(ObjectInputStream stream) throws IOException,
+            ClassNotFoundException {
+        stream.defaultReadObject();
+        init();
+    }
+
+    @Override
+    public void broadcastChanges(OWLOntologyChangeListener listener,
+            List<? extends OWLOntologyChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        while (true) {
+            Delivery d = deliveries.get(listener);
+            if (d == null) {
+                d = new Delivery(listener);
+                Delivery existing = deliveries.putIfAbsent(listener, d);
+                if (existing != null) {
+                    d = existing;
+                }
+            }
+            if (d.offer(changes)) {
+                return;
+            }
+            // the delivery was closed meanwhile; a new one is needed
+        }
+    }
+
+    /** wait until all changes broadcast so far have been delivered; must not be
+     * called by a listener
+     * 
+     * @throws InterruptedException
+     *             if interrupted while waiting */
+    public void flush() throws InterruptedException {
+        for (Delivery d : deliveries.values()) {
+            d.awaitDelivered();
+        }
+    }
+
+    /** stop the threads created by this strategy once the queued changes have
+     * been delivered; an executor passed to the constructor is not affected.
+     * Changes broadcast afterwards are rejected. */
+    public void shutdown() {
+        // running deliveries finish their queues instead of resubmitting
+        shuttingDown = true;
+        if (ownExecutor != null) {
+            ownExecutor.shutdown();
+        }
+    }
+
+    /** queue and delivery task for one listener */
+    private final class Delivery implements Runnable {
+        private final OWLOntologyChangeListener listener;
+        private final Lock lock = new ReentrantLock();
+        /** signalled when changes have been delivered */
+        private final Condition delivered = lock.newCondition();
+        private List<OWLOntologyChange> pending = new ArrayList<OWLOntologyChange>();
+        /** changes pending or being delivered */
+        private int queued = 0;
+        private boolean scheduled = false;
+        /** true once removed from the deliveries; no changes can be added */
+        private boolean closed = false;
+
+        Delivery(OWLOntologyChangeListener listener) {
+            this.listener = listener;
+        }
+
+        /** @return false if the delivery is closed */
+        boolean offer(List<? extends OWLOntologyChange> changes) {
+            boolean interrupted = false;
+            boolean schedule = false;
+            lock.lock();
+            try {
+                if (delivering.get() == null) {
+                    while (!closed && queued > 0 && queued + changes.size() > capacity) {
+                        try {
+                            delivered.await();
+                        } catch (InterruptedException e) {
+                            // queue the changes anyway, they cannot be dropped
+                            interrupted = true;
+                            break;
+                        }
+                    }
+                }
+                if (closed) {
+                    return false;
+                }
+                pending.addAll(changes);
+                queued += changes.size();
+                if (!scheduled) {
+                    scheduled = true;
+                    schedule = true;
+                }
+            } finally {
+                lock.unlock();
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (schedule) {
+                execute();
+            }
+            return true;
+        }
+
+        private void execute() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                lock.lock();
+                try {
+                    pending.clear();
+                    queued = 0;
+                    scheduled = false;
+                    delivered.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                throw e;
+            }
+        }
+
+        /** deliver one batch; if more changes arrive meanwhile, the task is
+         * executed again instead of looping, so that a busy listener does not
+         * keep a thread from the other listeners. Once the executor is shutting
+         * down, resubmitting would be rejected, so the remaining changes are
+         * delivered by this thread. */
+        @Override
+        public void run() {
+            while (deliverBatch()) {
+                if (!shuttingDown) {
+                    try {
+                        executor.execute(this);
+                        return;
+                    } catch (RejectedExecutionException e) {
+                        // an executor shut down by its owner: go on here
+                    }
+                }
+            }
+        }
+
+        /** @return true if more changes have been queued meanwhile */
+        private boolean deliverBatch() {
+            List<OWLOntologyChange> batch;
+            lock.lock();
+            try {
+                batch = pending;
+                pending = new ArrayList<OWLOntologyChange>();
+            } finally {
+                lock.unlock();
+            }
+            delivering.set(Boolean.TRUE);
+            try {
+                listener.ontologiesChanged(batch);
+            } catch (Throwable e) {
+                // Listener threw an exception
+                e.printStackTrace();
+            } finally {
+                delivering.remove();
+            }
+            boolean again;
+            lock.lock();
+            try {
+                queued -= batch.size();
+                delivered.signalAll();
+                again = !pending.isEmpty();
+                if (!again) {
+                    scheduled = false;
+                    closed = true;
+                    deliveries.remove(listener, this);
+                }
+            } finally {
+                lock.unlock();
+            }
+            return again;
+        }
+
+        void awaitDelivered() throws InterruptedException {
+            lock.lock();
+            try {
+                while (queued > 0) {
+                    delivered.await();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
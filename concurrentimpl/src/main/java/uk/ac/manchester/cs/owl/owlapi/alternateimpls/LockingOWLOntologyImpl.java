@@ -38,12 +38,18 @@
  */
 package uk.ac.manchester.cs.owl.owlapi.alternateimpls;
 
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
+import org.semanticweb.owlapi.model.OWLOntologyChange;
 import org.semanticweb.owlapi.model.OWLOntologyID;
 import org.semanticweb.owlapi.model.OWLOntologyManager;
 
+import uk.ac.manchester.cs.owl.owlapi.Internals;
 import uk.ac.manchester.cs.owl.owlapi.OWLOntologyImpl;
 
-/** threadsafe extension
+/** threadsafe extension; by default, the indexes are guarded by a read write
+ * lock, and changes are applied under the write lock
  * 
  * @author ignazio */
 public class LockingOWLOntologyImpl extends OWLOntologyImpl {
@@ -54,7 +60,57 @@ public class LockingOWLOntologyImpl extends OWLOntologyImpl {
      * @param ontologyID
      *            ontologyID */
     public LockingOWLOntologyImpl(OWLOntologyManager manager, OWLOntologyID ontologyID) {
+        this(manager, ontologyID, new ReadWriteLockingOWLOntologyInternals());
+    }
+
+    /** @param manager
+     *            manager
+     * @param ontologyID
+     *            ontologyID
+     * @param internals
+     *            threadsafe internals to use, such as
+     *            {@link LockingOWLOntologyInternals} or
+     *            {@link ReadWriteLockingOWLOntologyInternals} */
+    public LockingOWLOntologyImpl(OWLOntologyManager manager, OWLOntologyID ontologyID,
+            Internals internals) {
         super(manager, ontologyID);
-        internals = new LockingOWLOntologyInternals();
+        this.internals = internals;
+    }
+
+    /** @return the write lock of the internals, or null if they have none */
+    private Lock writeLock() {
+        if (internals instanceof ReadWriteLockingOWLOntologyInternals) {
+            return ((ReadWriteLockingOWLOntologyInternals) internals).getLock()
+                    .writeLock();
+        }
+        return null;
+    }
+
+    @Override
+    public List<OWLOntologyChange> applyChange(OWLOntologyChange change) {
+        Lock lock = writeLock();
+        if (lock == null) {
+            return super.applyChange(change);
+        }
+        lock.lock();
+        try {
+            return super.applyChange(change);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<OWLOntologyChange> applyChanges(List<OWLOntologyChange> changes) {
+        Lock lock = writeLock();
+        if (lock == null) {
+            return super.applyChanges(changes);
+        }
+        lock.lock();
+        try {
+            return super.applyChanges(changes);
+        } finally {
+            lock.unlock();
+        }
     }
 }
@@ -38,9 +38,20 @@
  */
 package uk.ac.manchester.cs.owl.owlapi.alternateimpls;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -50,26 +61,49 @@ import org.semanticweb.owlapi.model.ImpendingOWLOntologyChangeListener;
 import org.semanticweb.owlapi.model.OWLDataFactory;
 import org.semanticweb.owlapi.model.OWLImportsDeclaration;
 import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyAlreadyExistsException;
 import org.semanticweb.owlapi.model.OWLOntologyChange;
 import org.semanticweb.owlapi.model.OWLOntologyChangeBroadcastStrategy;
 import org.semanticweb.owlapi.model.OWLOntologyChangeListener;
 import org.semanticweb.owlapi.model.OWLOntologyChangeProgressListener;
 import org.semanticweb.owlapi.model.OWLOntologyChangeVetoException;
 import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyDocumentAlreadyExistsException;
 import org.semanticweb.owlapi.model.OWLOntologyFactory;
+import org.semanticweb.owlapi.model.OWLOntologyFactoryNotFoundException;
+import org.semanticweb.owlapi.model.OWLOntologyID;
 import org.semanticweb.owlapi.model.OWLOntologyLoaderConfiguration;
 import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.OWLOntologyRenameException;
+import org.semanticweb.owlapi.model.OWLRuntimeException;
+import org.semanticweb.owlapi.model.UnloadableImportException;
 import org.semanticweb.owlapi.util.CollectionFactory;
 
 import uk.ac.manchester.cs.owl.owlapi.OWLOntologyManagerImpl;
 
-/** @author ignazio threadsafe implementation */
+/** @author ignazio threadsafe implementation. Ontologies can be loaded by many
+ *         threads at once; changes applied by a thread while it loads are not
+ *         broadcast, and each import is loaded once, by the first thread
+ *         requesting it, while the other threads requesting it wait. Listeners
+ *         are called one broadcast at a time, except for listeners with an
+ *         {@link AsynchronousChangeBroadcastStrategy}, which receive the
+ *         changes on their own threads. */
 public class LockingOWLOntologyManagerImpl extends OWLOntologyManagerImpl implements
         OWLOntologyManager, OWLOntologyFactory.OWLOntologyCreationHandler {
     private static final long serialVersionUID = -1920953069359718891L;
-    private final Set<Object> broadcastChanges = CollectionFactory.createSyncSet();
+    /** number of nested loads of each thread currently loading */
+    private final Map<Thread, int[]> loadingThreads = CollectionFactory.createSyncMap();
     private final Lock listenerLock = new ReentrantLock();
+    /** change listeners and their strategies, guarded by listenerLock; the
+     * superclass map cannot be read from here */
+    private final Map<OWLOntologyChangeListener, OWLOntologyChangeBroadcastStrategy> changeListeners = new IdentityHashMap<OWLOntologyChangeListener, OWLOntologyChangeBroadcastStrategy>();
     private final Lock impendingLock = new ReentrantLock();
+    private final Lock registrationLock = new ReentrantLock();
+    /** imports being loaded, by IRI */
+    private final ConcurrentMap<IRI, ImportLoad> importLoads = new ConcurrentHashMap<IRI, ImportLoad>();
+    /** import each thread is waiting for */
+    private final Map<Thread, ImportLoad> waitingFor = new ConcurrentHashMap<Thread, ImportLoad>();
+    private volatile int loaderThreads = Runtime.getRuntime().availableProcessors();
 
     private <V> List<V> createList() {
         return new CopyOnWriteArrayList<V>();
@@ -92,12 +126,315 @@ public class LockingOWLOntologyManagerImpl extends OWLOntologyManagerImpl implem
         progressListeners = createList();
     }
 
+    /** @param threads
+     *            number of threads used by
+     *            {@link #loadOntologiesFromOntologyDocuments(Collection, OWLOntologyLoaderConfiguration)};
+     *            defaults to the number of processors */
+    public void setLoaderThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed: "
+                    + threads);
+        }
+        loaderThreads = threads;
+    }
+
+    /** @param sources
+     *            documents to load
+     * @return the loaded ontologies, in the order of the sources
+     * @throws OWLOntologyCreationException
+     *             if any document cannot be loaded
+     * @see #loadOntologiesFromOntologyDocuments(Collection,
+     *      OWLOntologyLoaderConfiguration) */
+    public List<OWLOntology> loadOntologiesFromOntologyDocuments(
+            Collection<? extends OWLOntologyDocumentSource> sources)
+            throws OWLOntologyCreationException {
+        return loadOntologiesFromOntologyDocuments(sources,
+                new OWLOntologyLoaderConfiguration());
+    }
+
+    /** load independent documents in parallel; imports shared between the
+     * documents are loaded once. A document already loaded, for example as an
+     * import of another document, is not loaded again.
+     * 
+     * @param sources
+     *            documents to load
+     * @param configuration
+     *            configuration for all the documents
+     * @return the loaded ontologies, in the order of the sources
+     * @throws OWLOntologyCreationException
+     *             the first failure, in the order of the sources, once all
+     *             documents have been attempted; runtime exceptions are
+     *             rethrown as they are */
+    public List<OWLOntology> loadOntologiesFromOntologyDocuments(
+            Collection<? extends OWLOntologyDocumentSource> sources,
+            final OWLOntologyLoaderConfiguration configuration)
+            throws OWLOntologyCreationException {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1,
+                Math.min(loaderThreads, sources.size())));
+        List<Future<OWLOntology>> futures = new ArrayList<Future<OWLOntology>>();
+        try {
+            for (final OWLOntologyDocumentSource source : sources) {
+                futures.add(executor.submit(new Callable<OWLOntology>() {
+                    @Override
+                    public OWLOntology call() throws OWLOntologyCreationException {
+                        return loadDocument(source, configuration);
+                    }
+                }));
+            }
+        } finally {
+            executor.shutdown();
+        }
+        List<OWLOntology> toReturn = new ArrayList<OWLOntology>();
+        Throwable failure = null;
+        for (Future<OWLOntology> f : futures) {
+            try {
+                toReturn.add(f.get());
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+                throw new OWLOntologyCreationException(e);
+            }
+        }
+        if (failure != null) {
+            throw creationException(failure);
+        }
+        return toReturn;
+    }
+
+    private static OWLOntologyCreationException creationException(Throwable t) {
+        if (t instanceof OWLOntologyCreationException) {
+            return (OWLOntologyCreationException) t;
+        }
+        if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        }
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new OWLOntologyCreationException(t);
+    }
+
+    /** @return the ontology for the document, loading it if needed */
+    private OWLOntology loadDocument(OWLOntologyDocumentSource source,
+            OWLOntologyLoaderConfiguration configuration)
+            throws OWLOntologyCreationException {
+        OWLOntology loaded = getLoadedOntology(source.getDocumentIRI());
+        if (loaded != null) {
+            return loaded;
+        }
+        try {
+            return loadOntologyFromOntologyDocument(source, configuration);
+        } catch (OWLOntologyCreationException e) {
+            // loaded meanwhile by another thread, as an import
+            loaded = getRegisteredOntology(e);
+            if (loaded == null) {
+                throw e;
+            }
+            return loaded;
+        }
+    }
+
+    /** @return the ontology whose registration caused the exception, or null
+     *         if the exception is not about an existing ontology */
+    private OWLOntology getRegisteredOntology(OWLOntologyCreationException e) {
+        if (e instanceof OWLOntologyAlreadyExistsException) {
+            return getOntology(((OWLOntologyAlreadyExistsException) e).getOntologyID());
+        }
+        if (e instanceof OWLOntologyDocumentAlreadyExistsException) {
+            return getLoadedOntology(((OWLOntologyDocumentAlreadyExistsException) e)
+                    .getOntologyDocumentIRI());
+        }
+        return null;
+    }
+
+    /** @return the ontology loaded from the document IRI, or null */
+    private OWLOntology getLoadedOntology(IRI documentIRI) {
+        for (Map.Entry<OWLOntologyID, IRI> e : documentIRIsByID.entrySet()) {
+            if (e.getValue().equals(documentIRI)) {
+                return ontologiesByID.get(e.getKey());
+            }
+        }
+        return null;
+    }
+
+    /** same as the superclass implementation, but the state of the load is
+     * kept per thread, so that many threads can load at the same time */
     @Override
-    protected synchronized OWLOntology loadOntology(IRI ontologyIRI,
+    protected OWLOntology loadOntology(IRI ontologyIRI,
             OWLOntologyDocumentSource documentSource,
             OWLOntologyLoaderConfiguration configuration)
             throws OWLOntologyCreationException {
-        return super.loadOntology(ontologyIRI, documentSource, configuration);
+        Thread current = Thread.currentThread();
+        int[] depth = loadingThreads.get(current);
+        if (depth == null) {
+            depth = new int[1];
+            loadingThreads.put(current, depth);
+        }
+        fireStartedLoadingEvent(new OWLOntologyID(ontologyIRI),
+                documentSource.getDocumentIRI(), depth[0] > 0);
+        depth[0]++;
+        OWLOntologyCreationException ex = null;
+        OWLOntologyID idOfLoadedOntology = new OWLOntologyID();
+        try {
+            for (OWLOntologyFactory factory : ontologyFactories) {
+                if (factory.canLoad(documentSource)) {
+                    try {
+                        OWLOntology ontology = factory.loadOWLOntology(documentSource,
+                                this, configuration);
+                        idOfLoadedOntology = ontology.getOntologyID();
+                        registrationLock.lock();
+                        try {
+                            documentIRIsByID.put(ontology.getOntologyID(),
+                                    documentSource.getDocumentIRI());
+                        } finally {
+                            registrationLock.unlock();
+                        }
+                        return ontology;
+                    } catch (OWLOntologyRenameException e) {
+                        throw new OWLOntologyAlreadyExistsException(e.getOntologyID(), e);
+                    }
+                }
+            }
+        } catch (OWLOntologyCreationException e) {
+            ex = e;
+            throw e;
+        } finally {
+            if (--depth[0] == 0) {
+                loadingThreads.remove(current);
+            }
+            fireFinishedLoadingEvent(idOfLoadedOntology,
+                    documentSource.getDocumentIRI(), depth[0] > 0, ex);
+        }
+        throw new OWLOntologyFactoryNotFoundException(documentSource.getDocumentIRI());
+    }
+
+    @Override
+    public void ontologyCreated(OWLOntology ontology) {
+        registrationLock.lock();
+        try {
+            super.ontologyCreated(ontology);
+        } finally {
+            registrationLock.unlock();
+        }
+    }
+
+    /** an import loaded by the first thread requesting it */
+    private class ImportLoad extends FutureTask<OWLOntology> {
+        volatile Thread runner;
+
+        ImportLoad(final OWLImportsDeclaration declaration,
+                final OWLOntologyLoaderConfiguration configuration) {
+            super(new Callable<OWLOntology>() {
+                @Override
+                public OWLOntology call() throws OWLOntologyCreationException {
+                    synchronized (importedIRIs) {
+                        if (!importedIRIs.add(declaration.getIRI())) {
+                            // already imported
+                            return null;
+                        }
+                    }
+                    OWLOntology ontology;
+                    try {
+                        ontology = loadImports(declaration, configuration);
+                    } catch (OWLOntologyCreationException e) {
+                        // loaded meanwhile by another thread, as a document
+                        ontology = getRegisteredOntology(e);
+                        if (ontology == null) {
+                            throw e;
+                        }
+                    }
+                    if (ontology != null) {
+                        ontologyIDsByImportsDeclaration.put(declaration,
+                                ontology.getOntologyID());
+                    }
+                    return ontology;
+                }
+            });
+        }
+
+        @Override
+        public void run() {
+            runner = Thread.currentThread();
+            super.run();
+        }
+
+        /** @return true if the thread running this load waits, directly or
+         *         through other loads, for the thread t */
+        boolean waitsFor(Thread t) {
+            Thread r = runner;
+            // each thread waits for at most one load, so a chain longer than
+            // the number of waiting threads is a cycle not involving t
+            for (int steps = waitingFor.size() + 1; r != null && steps >= 0; steps--) {
+                if (r == t) {
+                    return true;
+                }
+                ImportLoad next = waitingFor.get(r);
+                r = next == null ? null : next.runner;
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public void makeLoadImportRequest(OWLImportsDeclaration declaration,
+            OWLOntologyLoaderConfiguration configuration)
+            throws UnloadableImportException {
+        IRI iri = declaration.getIRI();
+        if (configuration.isIgnoredImport(iri)) {
+            return;
+        }
+        ImportLoad load = new ImportLoad(declaration, configuration);
+        ImportLoad existing = importLoads.putIfAbsent(iri, load);
+        if (existing != null) {
+            await(existing);
+            return;
+        }
+        try {
+            // the load runs even if the import is already loaded, so that
+            // threads which found it in importLoads are released
+            load.run();
+        } finally {
+            importLoads.remove(iri, load);
+        }
+        try {
+            load.get();
+        } catch (InterruptedException e) {
+            // cannot happen, the load is complete
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof OWLOntologyCreationException) {
+                throw new UnloadableImportException(
+                        (OWLOntologyCreationException) e.getCause(), declaration);
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new OWLRuntimeException(e.getCause());
+        }
+    }
+
+    /** wait for an import loaded by another thread; as in the superclass,
+     * failures are only reported to the thread loading the import. Cyclic
+     * imports are not waited for. */
+    private void await(ImportLoad load) {
+        Thread current = Thread.currentThread();
+        waitingFor.put(current, load);
+        try {
+            if (load.waitsFor(current)) {
+                return;
+            }
+            load.get();
+        } catch (InterruptedException e) {
+            current.interrupt();
+        } catch (ExecutionException e) {
+            // reported by the loading thread
+        } finally {
+            waitingFor.remove(current);
+        }
     }
 
     @Override
@@ -105,24 +442,64 @@ public class LockingOWLOntologyManagerImpl extends OWLOntologyManagerImpl implem
         listenerLock.lock();
         try {
             super.addOntologyChangeListener(listener);
+            changeListeners.put(listener, defaultChangeBroadcastStrategy);
         } finally {
             listenerLock.unlock();
         }
     }
 
+    /** @return true if the current thread is loading an ontology */
+    private boolean isLoading() {
+        return loadingThreads.containsKey(Thread.currentThread());
+    }
+
     @Override
     protected void broadcastChanges(List<? extends OWLOntologyChange> changes) {
+        if (isLoading()) {
+            return;
+        }
+        List<OWLOntologyChangeListener> asynchronous = new ArrayList<OWLOntologyChangeListener>();
+        List<OWLOntologyChangeBroadcastStrategy> strategies = new ArrayList<OWLOntologyChangeBroadcastStrategy>();
         listenerLock.lock();
         try {
-            super.broadcastChanges(changes);
+            for (OWLOntologyChangeListener listener : new ArrayList<OWLOntologyChangeListener>(
+                    changeListeners.keySet())) {
+                // the listener may have been removed by another listener
+                OWLOntologyChangeBroadcastStrategy strategy = changeListeners
+                        .get(listener);
+                if (strategy instanceof AsynchronousChangeBroadcastStrategy) {
+                    asynchronous.add(listener);
+                    strategies.add(strategy);
+                } else if (strategy != null) {
+                    broadcastChanges(listener, strategy, changes);
+                }
+            }
         } finally {
             listenerLock.unlock();
         }
+        // outside the lock: asynchronous strategies can make the writer wait
+        for (int i = 0; i < asynchronous.size(); i++) {
+            broadcastChanges(asynchronous.get(i), strategies.get(i), changes);
+        }
+    }
+
+    private static void broadcastChanges(OWLOntologyChangeListener listener,
+            OWLOntologyChangeBroadcastStrategy strategy,
+            List<? extends OWLOntologyChange> changes) {
+        try {
+            strategy.broadcastChanges(listener, changes);
+        } catch (Throwable e) {
+            // Listener threw an exception
+            e.printStackTrace();
+        }
     }
 
     @Override
     protected void broadcastImpendingChanges(List<? extends OWLOntologyChange> changes)
             throws OWLOntologyChangeVetoException {
+        if (isLoading()) {
+            return;
+        }
         impendingLock.lock();
         try {
             super.broadcastImpendingChanges(changes);
@@ -137,6 +514,18 @@ public class LockingOWLOntologyManagerImpl extends OWLOntologyManagerImpl implem
         listenerLock.lock();
         try {
             super.addOntologyChangeListener(listener, strategy);
+            changeListeners.put(listener, strategy);
+        } finally {
+            listenerLock.unlock();
+        }
+    }
+
+    @Override
+    public void setDefaultChangeBroadcastStrategy(
+            OWLOntologyChangeBroadcastStrategy strategy) {
+        listenerLock.lock();
+        try {
+            super.setDefaultChangeBroadcastStrategy(strategy);
         } finally {
             listenerLock.unlock();
         }
@@ -169,22 +558,16 @@ public class LockingOWLOntologyManagerImpl extends OWLOntologyManagerImpl implem
         listenerLock.lock();
         try {
             super.removeOntologyChangeListener(listener);
+            changeListeners.remove(listener);
         } finally {
             listenerLock.unlock();
         }
     }
 
-    @Override
-    protected synchronized OWLOntology loadImports(OWLImportsDeclaration declaration,
-            OWLOntologyLoaderConfiguration configuration)
-            throws OWLOntologyCreationException {
-        return super.loadImports(declaration, configuration);
-    }
-
     @Override
     protected void fireBeginChanges(int size) {
         try {
-            if (!broadcastChanges.isEmpty()) {
+            if (isLoading()) {
                 return;
             }
             for (OWLOntologyChangeProgressListener lsnr : progressListeners) {
@@ -198,7 +581,7 @@ public class LockingOWLOntologyManagerImpl extends OWLOntologyManagerImpl implem
     @Override
     protected void fireEndChanges() {
         try {
-            if (!broadcastChanges.isEmpty()) {
+            if (isLoading()) {
                 return;
             }
             for (OWLOntologyChangeProgressListener lsnr : progressListeners) {
@@ -213,7 +596,7 @@ public class LockingOWLOntologyManagerImpl extends OWLOntologyManagerImpl implem
     @Override
     protected void fireChangeApplied(OWLOntologyChange change) {
         try {
-            if (!broadcastChanges.isEmpty()) {
+            if (isLoading()) {
                 return;
             }
             if (progressListeners.isEmpty()) {
@@ -0,0 +1,321 @@
+/*
+ * This file is part of the OWL API.
+ *
+ * The contents of this file are subject to the LGPL License, Version 3.0.
+ *
+ * Copyright (C) 2011, The University of Manchester
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ *
+ * Alternatively, the contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2011, University of Manchester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.manchester.cs.owl.owlapi.alternateimpls;
+
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.OWLAnnotation;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLAxiomVisitorEx;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLClassAxiom;
+import org.semanticweb.owlapi.model.OWLImportsDeclaration;
+import org.semanticweb.owlapi.util.CollectionFactory;
+
+import uk.ac.manchester.cs.owl.owlapi.ClassAxiomByClassPointer;
+import uk.ac.manchester.cs.owl.owlapi.InternalsImpl;
+import uk.ac.manchester.cs.owl.owlapi.MapPointer;
+
+/** threadsafe implementation with one read write lock per ontology: lookups
+ * in the indexes share the read lock, so readers do not block each other;
+ * adding or removing an axiom updates all the indexes under the write lock,
+ * so readers never see an axiom in some indexes and not in others. Lazy
+ * indexes are built under the write lock on first use. */
+public class ReadWriteLockingOWLOntologyInternals extends InternalsImpl {
+    private static final long serialVersionUID = 6427719513426585062L;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** @return the lock guarding the indexes; holding the write lock excludes
+     *         all readers */
+    public ReadWriteLock getLock() {
+        return lock;
+    }
+
+    @Override
+    protected <K, V extends OWLAxiom> MapPointer<K, V> build(AxiomType<?> t,
+            OWLAxiomVisitorEx<?> v) {
+        return new ReadWriteMapPointer<K, V>(t, v, true, this);
+    }
+
+    @Override
+    protected <K, V extends OWLAxiom> MapPointer<K, V> buildLazy(AxiomType<?> t,
+            OWLAxiomVisitorEx<?> v) {
+        return new ReadWriteMapPointer<K, V>(t, v, false, this);
+    }
+
+    @Override
+    protected ClassAxiomByClassPointer buildClassAxiomByClass() {
+        return new ClassAxiomByClassPointer(null, null, false, this) {
+            private static final long serialVersionUID = -1547427961493735539L;
+
+            @Override
+            public boolean contains(OWLClass key, OWLClassAxiom value) {
+                lock.readLock().lock();
+                try {
+                    return super.contains(key, value);
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+
+            @Override
+            public boolean containsKey(OWLClass key) {
+                lock.readLock().lock();
+                try {
+                    return super.containsKey(key);
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+
+            @Override
+            public Set<OWLClassAxiom> getAllValues() {
+                lock.readLock().lock();
+                try {
+                    return super.getAllValues();
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+
+            @Override
+            public Set<OWLClassAxiom> getValues(OWLClass key) {
+                lock.readLock().lock();
+                try {
+                    return super.getValues(key);
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+
+            @Override
+            public void init() {
+                if (isInitialized()) {
+                    return;
+                }
+                lock.writeLock().lock();
+                try {
+                    super.init();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+
+            @Override
+            public boolean isInitialized() {
+                lock.readLock().lock();
+                try {
+                    return super.isInitialized();
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+
+            @Override
+            public Set<OWLClass> keySet() {
+                lock.readLock().lock();
+                try {
+                    return super.keySet();
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+
+            @Override
+            public boolean put(OWLClass key, OWLClassAxiom value) {
+                lock.writeLock().lock();
+                try {
+                    return super.put(key, value);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+
+            @Override
+            public boolean remove(OWLClass key, OWLClassAxiom value) {
+                lock.writeLock().lock();
+                try {
+                    return super.remove(key, value);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+
+            @Override
+            public int size() {
+                lock.readLock().lock();
+                try {
+                    return super.size();
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+
+            @Override
+            public boolean hasValues(OWLClass key) {
+                lock.readLock().lock();
+                try {
+                    return super.hasValues(key);
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+        };
+    }
+
+    @Override
+    protected <K> SetPointer<K> buildSet() {
+        return new SetPointer<K>(CollectionFactory.<K> createSet()) {
+            private static final long serialVersionUID = -3403312285741094958L;
+
+            @Override
+            public boolean add(K k) {
+                lock.writeLock().lock();
+                try {
+                    return super.add(k);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+
+            @Override
+            public boolean contains(K k) {
+                lock.readLock().lock();
+                try {
+                    return super.contains(k);
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+
+            @Override
+            public Set<K> copy() {
+                lock.readLock().lock();
+                try {
+                    return super.copy();
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+
+            @Override
+            public boolean isEmpty() {
+                lock.readLock().lock();
+                try {
+                    return super.isEmpty();
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+
+            @Override
+            public boolean remove(K k) {
+                lock.writeLock().lock();
+                try {
+                    return super.remove(k);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        };
+    }
+
+    @Override
+    public boolean addAxiom(OWLAxiom axiom) {
+        lock.writeLock().lock();
+        try {
+            return super.addAxiom(axiom);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean removeAxiom(OWLAxiom axiom) {
+        lock.writeLock().lock();
+        try {
+            return super.removeAxiom(axiom);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean addImportsDeclaration(OWLImportsDeclaration importDeclaration) {
+        lock.writeLock().lock();
+        try {
+            return super.addImportsDeclaration(importDeclaration);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean removeImportsDeclaration(OWLImportsDeclaration importDeclaration) {
+        lock.writeLock().lock();
+        try {
+            return super.removeImportsDeclaration(importDeclaration);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean addOntologyAnnotation(OWLAnnotation ann) {
+        lock.writeLock().lock();
+        try {
+            return super.addOntologyAnnotation(ann);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean removeOntologyAnnotation(OWLAnnotation ann) {
+        lock.writeLock().lock();
+        try {
+            return super.removeOntologyAnnotation(ann);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package uk.ac.manchester.cs.owl.owlapi.alternateimpls;
+
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLAxiomVisitorEx;
+
+import uk.ac.manchester.cs.owl.owlapi.MapPointer;
+
+/** map pointer guarded by the read write lock of its internals: lookups share
+ * the read lock, updates and lazy initialization take the write lock */
+class ReadWriteMapPointer<K, V extends OWLAxiom> extends MapPointer<K, V> {
+    private static final long serialVersionUID = 2979563451726063287L;
+    private final ReadWriteLockingOWLOntologyInternals owner;
+
+    public ReadWriteMapPointer(AxiomType<?> t, OWLAxiomVisitorEx<?> v,
+            boolean initialized, ReadWriteLockingOWLOntologyInternals i) {
+        super(t, v, initialized, i);
+        owner = i;
+    }
+
+    private ReadWriteLock lock() {
+        return owner.getLock();
+    }
+
+    @Override
+    public boolean contains(K key, V value) {
+        lock().readLock().lock();
+        try {
+            return super.contains(key, value);
+        } finally {
+            lock().readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean containsKey(K key) {
+        lock().readLock().lock();
+        try {
+            return super.containsKey(key);
+        } finally {
+            lock().readLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<V> getAllValues() {
+        lock().readLock().lock();
+        try {
+            return super.getAllValues();
+        } finally {
+            lock().readLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<V> getValues(K key) {
+        lock().readLock().lock();
+        try {
+            return super.getValues(key);
+        } finally {
+            lock().readLock().unlock();
+        }
+    }
+
+    /** the read lock cannot be upgraded: the check is repeated under the write
+     * lock */
+    @Override
+    public void init() {
+        if (isInitialized()) {
+            return;
+        }
+        lock().writeLock().lock();
+        try {
+            super.init();
+        } finally {
+            lock().writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isInitialized() {
+        lock().readLock().lock();
+        try {
+            return super.isInitialized();
+        } finally {
+            lock().readLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<K> keySet() {
+        lock().readLock().lock();
+        try {
+            return super.keySet();
+        } finally {
+            lock().readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean put(K key, V value) {
+        lock().writeLock().lock();
+        try {
+            return super.put(key, value);
+        } finally {
+            lock().writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean remove(K key, V value) {
+        lock().writeLock().lock();
+        try {
+            return super.remove(key, value);
+        } finally {
+            lock().writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock().readLock().lock();
+        try {
+            return super.size();
+        } finally {
+            lock().readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean hasValues(K key) {
+        lock().readLock().lock();
+        try {
+            return super.hasValues(key);
+        } finally {
+            lock().readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * This file is part of the OWL API.
+ *
+ * The contents of this file are subject to the LGPL License, Version 3.0.
+ *
+ * Copyright (C) 2011, The University of Manchester
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ *
+ * Alternatively, the contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2011, University of Manchester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.manchester.cs.owl.owlapi.alternateimpls;
+
+import java.util.List;
+
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyID;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+
+import uk.ac.manchester.cs.owl.owlapi.OWLOntologyImpl;
+
+/** threadsafe extension where readers never block; each change, or list of
+ * changes, becomes visible to readers all at once when it has been applied
+ * 
+ * @author ignazio */
+public class SnapshotOWLOntologyImpl extends OWLOntologyImpl {
+    private static final long serialVersionUID = 2381794263519856313L;
+
+    /** @param manager
+     *            manager
+     * @param ontologyID
+     *            ontologyID */
+    public SnapshotOWLOntologyImpl(OWLOntologyManager manager, OWLOntologyID ontologyID) {
+        this(manager, ontologyID, new SnapshotOWLOntologyInternals());
+    }
+
+    private SnapshotOWLOntologyImpl(OWLOntologyManager manager,
+            OWLOntologyID ontologyID, SnapshotOWLOntologyInternals internals) {
+        super(manager, ontologyID);
+        this.internals = internals;
+    }
+
+    private SnapshotOWLOntologyInternals snapshotInternals() {
+        return (SnapshotOWLOntologyInternals) internals;
+    }
+
+    /** @return an ontology with the axioms and annotations of this ontology as
+     *         they are now; later changes to this ontology are not visible in
+     *         it, and it cannot be changed. Imported ontologies are read
+     *         through the manager, and are not part of the snapshot. */
+    public SnapshotOWLOntologyImpl getSnapshot() {
+        return new SnapshotOWLOntologyImpl(getOWLOntologyManager(), getOntologyID(),
+                snapshotInternals().snapshot());
+    }
+
+    @Override
+    public List<OWLOntologyChange> applyChange(OWLOntologyChange change) {
+        snapshotInternals().beginChanges();
+        boolean done = false;
+        try {
+            List<OWLOntologyChange> toReturn = super.applyChange(change);
+            done = true;
+            return toReturn;
+        } finally {
+            snapshotInternals().endChanges(done);
+        }
+    }
+
+    @Override
+    public List<OWLOntologyChange> applyChanges(List<OWLOntologyChange> changes) {
+        snapshotInternals().beginChanges();
+        boolean done = false;
+        try {
+            List<OWLOntologyChange> toReturn = super.applyChanges(changes);
+            done = true;
+            return toReturn;
+        } finally {
+            snapshotInternals().endChanges(done);
+        }
+    }
+}
@@ -0,0 +1,513 @@
+/*
+ * This file is part of the OWL API.
+ *
+ * The contents of this file are subject to the LGPL License, Version 3.0.
+ *
+ * Copyright (C) 2011, The University of Manchester
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ *
+ * Alternatively, the contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2011, University of Manchester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.manchester.cs.owl.owlapi.alternateimpls;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.OWLAnnotation;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLAxiomVisitorEx;
+import org.semanticweb.owlapi.model.OWLClassAxiom;
+import org.semanticweb.owlapi.model.OWLDeclarationAxiom;
+import org.semanticweb.owlapi.model.OWLImportsDeclaration;
+import org.semanticweb.owlapi.model.OWLLogicalAxiom;
+import org.semanticweb.owlapi.model.OWLSubPropertyChainOfAxiom;
+import org.semanticweb.owlapi.util.CollectionFactory;
+
+import uk.ac.manchester.cs.owl.owlapi.ClassAxiomByClassPointer;
+import uk.ac.manchester.cs.owl.owlapi.InternalsImpl;
+import uk.ac.manchester.cs.owl.owlapi.MapPointer;
+import utils.PersistentHashMap;
+
+/** threadsafe implementation where readers never block: all the indexes form
+ * an immutable version, published through an atomic reference. Writers are
+ * serialized; a change builds the next version from persistent hash tries,
+ * sharing everything it does not touch, and the version is published when the
+ * change is complete. The pointers of the superclass only identify the
+ * indexes; all the indexes are built eagerly.
+ * 
+ * @author ignazio */
+public class SnapshotOWLOntologyInternals extends InternalsImpl {
+    private static final long serialVersionUID = -4125463170581934562L;
+
+    /** position of an index in a version */
+    interface Slot {
+        /** @return position of the index */
+        int slot();
+    }
+
+    /** map pointer used as index handle */
+    static class SlotMapPointer<K, V extends OWLAxiom> extends MapPointer<K, V> implements
+            Slot {
+        private static final long serialVersionUID = 8547291385917463512L;
+        private final int slot;
+
+        SlotMapPointer(AxiomType<?> t, OWLAxiomVisitorEx<?> v,
+                SnapshotOWLOntologyInternals i, int slot) {
+            super(t, v, true, i);
+            this.slot = slot;
+        }
+
+        @Override
+        public int slot() {
+            return slot;
+        }
+    }
+
+    /** class axiom pointer used as index handle */
+    static class SlotClassAxiomPointer extends ClassAxiomByClassPointer implements Slot {
+        private static final long serialVersionUID = 5871092372364471932L;
+        private final int slot;
+
+        SlotClassAxiomPointer(SnapshotOWLOntologyInternals i, int slot) {
+            super(null, null, true, i);
+            this.slot = slot;
+        }
+
+        @Override
+        public int slot() {
+            return slot;
+        }
+    }
+
+    /** immutable state of all the indexes: maps from keys to sets of axioms,
+     * followed by the imports, the ontology annotations, the general class
+     * axioms and the property chain axioms. Sets are maps from each element to
+     * itself. A version is only modified by the writer that created it, before
+     * it is published. */
+    static final class Version implements Serializable {
+        private static final long serialVersionUID = -1742016634574126385L;
+        final Object[] slots;
+
+        Version(Object[] slots) {
+            this.slots = slots;
+        }
+
+        @SuppressWarnings("unchecked")
+        PersistentHashMap<Object, PersistentHashMap<Object, Object>> index(int slot) {
+            return (PersistentHashMap<Object, PersistentHashMap<Object, Object>>) slots[slot];
+        }
+
+        @SuppressWarnings("unchecked")
+        PersistentHashMap<Object, Object> set(int slot) {
+            return (PersistentHashMap<Object, Object>) slots[slot];
+        }
+    }
+
+    /** number of index slots; not initialized in the declaration, since it is
+     * counted while the superclass constructor builds the pointers */
+    private int indexes;
+    private final AtomicReference<Version> current;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    /** version being built by the thread holding the write lock */
+    private Version pending = null;
+    /** true for a snapshot, which cannot be changed */
+    private final boolean readOnly;
+
+    /** empty internals */
+    public SnapshotOWLOntologyInternals() {
+        Object[] slots = new Object[indexes + 4];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = PersistentHashMap.empty();
+        }
+        current = new AtomicReference<Version>(new Version(slots));
+        readOnly = false;
+    }
+
+    /** @param version
+     *            version to read */
+    private SnapshotOWLOntologyInternals(Version version) {
+        current = new AtomicReference<Version>(version);
+        readOnly = true;
+    }
+
+    /** @return internals holding the current version, which cannot be changed;
+     *         changes in progress are not included */
+    public SnapshotOWLOntologyInternals snapshot() {
+        return new SnapshotOWLOntologyInternals(current.get());
+    }
+
+    private int imports() {
+        return indexes;
+    }
+
+    private int annotations() {
+        return indexes + 1;
+    }
+
+    private int generalClassAxioms() {
+        return indexes + 2;
+    }
+
+    private int propertyChains() {
+        return indexes + 3;
+    }
+
+    @Override
+    protected <K, V extends OWLAxiom> MapPointer<K, V> build(AxiomType<?> t,
+            OWLAxiomVisitorEx<?> v) {
+        return new SlotMapPointer<K, V>(t, v, this, indexes++);
+    }
+
+    @Override
+    protected <K, V extends OWLAxiom> MapPointer<K, V> buildLazy(AxiomType<?> t,
+            OWLAxiomVisitorEx<?> v) {
+        return new SlotMapPointer<K, V>(t, v, this, indexes++);
+    }
+
+    @Override
+    protected ClassAxiomByClassPointer buildClassAxiomByClass() {
+        return new SlotClassAxiomPointer(this, indexes++);
+    }
+
+    /** start a change: the calling thread takes the write lock, and works on a
+     * copy of the current version until the outermost change ends */
+    public void beginChanges() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("Snapshots cannot be changed");
+        }
+        writeLock.lock();
+        if (writeLock.getHoldCount() == 1) {
+            pending = new Version(current.get().slots.clone());
+        }
+    }
+
+    /** end a change; the outermost change publishes the new version
+     * 
+     * @param publish
+     *            false if the change failed and must be discarded */
+    public void endChanges(boolean publish) {
+        try {
+            if (writeLock.getHoldCount() == 1) {
+                if (publish) {
+                    current.set(pending);
+                }
+                pending = null;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** @return the version to read: the pending version for the writer, the
+     *         published one for everybody else */
+    private Version read() {
+        if (writeLock.isHeldByCurrentThread()) {
+            return pending;
+        }
+        return current.get();
+    }
+
+    private static int slot(Pointer<?, ?> pointer) {
+        return ((Slot) pointer).slot();
+    }
+
+    private static <T> Set<T> view(Collection<?> c) {
+        @SuppressWarnings("unchecked")
+        Collection<T> t = (Collection<T>) c;
+        return CollectionFactory.getCopyOnRequestSetFromImmutableCollection(t);
+    }
+
+    @Override
+    public <K, V extends OWLAxiom> Set<K> getKeyset(Pointer<K, V> pointer) {
+        return view(read().index(slot(pointer)).keySet());
+    }
+
+    @Override
+    public <K, V extends OWLAxiom> Set<V> getValues(Pointer<K, V> pointer, K key) {
+        PersistentHashMap<Object, Object> values = read().index(slot(pointer)).get(key);
+        if (values == null) {
+            return Collections.emptySet();
+        }
+        return view(values.keySet());
+    }
+
+    @Override
+    public <K, V extends OWLAxiom> boolean hasValues(Pointer<K, V> pointer, K key) {
+        return read().index(slot(pointer)).containsKey(key);
+    }
+
+    @Override
+    public <K, V extends OWLAxiom> boolean contains(Pointer<K, V> pointer, K key) {
+        return read().index(slot(pointer)).containsKey(key);
+    }
+
+    @Override
+    public <K, V extends OWLAxiom> boolean contains(Pointer<K, V> pointer, K key,
+            V value) {
+        PersistentHashMap<Object, Object> values = read().index(slot(pointer)).get(key);
+        return values != null && values.containsKey(value);
+    }
+
+    @Override
+    public <K, V extends OWLAxiom> boolean add(Pointer<K, V> pointer, K key, V value) {
+        beginChanges();
+        boolean done = false;
+        try {
+            int slot = slot(pointer);
+            PersistentHashMap<Object, PersistentHashMap<Object, Object>> index = pending
+                    .index(slot);
+            PersistentHashMap<Object, Object> values = index.get(key);
+            if (values == null) {
+                values = PersistentHashMap.empty();
+            }
+            done = true;
+            // plus() replaces an equal value; that is not a change
+            if (values.containsKey(value)) {
+                return false;
+            }
+            pending.slots[slot] = index.plus(key, values.plus(value, value));
+            return true;
+        } finally {
+            endChanges(done);
+        }
+    }
+
+    @Override
+    public <K, V extends OWLAxiom> boolean remove(Pointer<K, V> pointer, K key, V value) {
+        beginChanges();
+        boolean done = false;
+        try {
+            int slot = slot(pointer);
+            PersistentHashMap<Object, PersistentHashMap<Object, Object>> index = pending
+                    .index(slot);
+            PersistentHashMap<Object, Object> values = index.get(key);
+            done = true;
+            if (values == null || !values.containsKey(value)) {
+                return false;
+            }
+            values = values.minus(value);
+            pending.slots[slot] = values.isEmpty() ? index.minus(key) : index.plus(key,
+                    values);
+            return true;
+        } finally {
+            endChanges(done);
+        }
+    }
+
+    /** @return true if the set in the slot changed */
+    private boolean addToSet(int slot, Object o) {
+        beginChanges();
+        boolean done = false;
+        try {
+            PersistentHashMap<Object, Object> set = pending.set(slot);
+            done = true;
+            if (set.containsKey(o)) {
+                return false;
+            }
+            pending.slots[slot] = set.plus(o, o);
+            return true;
+        } finally {
+            endChanges(done);
+        }
+    }
+
+    /** @return true if the set in the slot changed */
+    private boolean removeFromSet(int slot, Object o) {
+        beginChanges();
+        boolean done = false;
+        try {
+            PersistentHashMap<Object, Object> set = pending.set(slot);
+            PersistentHashMap<Object, Object> newSet = set.minus(o);
+            pending.slots[slot] = newSet;
+            done = true;
+            return newSet != set;
+        } finally {
+            endChanges(done);
+        }
+    }
+
+    @Override
+    public boolean addAxiom(OWLAxiom axiom) {
+        beginChanges();
+        boolean done = false;
+        try {
+            boolean added = super.addAxiom(axiom);
+            done = true;
+            return added;
+        } finally {
+            endChanges(done);
+        }
+    }
+
+    @Override
+    public boolean removeAxiom(OWLAxiom axiom) {
+        beginChanges();
+        boolean done = false;
+        try {
+            boolean removed = super.removeAxiom(axiom);
+            done = true;
+            return removed;
+        } finally {
+            endChanges(done);
+        }
+    }
+
+    @Override
+    public boolean isDeclared(OWLDeclarationAxiom ax) {
+        return contains(getDeclarationsByEntity(), ax.getEntity());
+    }
+
+    @Override
+    public boolean isEmpty() {
+        Version v = read();
+        return v.index(slot(getAxiomsByType())).isEmpty()
+                && v.set(annotations()).isEmpty();
+    }
+
+    @Override
+    public int getAxiomCount() {
+        int count = 0;
+        for (PersistentHashMap<Object, Object> values : read().index(
+                slot(getAxiomsByType())).values()) {
+            count += values.size();
+        }
+        return count;
+    }
+
+    @Override
+    public Set<OWLAxiom> getAxioms() {
+        Set<OWLAxiom> toReturn = CollectionFactory.createSet();
+        for (PersistentHashMap<Object, Object> values : read().index(
+                slot(getAxiomsByType())).values()) {
+            for (Object ax : values.keySet()) {
+                toReturn.add((OWLAxiom) ax);
+            }
+        }
+        return toReturn;
+    }
+
+    @Override
+    public <T extends OWLAxiom> int getAxiomCount(AxiomType<T> axiomType) {
+        PersistentHashMap<Object, Object> values = read().index(slot(getAxiomsByType()))
+                .get(axiomType);
+        return values == null ? 0 : values.size();
+    }
+
+    @Override
+    public Set<OWLLogicalAxiom> getLogicalAxioms() {
+        Set<OWLLogicalAxiom> toReturn = CollectionFactory.createSet();
+        PersistentHashMap<Object, PersistentHashMap<Object, Object>> byType = read()
+                .index(slot(getAxiomsByType()));
+        for (AxiomType<?> type : AxiomType.AXIOM_TYPES) {
+            PersistentHashMap<Object, Object> values = byType.get(type);
+            if (type.isLogical() && values != null) {
+                for (Object ax : values.keySet()) {
+                    toReturn.add((OWLLogicalAxiom) ax);
+                }
+            }
+        }
+        return toReturn;
+    }
+
+    @Override
+    public int getLogicalAxiomCount() {
+        int count = 0;
+        PersistentHashMap<Object, PersistentHashMap<Object, Object>> byType = read()
+                .index(slot(getAxiomsByType()));
+        for (AxiomType<?> type : AxiomType.AXIOM_TYPES) {
+            PersistentHashMap<Object, Object> values = byType.get(type);
+            if (type.isLogical() && values != null) {
+                count += values.size();
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public Set<OWLImportsDeclaration> getImportsDeclarations() {
+        return view(read().set(imports()).keySet());
+    }
+
+    @Override
+    public boolean addImportsDeclaration(OWLImportsDeclaration importDeclaration) {
+        return addToSet(imports(), importDeclaration);
+    }
+
+    @Override
+    public boolean removeImportsDeclaration(OWLImportsDeclaration importDeclaration) {
+        return removeFromSet(imports(), importDeclaration);
+    }
+
+    @Override
+    public Set<OWLAnnotation> getOntologyAnnotations() {
+        return view(read().set(annotations()).keySet());
+    }
+
+    @Override
+    public boolean addOntologyAnnotation(OWLAnnotation ann) {
+        return addToSet(annotations(), ann);
+    }
+
+    @Override
+    public boolean removeOntologyAnnotation(OWLAnnotation ann) {
+        return removeFromSet(annotations(), ann);
+    }
+
+    @Override
+    public Set<OWLClassAxiom> getGeneralClassAxioms() {
+        return view(read().set(generalClassAxioms()).keySet());
+    }
+
+    @Override
+    public void addGeneralClassAxioms(OWLClassAxiom ax) {
+        addToSet(generalClassAxioms(), ax);
+    }
+
+    @Override
+    public void removeGeneralClassAxioms(OWLClassAxiom ax) {
+        removeFromSet(generalClassAxioms(), ax);
+    }
+
+    @Override
+    public void addPropertyChainSubPropertyAxioms(OWLSubPropertyChainOfAxiom ax) {
+        addToSet(propertyChains(), ax);
+    }
+
+    @Override
+    public void removePropertyChainSubPropertyAxioms(OWLSubPropertyChainOfAxiom ax) {
+        removeFromSet(propertyChains(), ax);
+    }
+}
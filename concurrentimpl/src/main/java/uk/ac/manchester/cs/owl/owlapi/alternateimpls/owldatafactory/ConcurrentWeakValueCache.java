@@ -0,0 +1,157 @@
+/*
+ * This file is part of the OWL API.
+ *
+ * The contents of this file are subject to the LGPL License, Version 3.0.
+ *
+ * Copyright (C) 2011, The University of Manchester
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ *
+ * Alternatively, the contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2011, University of Manchester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.manchester.cs.owl.owlapi.alternateimpls.owldatafactory;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** cache with weak values, safe for use by many threads. Values are kept in a
+ * lock striped concurrent hash map, so that lookups never lock and insertions
+ * only lock one stripe; for each key, all threads get the same value until the
+ * value is collected. Entries whose values have been collected are removed on
+ * insertion.
+ * 
+ * @author ignazio
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type */
+public class ConcurrentWeakValueCache<K, V> implements Serializable {
+    private static final long serialVersionUID = -6321890284718356245L;
+    private final int concurrencyLevel;
+    private transient ConcurrentHashMap<K, ValueReference<K, V>> map;
+    private transient ReferenceQueue<V> queue;
+
+    /** weak reference to a value, remembering its key */
+    private static final class ValueReference<K, V> extends WeakReference<V> {
+        final K key;
+
+        ValueReference(K key, V value, ReferenceQueue<V> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+    }
+
+    /** cache with one stripe per expected writer thread: four per processor */
+    public ConcurrentWeakValueCache() {
+        this(4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /** @param concurrencyLevel
+     *            number of stripes */
+    public ConcurrentWeakValueCache(int concurrencyLevel) {
+        this.concurrencyLevel = concurrencyLevel;
+        init();
+    }
+
+    private void init() {
+        map = new ConcurrentHashMap<K, ValueReference<K, V>>(16, 0.75F,
+                concurrencyLevel);
+        queue = new ReferenceQueue<V>();
+    }
+
+    private void readObject(ObjectInputStream stream) throws IOException,
+            ClassNotFoundException {
+        stream.defaultReadObject();
+        init();
+    }
+
+    /** @param key
+     *            key
+     * @return the value cached for the key, or null if there is none */
+    public V get(K key) {
+        ValueReference<K, V> ref = map.get(key);
+        return ref == null ? null : ref.get();
+    }
+
+    /** @param key
+     *            key
+     * @param value
+     *            value to cache if the key has no value
+     * @return the value cached for the key; value if there was none */
+    public V cache(K key, V value) {
+        expunge();
+        ValueReference<K, V> ref = new ValueReference<K, V>(key, value, queue);
+        while (true) {
+            ValueReference<K, V> old = map.putIfAbsent(key, ref);
+            if (old == null) {
+                return value;
+            }
+            V existing = old.get();
+            if (existing != null) {
+                return existing;
+            }
+            // the old value has been collected; replace it unless another
+            // thread has already done so
+            if (map.replace(key, old, ref)) {
+                return value;
+            }
+        }
+    }
+
+    /** remove the entries whose values have been collected */
+    private void expunge() {
+        Reference<? extends V> r = queue.poll();
+        while (r != null) {
+            ValueReference<?, ?> ref = (ValueReference<?, ?>) r;
+            map.remove(ref.key, ref);
+            r = queue.poll();
+        }
+    }
+
+    /** @return number of entries; entries whose values have been collected
+     *         but not yet removed are counted */
+    public int size() {
+        expunge();
+        return map.size();
+    }
+
+    /** clear the cache */
+    public void clear() {
+        map.clear();
+        while (queue.poll() != null) {
+            // discard stale references
+        }
+    }
+}
@@ -40,7 +40,7 @@ package uk.ac.manchester.cs.owl.owlapi.alternateimpls.owldatafactory;
 
 import uk.ac.manchester.cs.owl.owlapi.OWLDataFactoryImpl;
 
-/** @author ignazio Datafactory using concurrent hash maps with strong references */
+/** @author ignazio Datafactory using lock striped concurrent caches */
 public class DataFactoryCSR extends OWLDataFactoryImpl {
     private static final long serialVersionUID = -4248990707345326124L;
     private static final DataFactoryCSR instance = new DataFactoryCSR();
@@ -51,6 +51,6 @@ public class DataFactoryCSR extends OWLDataFactoryImpl {
 
     /** default constructor */
     public DataFactoryCSR() {
-        data = new InternalsCSR(false);
+        data = new InternalsConcurrent(false);
     }
 }
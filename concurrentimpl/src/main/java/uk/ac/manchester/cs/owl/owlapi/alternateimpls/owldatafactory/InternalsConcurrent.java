@@ -0,0 +1,244 @@
+/*
+ * This file is part of the OWL API.
+ *
+ * The contents of this file are subject to the LGPL License, Version 3.0.
+ *
+ * Copyright (C) 2011, The University of Manchester
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ *
+ * Alternatively, the contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2011, University of Manchester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.manchester.cs.owl.owlapi.alternateimpls.owldatafactory;
+
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAnnotationProperty;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataProperty;
+import org.semanticweb.owlapi.model.OWLDatatype;
+import org.semanticweb.owlapi.model.OWLLiteral;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+
+import uk.ac.manchester.cs.owl.owlapi.InternalsNoCache;
+import uk.ac.manchester.cs.owl.owlapi.OWLLiteralImplDouble;
+import uk.ac.manchester.cs.owl.owlapi.OWLLiteralImplFloat;
+import uk.ac.manchester.cs.owl.owlapi.OWLLiteralImplInteger;
+
+/** @author ignazio lock striped concurrent caches with weak values; lookups do
+ *         not lock, and entities and literals are created outside of any lock.
+ *         Equal IRIs give the same entity for as long as the entity is
+ *         reachable. */
+public class InternalsConcurrent extends InternalsNoCache {
+    private static final long serialVersionUID = -2918392739651844109L;
+    private final ConcurrentWeakValueCache<IRI, OWLClass> classes = new ConcurrentWeakValueCache<IRI, OWLClass>();
+    private final ConcurrentWeakValueCache<IRI, OWLObjectProperty> objectProperties = new ConcurrentWeakValueCache<IRI, OWLObjectProperty>();
+    private final ConcurrentWeakValueCache<IRI, OWLDataProperty> dataProperties = new ConcurrentWeakValueCache<IRI, OWLDataProperty>();
+    private final ConcurrentWeakValueCache<IRI, OWLDatatype> datatypes = new ConcurrentWeakValueCache<IRI, OWLDatatype>();
+    private final ConcurrentWeakValueCache<IRI, OWLNamedIndividual> individuals = new ConcurrentWeakValueCache<IRI, OWLNamedIndividual>();
+    private final ConcurrentWeakValueCache<IRI, OWLAnnotationProperty> annotationProperties = new ConcurrentWeakValueCache<IRI, OWLAnnotationProperty>();
+    private final ConcurrentWeakValueCache<Integer, OWLLiteral> intCache = new ConcurrentWeakValueCache<Integer, OWLLiteral>();
+    private final ConcurrentWeakValueCache<Double, OWLLiteral> doubleCache = new ConcurrentWeakValueCache<Double, OWLLiteral>();
+    private final ConcurrentWeakValueCache<Float, OWLLiteral> floatCache = new ConcurrentWeakValueCache<Float, OWLLiteral>();
+    private final ConcurrentWeakValueCache<String, OWLLiteral> stringCache = new ConcurrentWeakValueCache<String, OWLLiteral>();
+    /** literals of other datatypes; keys must not refer to the literals, or
+     * the values would never be collected */
+    private final ConcurrentWeakValueCache<LiteralKey, OWLLiteral> litCache = new ConcurrentWeakValueCache<LiteralKey, OWLLiteral>();
+
+    /** lexical value, language tag and datatype of a literal */
+    private static final class LiteralKey {
+        private final String lexicalValue;
+        private final String lang;
+        private final OWLDatatype datatype;
+        private final int hashCode;
+
+        LiteralKey(OWLLiteral literal) {
+            lexicalValue = literal.getLiteral();
+            lang = literal.getLang();
+            datatype = literal.getDatatype();
+            hashCode = (lexicalValue.hashCode() * 37 + lang.hashCode()) * 37
+                    + datatype.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof LiteralKey)) {
+                return false;
+            }
+            LiteralKey other = (LiteralKey) obj;
+            return lexicalValue.equals(other.lexicalValue)
+                    && lang.equals(other.lang) && datatype.equals(other.datatype);
+        }
+    }
+
+    /** @param b
+     *            use compression */
+    public InternalsConcurrent(boolean b) {
+        super(b);
+    }
+
+    @Override
+    public OWLClass getOWLClass(IRI iri) {
+        OWLClass toReturn = classes.get(iri);
+        if (toReturn == null) {
+            toReturn = classes.cache(iri, super.getOWLClass(iri));
+        }
+        return toReturn;
+    }
+
+    @Override
+    public OWLObjectProperty getOWLObjectProperty(IRI iri) {
+        OWLObjectProperty toReturn = objectProperties.get(iri);
+        if (toReturn == null) {
+            toReturn = objectProperties.cache(iri, super.getOWLObjectProperty(iri));
+        }
+        return toReturn;
+    }
+
+    @Override
+    public OWLDataProperty getOWLDataProperty(IRI iri) {
+        OWLDataProperty toReturn = dataProperties.get(iri);
+        if (toReturn == null) {
+            toReturn = dataProperties.cache(iri, super.getOWLDataProperty(iri));
+        }
+        return toReturn;
+    }
+
+    @Override
+    public OWLDatatype getOWLDatatype(IRI iri) {
+        OWLDatatype toReturn = datatypes.get(iri);
+        if (toReturn == null) {
+            toReturn = datatypes.cache(iri, super.getOWLDatatype(iri));
+        }
+        return toReturn;
+    }
+
+    @Override
+    public OWLNamedIndividual getOWLNamedIndividual(IRI iri) {
+        OWLNamedIndividual toReturn = individuals.get(iri);
+        if (toReturn == null) {
+            toReturn = individuals.cache(iri, super.getOWLNamedIndividual(iri));
+        }
+        return toReturn;
+    }
+
+    @Override
+    public OWLAnnotationProperty getOWLAnnotationProperty(IRI iri) {
+        OWLAnnotationProperty toReturn = annotationProperties.get(iri);
+        if (toReturn == null) {
+            toReturn = annotationProperties.cache(iri,
+                    super.getOWLAnnotationProperty(iri));
+        }
+        return toReturn;
+    }
+
+    @Override
+    public OWLLiteral getOWLLiteral(int value) {
+        OWLLiteral toReturn = intCache.get(value);
+        if (toReturn == null) {
+            toReturn = intCache.cache(value, super.getOWLLiteral(value));
+        }
+        return toReturn;
+    }
+
+    @Override
+    public OWLLiteral getOWLLiteral(double value) {
+        OWLLiteral toReturn = doubleCache.get(value);
+        if (toReturn == null) {
+            toReturn = doubleCache.cache(value, super.getOWLLiteral(value));
+        }
+        return toReturn;
+    }
+
+    @Override
+    public OWLLiteral getOWLLiteral(float value) {
+        OWLLiteral toReturn = floatCache.get(value);
+        if (toReturn == null) {
+            toReturn = floatCache.cache(value, super.getOWLLiteral(value));
+        }
+        return toReturn;
+    }
+
+    @Override
+    public OWLLiteral getOWLLiteral(String value) {
+        OWLLiteral toReturn = stringCache.get(value);
+        if (toReturn == null) {
+            toReturn = stringCache.cache(value, super.getOWLLiteral(value));
+        }
+        return toReturn;
+    }
+
+    @Override
+    public OWLLiteral getOWLLiteral(String lexicalValue, OWLDatatype datatype) {
+        OWLLiteral literal = super.getOWLLiteral(lexicalValue, datatype);
+        // same keys as the default implementation
+        if (datatype.isBoolean()) {
+            return literal;
+        }
+        if (literal instanceof OWLLiteralImplFloat) {
+            return floatCache.cache(((OWLLiteralImplFloat) literal).parseFloat(), literal);
+        }
+        if (literal instanceof OWLLiteralImplDouble) {
+            return doubleCache.cache(((OWLLiteralImplDouble) literal).parseDouble(),
+                    literal);
+        }
+        if (literal instanceof OWLLiteralImplInteger) {
+            return intCache.cache(((OWLLiteralImplInteger) literal).parseInteger(),
+                    literal);
+        }
+        if (datatype.isString()) {
+            return stringCache.cache(literal.getLiteral(), literal);
+        }
+        return litCache.cache(new LiteralKey(literal), literal);
+    }
+
+    @Override
+    public void purge() {
+        classes.clear();
+        objectProperties.clear();
+        dataProperties.clear();
+        datatypes.clear();
+        individuals.clear();
+        annotationProperties.clear();
+        intCache.clear();
+        doubleCache.clear();
+        floatCache.clear();
+        stringCache.clear();
+        litCache.clear();
+    }
+}
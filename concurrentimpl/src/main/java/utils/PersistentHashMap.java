@@ -0,0 +1,409 @@
+package utils;
+
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/** immutable hash map; plus() and minus() return a new map which shares all
+ * the nodes not on the path to the changed key, so that a change costs a few
+ * small array copies whatever the size of the map. The map is a hash array
+ * mapped trie: every node has up to 32 children, selected by five bits of the
+ * key hash, and only the children present are stored. Keys and values cannot
+ * be null.
+ * 
+ * @author ignazio
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type */
+public final class PersistentHashMap<K, V> implements Serializable {
+    private static final long serialVersionUID = 3317618527452901736L;
+    @SuppressWarnings("rawtypes")
+    private static final PersistentHashMap EMPTY = new PersistentHashMap(null, 0);
+    /** root node; null for the empty map */
+    private final Node root;
+    private final int size;
+
+    private PersistentHashMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    /** @return the empty map */
+    @SuppressWarnings("unchecked")
+    public static <K, V> PersistentHashMap<K, V> empty() {
+        return EMPTY;
+    }
+
+    private static int hash(Object key) {
+        int h = key.hashCode();
+        return h ^ h >>> 16;
+    }
+
+    /** @return number of keys */
+    public int size() {
+        return size;
+    }
+
+    /** @return true if there are no keys */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** @param key
+     *            key
+     * @return value for the key, or null if there is none */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        if (root == null || key == null) {
+            return null;
+        }
+        return (V) root.find(0, hash(key), key);
+    }
+
+    /** @param key
+     *            key
+     * @return true if the key has a value */
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /** @param key
+     *            key
+     * @param value
+     *            value
+     * @return a map where key is mapped to value; this map if it already was */
+    public PersistentHashMap<K, V> plus(K key, V value) {
+        if (key == null || value == null) {
+            throw new NullPointerException("Keys and values cannot be null");
+        }
+        boolean[] added = new boolean[1];
+        Node start = root == null ? BitmapNode.EMPTY : root;
+        Node newRoot = start.assoc(0, hash(key), key, value, added);
+        if (newRoot == root) {
+            return this;
+        }
+        return new PersistentHashMap<K, V>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /** @param key
+     *            key
+     * @return a map without the key; this map if the key was not there */
+    public PersistentHashMap<K, V> minus(Object key) {
+        if (root == null || key == null) {
+            return this;
+        }
+        Node newRoot = root.without(0, hash(key), key);
+        if (newRoot == root) {
+            return this;
+        }
+        if (newRoot == null) {
+            return empty();
+        }
+        return new PersistentHashMap<K, V>(newRoot, size - 1);
+    }
+
+    /** @return read only view of the keys */
+    public Set<K> keySet() {
+        return new AbstractSet<K>() {
+            @Override
+            public Iterator<K> iterator() {
+                return new NodeIterator<K>(root, 0);
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return containsKey(o);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /** @return read only view of the values */
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new NodeIterator<V>(root, 1);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder b = new StringBuilder("{");
+        Iterator<K> keys = keySet().iterator();
+        Iterator<V> values = values().iterator();
+        while (keys.hasNext()) {
+            if (b.length() > 1) {
+                b.append(", ");
+            }
+            b.append(keys.next()).append('=').append(values.next());
+        }
+        return b.append('}').toString();
+    }
+
+    /** trie node; the array holds key value pairs. In bitmap nodes, a pair
+     * with a null key holds a child node as value */
+    private abstract static class Node implements Serializable {
+        private static final long serialVersionUID = -2215934174810472316L;
+        final Object[] array;
+
+        Node(Object[] array) {
+            this.array = array;
+        }
+
+        abstract Object find(int shift, int hash, Object key);
+
+        abstract Node assoc(int shift, int hash, Object key, Object value,
+                boolean[] added);
+
+        /** @return the node without the key; null if the node becomes empty */
+        abstract Node without(int shift, int hash, Object key);
+    }
+
+    private static final class BitmapNode extends Node {
+        private static final long serialVersionUID = 6143287104931265703L;
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+        final int bitmap;
+
+        BitmapNode(int bitmap, Object[] array) {
+            super(array);
+            this.bitmap = bitmap;
+        }
+
+        private int index(int bit) {
+            return 2 * Integer.bitCount(bitmap & bit - 1);
+        }
+
+        @Override
+        Object find(int shift, int hash, Object key) {
+            int bit = 1 << (hash >>> shift & 31);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            int i = index(bit);
+            Object k = array[i];
+            if (k == null) {
+                return ((Node) array[i + 1]).find(shift + 5, hash, key);
+            }
+            return key.equals(k) ? array[i + 1] : null;
+        }
+
+        private BitmapNode with(int i, Object k, Object v) {
+            Object[] copy = array.clone();
+            copy[i] = k;
+            copy[i + 1] = v;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        @Override
+        Node assoc(int shift, int hash, Object key, Object value, boolean[] added) {
+            int bit = 1 << (hash >>> shift & 31);
+            int i = index(bit);
+            if ((bitmap & bit) == 0) {
+                Object[] copy = new Object[array.length + 2];
+                System.arraycopy(array, 0, copy, 0, i);
+                copy[i] = key;
+                copy[i + 1] = value;
+                System.arraycopy(array, i, copy, i + 2, array.length - i);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, copy);
+            }
+            Object k = array[i];
+            Object v = array[i + 1];
+            if (k == null) {
+                Node child = ((Node) v).assoc(shift + 5, hash, key, value, added);
+                return child == v ? this : with(i, null, child);
+            }
+            if (key.equals(k)) {
+                return value == v ? this : with(i, k, value);
+            }
+            added[0] = true;
+            return with(i, null, pair(shift + 5, k, v, hash, key, value));
+        }
+
+        /** @return a node holding two keys */
+        private static Node pair(int shift, Object k1, Object v1, int h2, Object k2,
+                Object v2) {
+            int h1 = hash(k1);
+            if (h1 == h2) {
+                return new CollisionNode(h1, new Object[] { k1, v1, k2, v2 });
+            }
+            boolean[] added = new boolean[1];
+            return EMPTY.assoc(shift, h1, k1, v1, added).assoc(shift, h2, k2, v2,
+                    added);
+        }
+
+        @Override
+        Node without(int shift, int hash, Object key) {
+            int bit = 1 << (hash >>> shift & 31);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int i = index(bit);
+            Object k = array[i];
+            if (k == null) {
+                Node child = (Node) array[i + 1];
+                Node n = child.without(shift + 5, hash, key);
+                if (n == child) {
+                    return this;
+                }
+                if (n != null) {
+                    return with(i, null, n);
+                }
+            } else if (!key.equals(k)) {
+                return this;
+            }
+            if (bitmap == bit) {
+                return null;
+            }
+            Object[] copy = new Object[array.length - 2];
+            System.arraycopy(array, 0, copy, 0, i);
+            System.arraycopy(array, i + 2, copy, i, array.length - i - 2);
+            return new BitmapNode(bitmap ^ bit, copy);
+        }
+    }
+
+    /** keys whose hashes are all equal */
+    private static final class CollisionNode extends Node {
+        private static final long serialVersionUID = -7802659014328763125L;
+        final int hash;
+
+        CollisionNode(int hash, Object[] array) {
+            super(array);
+            this.hash = hash;
+        }
+
+        private int index(Object key) {
+            for (int i = 0; i < array.length; i += 2) {
+                if (key.equals(array[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        Object find(int shift, int h, Object key) {
+            int i = index(key);
+            return i < 0 ? null : array[i + 1];
+        }
+
+        @Override
+        Node assoc(int shift, int h, Object key, Object value, boolean[] added) {
+            if (h != hash) {
+                // the new key goes next to this node
+                Node parent = new BitmapNode(1 << (hash >>> shift & 31), new Object[] {
+                        null, this });
+                return parent.assoc(shift, h, key, value, added);
+            }
+            int i = index(key);
+            if (i >= 0) {
+                if (array[i + 1] == value) {
+                    return this;
+                }
+                Object[] copy = array.clone();
+                copy[i + 1] = value;
+                return new CollisionNode(hash, copy);
+            }
+            Object[] copy = new Object[array.length + 2];
+            System.arraycopy(array, 0, copy, 0, array.length);
+            copy[array.length] = key;
+            copy[array.length + 1] = value;
+            added[0] = true;
+            return new CollisionNode(hash, copy);
+        }
+
+        @Override
+        Node without(int shift, int h, Object key) {
+            int i = index(key);
+            if (i < 0) {
+                return this;
+            }
+            if (array.length == 2) {
+                return null;
+            }
+            Object[] copy = new Object[array.length - 2];
+            System.arraycopy(array, 0, copy, 0, i);
+            System.arraycopy(array, i + 2, copy, i, array.length - i - 2);
+            return new CollisionNode(hash, copy);
+        }
+    }
+
+    /** depth first visit of the pairs; offset 0 returns the keys, 1 the
+     * values */
+    private static final class NodeIterator<T> implements Iterator<T> {
+        private final int offset;
+        private Object[][] arrays = new Object[8][];
+        private int[] positions = new int[8];
+        private int depth = -1;
+        private Object next = null;
+
+        NodeIterator(Node root, int offset) {
+            this.offset = offset;
+            if (root != null) {
+                push(root.array);
+            }
+        }
+
+        private void push(Object[] array) {
+            depth++;
+            if (depth == arrays.length) {
+                arrays = Arrays.copyOf(arrays, depth * 2);
+                positions = Arrays.copyOf(positions, depth * 2);
+            }
+            arrays[depth] = array;
+            positions[depth] = 0;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && depth >= 0) {
+                Object[] array = arrays[depth];
+                int p = positions[depth];
+                if (p == array.length) {
+                    arrays[depth--] = null;
+                } else {
+                    positions[depth] = p + 2;
+                    if (array[p] == null) {
+                        push(((Node) array[p + 1]).array);
+                    } else {
+                        next = array[p + offset];
+                    }
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            T toReturn = (T) next;
+            next = null;
+            return toReturn;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
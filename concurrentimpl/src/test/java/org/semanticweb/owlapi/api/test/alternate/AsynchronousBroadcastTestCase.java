@@ -0,0 +1,175 @@
+/*
+ * This file is part of the OWL API.
+ *
+ * The contents of this file are subject to the LGPL License, Version 3.0.
+ *
+ * Copyright (C) 2011, The University of Manchester
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ *
+ * Alternatively, the contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2011, University of Manchester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semanticweb.owlapi.api.test.alternate;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.configurables.ThreadSafeOWLManager;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyChangeListener;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+
+import uk.ac.manchester.cs.owl.owlapi.alternateimpls.AsynchronousChangeBroadcastStrategy;
+
+@SuppressWarnings("javadoc")
+public class AsynchronousBroadcastTestCase {
+    private static final String NS = "http://www.async.org#";
+    private final OWLOntologyManager manager = ThreadSafeOWLManager
+            .createOWLOntologyManager();
+    private final OWLDataFactory factory = manager.getOWLDataFactory();
+    private AsynchronousChangeBroadcastStrategy strategy;
+
+    @After
+    public void tearDown() {
+        strategy.shutdown();
+    }
+
+    private OWLAxiom axiom(int i) {
+        return factory.getOWLDeclarationAxiom(factory.getOWLClass(IRI.create(NS + i)));
+    }
+
+    /** listener recording the changes, blocked until released */
+    private static class BlockedListener implements OWLOntologyChangeListener {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<OWLOntologyChange> received = new ArrayList<OWLOntologyChange>();
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public void ontologiesChanged(List<? extends OWLOntologyChange> changes) {
+            entered.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            calls.incrementAndGet();
+            synchronized (received) {
+                received.addAll(changes);
+            }
+        }
+    }
+
+    @Test
+    public void shouldDeliverInOrderInBatches() throws Exception {
+        strategy = new AsynchronousChangeBroadcastStrategy();
+        OWLOntology o = manager.createOntology();
+        BlockedListener listener = new BlockedListener();
+        manager.addOntologyChangeListener(listener, strategy);
+        List<OWLOntologyChange> applied = new ArrayList<OWLOntologyChange>();
+        // the writer does not wait for the blocked listener
+        for (int i = 0; i < 100; i++) {
+            applied.addAll(manager.addAxiom(o, axiom(i)));
+        }
+        assertEquals(100, o.getAxiomCount());
+        assertTrue(listener.received.isEmpty());
+        listener.release.countDown();
+        strategy.flush();
+        assertEquals(applied, listener.received);
+        // changes queued while the listener was blocked are coalesced
+        assertTrue(listener.calls.get() < 100);
+    }
+
+    @Test
+    public void shouldMakeWritersWaitForSlowListeners() throws Exception {
+        strategy = new AsynchronousChangeBroadcastStrategy(5);
+        final OWLOntology o = manager.createOntology();
+        BlockedListener listener = new BlockedListener();
+        manager.addOntologyChangeListener(listener, strategy);
+        final AtomicInteger written = new AtomicInteger();
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 20; i++) {
+                    manager.addAxiom(o, axiom(i));
+                    written.incrementAndGet();
+                }
+            }
+        };
+        writer.start();
+        // no more than five changes not delivered
+        awaitWaiting(writer);
+        assertEquals(5, written.get());
+        listener.release.countDown();
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(writer.isAlive());
+        strategy.flush();
+        assertEquals(20, listener.received.size());
+    }
+
+    /** wait until the thread waits for the listener to catch up */
+    private static void awaitWaiting(Thread t) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (t.getState() != Thread.State.WAITING) {
+            assertTrue("the writer never waited", t.isAlive()
+                    && System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void shouldDeliverQueuedChangesAfterShutdown() throws Exception {
+        strategy = new AsynchronousChangeBroadcastStrategy();
+        OWLOntology o = manager.createOntology();
+        BlockedListener listener = new BlockedListener();
+        manager.addOntologyChangeListener(listener, strategy);
+        manager.addAxiom(o, axiom(0));
+        // the first change is being delivered, the others are queued
+        assertTrue(listener.entered.await(10, TimeUnit.SECONDS));
+        for (int i = 1; i < 10; i++) {
+            manager.addAxiom(o, axiom(i));
+        }
+        strategy.shutdown();
+        listener.release.countDown();
+        strategy.flush();
+        assertEquals(10, listener.received.size());
+    }
+}
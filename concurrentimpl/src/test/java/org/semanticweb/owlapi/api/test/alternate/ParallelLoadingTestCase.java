@@ -0,0 +1,220 @@
+/*
+ * This file is part of the OWL API.
+ *
+ * The contents of this file are subject to the LGPL License, Version 3.0.
+ *
+ * Copyright (C) 2011, The University of Manchester
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ *
+ * Alternatively, the contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2011, University of Manchester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.semanticweb.owlapi.api.test.alternate;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.semanticweb.owlapi.apibinding.configurables.ThreadSafeOWLManager;
+import org.semanticweb.owlapi.io.FileDocumentSource;
+import org.semanticweb.owlapi.io.OWLOntologyDocumentSource;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyChangeListener;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
+import org.semanticweb.owlapi.model.OWLOntologyLoaderListener;
+import org.semanticweb.owlapi.util.SimpleIRIMapper;
+
+import uk.ac.manchester.cs.owl.owlapi.alternateimpls.LockingOWLOntologyManagerImpl;
+
+@SuppressWarnings("javadoc")
+public class ParallelLoadingTestCase {
+    private static final String NS = "http://www.parallel.org/";
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    private final LockingOWLOntologyManagerImpl manager = (LockingOWLOntologyManagerImpl) ThreadSafeOWLManager
+            .createOWLOntologyManager();
+    /** number of times each document has been loaded */
+    private final Map<IRI, AtomicInteger> loads = new ConcurrentHashMap<IRI, AtomicInteger>();
+
+    public ParallelLoadingTestCase() {
+        manager.addOntologyLoaderListener(new OWLOntologyLoaderListener() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public void startedLoadingOntology(LoadingStartedEvent event) {
+                AtomicInteger count = loads.get(event.getDocumentIRI());
+                if (count == null) {
+                    count = new AtomicInteger();
+                    loads.put(event.getDocumentIRI(), count);
+                }
+                count.incrementAndGet();
+            }
+
+            @Override
+            public void finishedLoadingOntology(LoadingFinishedEvent event) {}
+        });
+    }
+
+    /** write an ontology with one class, a subclass of a class in each
+     * import, and map its IRI to the file */
+    private FileDocumentSource write(String name, String... imports)
+            throws IOException {
+        File file = folder.newFile(name + ".owl");
+        Writer w = new FileWriter(file);
+        w.write("Prefix(:=<" + NS + name + "#>)\nOntology(<" + NS + name + ">\n");
+        for (String i : imports) {
+            w.write("Import(<" + NS + i + ">)\n");
+        }
+        w.write("Declaration(Class(:A))\n");
+        for (String i : imports) {
+            w.write("SubClassOf(:A <" + NS + i + "#A>)\n");
+        }
+        w.write(")\n");
+        w.close();
+        manager.addIRIMapper(new SimpleIRIMapper(IRI.create(NS + name), IRI
+                .create(file)));
+        return new FileDocumentSource(file);
+    }
+
+    private int loads(FileDocumentSource source) {
+        AtomicInteger count = loads.get(source.getDocumentIRI());
+        return count == null ? 0 : count.get();
+    }
+
+    @Test
+    public void shouldLoadSharedImportsOnce() throws Exception {
+        FileDocumentSource base = write("base");
+        FileDocumentSource left = write("left", "base");
+        FileDocumentSource right = write("right", "base");
+        List<OWLOntologyDocumentSource> roots = new ArrayList<OWLOntologyDocumentSource>();
+        for (int i = 0; i < 20; i++) {
+            roots.add(write("root" + i, "left", "right"));
+        }
+        final AtomicInteger broadcast = new AtomicInteger();
+        manager.addOntologyChangeListener(new OWLOntologyChangeListener() {
+            @Override
+            public void ontologiesChanged(List<? extends OWLOntologyChange> changes) {
+                broadcast.addAndGet(changes.size());
+            }
+        });
+        manager.setLoaderThreads(4);
+        List<OWLOntology> loaded = manager.loadOntologiesFromOntologyDocuments(roots);
+        assertEquals(roots.size(), loaded.size());
+        assertEquals(roots.size() + 3, manager.getOntologies().size());
+        for (int i = 0; i < roots.size(); i++) {
+            OWLOntology o = loaded.get(i);
+            assertEquals(IRI.create(NS + "root" + i), o.getOntologyID().getOntologyIRI());
+            assertEquals(3, o.getAxiomCount());
+            assertEquals(2, manager.getDirectImports(o).size());
+            assertEquals(4, manager.getImportsClosure(o).size());
+            assertEquals(1, loads((FileDocumentSource) roots.get(i)));
+        }
+        assertEquals(1, loads(base));
+        assertEquals(1, loads(left));
+        assertEquals(1, loads(right));
+        // changes made while loading are not broadcast
+        assertEquals(0, broadcast.get());
+        // already loaded documents are returned, not loaded again
+        assertSame(loaded.get(0), manager.loadOntologiesFromOntologyDocuments(
+                roots.subList(0, 1)).get(0));
+    }
+
+    @Test
+    public void shouldLoadDocumentsImportedByOtherDocuments() throws Exception {
+        List<OWLOntologyDocumentSource> roots = new ArrayList<OWLOntologyDocumentSource>();
+        FileDocumentSource base = write("base");
+        roots.add(base);
+        for (int i = 0; i < 6; i++) {
+            roots.add(write("user" + i, "base"));
+        }
+        // the base document is loaded at the same time as a document and as an
+        // import; repeat with new managers to make both orders likely
+        for (int round = 0; round < 30; round++) {
+            LockingOWLOntologyManagerImpl m = (LockingOWLOntologyManagerImpl) ThreadSafeOWLManager
+                    .createOWLOntologyManager();
+            m.addIRIMapper(new SimpleIRIMapper(IRI.create(NS + "base"), base
+                    .getDocumentIRI()));
+            m.setLoaderThreads(8);
+            List<OWLOntology> loaded = m.loadOntologiesFromOntologyDocuments(roots);
+            assertEquals(roots.size(), m.getOntologies().size());
+            for (OWLOntology o : loaded.subList(1, loaded.size())) {
+                assertEquals(2, m.getImportsClosure(o).size());
+                assertTrue(m.getImportsClosure(o).contains(loaded.get(0)));
+            }
+        }
+    }
+
+    @Test
+    public void shouldNotWaitForCyclicImports() throws Exception {
+        write("first", "second");
+        write("second", "first");
+        List<OWLOntologyDocumentSource> roots = new ArrayList<OWLOntologyDocumentSource>();
+        roots.add(write("one", "first"));
+        roots.add(write("two", "second"));
+        List<OWLOntology> loaded = manager.loadOntologiesFromOntologyDocuments(roots);
+        assertEquals(2, loaded.size());
+        assertEquals(4, manager.getOntologies().size());
+        for (OWLOntology o : loaded) {
+            assertEquals(3, manager.getImportsClosure(o).size());
+        }
+    }
+
+    @Test
+    public void shouldReportFailures() throws Exception {
+        List<OWLOntologyDocumentSource> roots = new ArrayList<OWLOntologyDocumentSource>();
+        roots.add(write("good"));
+        File broken = folder.newFile("broken.owl");
+        Writer w = new FileWriter(broken);
+        w.write("Ontology(<" + NS + "broken>\nSubClassOf(\n");
+        w.close();
+        roots.add(new FileDocumentSource(broken));
+        try {
+            manager.loadOntologiesFromOntologyDocuments(roots);
+            fail("a broken document cannot be loaded");
+        } catch (OWLOntologyCreationException e) {
+            // expected
+        }
+        // the other documents are loaded
+        assertTrue(manager.contains(IRI.create(NS + "good")));
+    }
+}
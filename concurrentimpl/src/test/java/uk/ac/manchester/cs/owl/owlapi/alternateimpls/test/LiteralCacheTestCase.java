@@ -0,0 +1,101 @@
+/*
+ * This file is part of the OWL API.
+ *
+ * The contents of this file are subject to the LGPL License, Version 3.0.
+ *
+ * Copyright (C) 2011, The University of Manchester
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ *
+ * Alternatively, the contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2011, University of Manchester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.manchester.cs.owl.owlapi.alternateimpls.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLDatatype;
+import org.semanticweb.owlapi.model.OWLLiteral;
+import org.semanticweb.owlapi.vocab.XSDVocabulary;
+
+import uk.ac.manchester.cs.owl.owlapi.OWLDataFactoryImpl;
+import uk.ac.manchester.cs.owl.owlapi.OWLDataFactoryInternals;
+import uk.ac.manchester.cs.owl.owlapi.OWLDataFactoryInternalsImpl;
+import uk.ac.manchester.cs.owl.owlapi.alternateimpls.owldatafactory.InternalsCSR;
+import uk.ac.manchester.cs.owl.owlapi.alternateimpls.owldatafactory.InternalsConcurrent;
+
+@SuppressWarnings("javadoc")
+public class LiteralCacheTestCase {
+    private final OWLDataFactory df = new OWLDataFactoryImpl();
+
+    private List<OWLLiteral> literals(OWLDataFactoryInternals i) {
+        OWLDatatype plain = df.getRDFPlainLiteral();
+        OWLDatatype string = df.getOWLDatatype(XSDVocabulary.STRING.getIRI());
+        OWLDatatype date = df.getOWLDatatype(XSDVocabulary.DATE_TIME.getIRI());
+        OWLDatatype integer = df.getIntegerOWLDatatype();
+        List<OWLLiteral> list = new ArrayList<OWLLiteral>();
+        // every literal is asked for twice, so that the second comes from the cache
+        for (int k = 0; k < 2; k++) {
+            list.add(i.getOWLLiteral("abc@en", plain));
+            list.add(i.getOWLLiteral("abc@fr", plain));
+            list.add(i.getOWLLiteral("abc@", plain));
+            list.add(i.getOWLLiteral("abc", string));
+            list.add(i.getOWLLiteral("2013-01-01T00:00:00", date));
+            list.add(i.getOWLLiteral("2013-01-01T00:00:00", string));
+            list.add(i.getOWLLiteral("12", integer));
+            list.add(i.getOWLLiteral("12", string));
+        }
+        return list;
+    }
+
+    private void check(OWLDataFactoryInternals i) {
+        List<OWLLiteral> expected = literals(new OWLDataFactoryInternalsImpl(false));
+        List<OWLLiteral> actual = literals(i);
+        assertEquals(expected, actual);
+        for (int k = 0; k < actual.size(); k++) {
+            assertEquals(expected.get(k).getLang(), actual.get(k).getLang());
+            assertEquals(expected.get(k).getDatatype(), actual.get(k).getDatatype());
+        }
+    }
+
+    @Test
+    public void shouldKeepLanguageTagsApartInConcurrentCache() {
+        check(new InternalsConcurrent(false));
+    }
+
+    @Test
+    public void shouldKeepLanguageTagsApartInStrongCache() {
+        check(new InternalsCSR(false));
+    }
+}
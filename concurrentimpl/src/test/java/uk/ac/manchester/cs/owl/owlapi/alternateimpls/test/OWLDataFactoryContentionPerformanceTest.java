@@ -0,0 +1,149 @@
+/*
+ * This file is part of the OWL API.
+ *
+ * The contents of this file are subject to the LGPL License, Version 3.0.
+ *
+ * Copyright (C) 2011, The University of Manchester
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ *
+ * Alternatively, the contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2011, University of Manchester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.manchester.cs.owl.owlapi.alternateimpls.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLEntity;
+
+import uk.ac.manchester.cs.owl.owlapi.OWLDataFactoryInternals;
+import uk.ac.manchester.cs.owl.owlapi.alternateimpls.owldatafactory.InternalsCSR;
+import uk.ac.manchester.cs.owl.owlapi.alternateimpls.owldatafactory.InternalsConcurrent;
+
+/** entity creation throughput when many parser threads share a data factory:
+ * every thread reads a stream of IRIs drawn from a shared vocabulary, and
+ * asks for a class, a property or an individual for each. Run main() for 1 to
+ * 64 threads and a few million entities. */
+@SuppressWarnings("javadoc")
+public class OWLDataFactoryContentionPerformanceTest {
+    private IRI[] vocabulary = vocabulary(50000);
+
+    private static IRI[] vocabulary(int size) {
+        IRI[] toReturn = new IRI[size];
+        for (int i = 0; i < size; i++) {
+            toReturn[i] = IRI.create("urn:test:parse#E" + i);
+        }
+        return toReturn;
+    }
+
+    @Test
+    public void testSynchronized() throws Exception {
+        run(new InternalsCSR(false), 8, 100000);
+    }
+
+    @Test
+    public void testStriped() throws Exception {
+        run(new InternalsConcurrent(false), 8, 100000);
+    }
+
+    /** @return entities per millisecond */
+    private long run(final OWLDataFactoryInternals internals, int threads,
+            final int entities) throws InterruptedException, ExecutionException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<OWLEntity[]>> results = new ArrayList<Future<OWLEntity[]>>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            final Random r = new Random(t);
+            results.add(executor.submit(new Callable<OWLEntity[]>() {
+                @Override
+                public OWLEntity[] call() {
+                    // the classes seen by this thread, to check identity
+                    OWLEntity[] seen = new OWLEntity[vocabulary.length];
+                    for (int k = 0; k < entities; k++) {
+                        int i = r.nextInt(vocabulary.length);
+                        switch (k % 4) {
+                            case 0:
+                                internals.getOWLObjectProperty(vocabulary[i]);
+                                break;
+                            case 1:
+                                internals.getOWLNamedIndividual(vocabulary[i]);
+                                break;
+                            default:
+                                seen[i] = internals.getOWLClass(vocabulary[i]);
+                        }
+                    }
+                    return seen;
+                }
+            }));
+        }
+        executor.shutdown();
+        List<OWLEntity[]> seen = new ArrayList<OWLEntity[]>();
+        for (Future<OWLEntity[]> result : results) {
+            seen.add(result.get());
+        }
+        long elapsed = Math.max(1, (System.nanoTime() - start) / 1000000);
+        // equal IRIs give the same class to every thread
+        for (int i = 0; i < vocabulary.length; i++) {
+            OWLClass c = internals.getOWLClass(vocabulary[i]);
+            for (OWLEntity[] s : seen) {
+                assertTrue(s[i] == null || s[i] == c);
+            }
+        }
+        return (long) threads * entities / elapsed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int entities = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+        int size = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+        OWLDataFactoryContentionPerformanceTest t = new OWLDataFactoryContentionPerformanceTest();
+        t.vocabulary = vocabulary(size);
+        // warm up
+        t.run(new InternalsCSR(false), 4, entities / 10);
+        t.run(new InternalsConcurrent(false), 4, entities / 10);
+        System.out.println("threads\tsynchronized\tstriped (entities/ms)");
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            long sync = t.run(new InternalsCSR(false), threads, entities / threads);
+            long striped = t.run(new InternalsConcurrent(false), threads, entities
+                    / threads);
+            System.out.println(threads + "\t" + sync + "\t" + striped);
+        }
+    }
+}
@@ -45,6 +45,7 @@ import uk.ac.manchester.cs.owl.owlapi.InternalsNoCache;
 import uk.ac.manchester.cs.owl.owlapi.OWLDataFactoryInternals;
 import uk.ac.manchester.cs.owl.owlapi.OWLDataFactoryInternalsImpl;
 import uk.ac.manchester.cs.owl.owlapi.alternateimpls.owldatafactory.InternalsCSR;
+import uk.ac.manchester.cs.owl.owlapi.alternateimpls.owldatafactory.InternalsConcurrent;
 
 @SuppressWarnings("javadoc")
 public class OWLDataFactoryInternalsPerformanceTest {
@@ -68,6 +69,12 @@ public class OWLDataFactoryInternalsPerformanceTest {
         tester.run(i);
     }
 
+    @Test
+    public void testConcurrentWeakValues() {
+        OWLDataFactoryInternals i = new InternalsConcurrent(false);
+        tester.run(i);
+    }
+
     @After
     public void tearDown() {
         System.gc();
@@ -78,6 +85,7 @@ public class OWLDataFactoryInternalsPerformanceTest {
         t.testBaseline();
         t.testDefault();
         t.testConcurrentHashMapsStrongRefs();
+        t.testConcurrentWeakValues();
         long start = System.currentTimeMillis();
         t.testBaseline();
         System.out.println("baseline\t" + (System.currentTimeMillis() - start));
@@ -95,6 +103,7 @@ public class OWLDataFactoryInternalsPerformanceTest {
         t.testConcurrentHashMapsStrongRefs();
         System.out.println("CSR:\t" + (System.currentTimeMillis() - start));
         start = System.currentTimeMillis();
+        t.testConcurrentWeakValues();
         System.out.println("CWR:\t" + (System.currentTimeMillis() - start));
         start = System.currentTimeMillis();
         System.out.println("FUTS:\t" + (System.currentTimeMillis() - start));
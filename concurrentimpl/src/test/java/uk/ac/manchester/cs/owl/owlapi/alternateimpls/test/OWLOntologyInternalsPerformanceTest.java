@@ -0,0 +1,174 @@
+/*
+ * This file is part of the OWL API.
+ *
+ * The contents of this file are subject to the LGPL License, Version 3.0.
+ *
+ * Copyright (C) 2011, The University of Manchester
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ *
+ * Alternatively, the contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2011, University of Manchester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.manchester.cs.owl.owlapi.alternateimpls.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.AddAxiom;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLMutableOntology;
+import org.semanticweb.owlapi.model.OWLOntologyID;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.RemoveAxiom;
+
+import uk.ac.manchester.cs.owl.owlapi.Internals;
+import uk.ac.manchester.cs.owl.owlapi.alternateimpls.LockingOWLOntologyImpl;
+import uk.ac.manchester.cs.owl.owlapi.alternateimpls.LockingOWLOntologyInternals;
+import uk.ac.manchester.cs.owl.owlapi.alternateimpls.ReadWriteLockingOWLOntologyInternals;
+import uk.ac.manchester.cs.owl.owlapi.alternateimpls.SnapshotOWLOntologyInternals;
+
+/** read throughput of a shared ontology for the synchronized, the read write
+ * locked and the snapshot internals: every thread runs lookups, and one operation in a
+ * hundred adds or removes an axiom. Run main() for 1 to 64 threads. */
+@SuppressWarnings("javadoc")
+public class OWLOntologyInternalsPerformanceTest {
+    private static final int CLASSES = 2000;
+    private final OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+    private final OWLDataFactory f = manager.getOWLDataFactory();
+    private final OWLClass[] classes = new OWLClass[CLASSES];
+
+    public OWLOntologyInternalsPerformanceTest() {
+        for (int i = 0; i < CLASSES; i++) {
+            classes[i] = f.getOWLClass(IRI.create("urn:test#C" + i));
+        }
+    }
+
+    @Test
+    public void testSynchronized() throws Exception {
+        run(new LockingOWLOntologyInternals(), 8, 20000);
+    }
+
+    @Test
+    public void testReadWrite() throws Exception {
+        run(new ReadWriteLockingOWLOntologyInternals(), 8, 20000);
+    }
+
+    @Test
+    public void testSnapshot() throws Exception {
+        run(new SnapshotOWLOntologyInternals(), 8, 20000);
+    }
+
+    private OWLMutableOntology create(Internals internals) {
+        OWLMutableOntology o = new LockingOWLOntologyImpl(manager, new OWLOntologyID(
+                IRI.create("urn:test:" + System.nanoTime())), internals);
+        for (int i = 1; i < CLASSES; i++) {
+            o.applyChange(new AddAxiom(o, f.getOWLSubClassOfAxiom(classes[i],
+                    classes[i / 2])));
+        }
+        return o;
+    }
+
+    /** @return operations per millisecond */
+    private long run(Internals internals, int threads, final int operations)
+            throws InterruptedException, ExecutionException {
+        final OWLMutableOntology o = create(internals);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            final Random r = new Random(t);
+            results.add(executor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    int found = 0;
+                    for (int k = 0; k < operations; k++) {
+                        int i = 1 + r.nextInt(CLASSES - 1);
+                        if (k % 100 == 0) {
+                            // a short lived axiom; the subclass hierarchy is
+                            // not touched
+                            OWLAxiom ax = f.getOWLSubClassOfAxiom(classes[i],
+                                    classes[r.nextInt(CLASSES)]);
+                            if (!o.containsAxiom(ax)) {
+                                o.applyChange(new AddAxiom(o, ax));
+                                o.applyChange(new RemoveAxiom(o, ax));
+                            }
+                        } else if (k % 2 == 0) {
+                            found += o.getSubClassAxiomsForSubClass(classes[i]).size();
+                        } else {
+                            found += o.containsAxiom(f.getOWLSubClassOfAxiom(
+                                    classes[i], classes[i / 2])) ? 1 : 0;
+                        }
+                    }
+                    return found;
+                }
+            }));
+        }
+        executor.shutdown();
+        for (Future<Integer> result : results) {
+            // every lookup sees the fixed hierarchy
+            assertTrue(result.get() >= operations * 99 / 100);
+        }
+        long elapsed = Math.max(1, (System.nanoTime() - start) / 1000000);
+        assertEquals(CLASSES - 1, o.getAxiomCount());
+        return (long) threads * operations / elapsed;
+    }
+
+    public static void main(String[] args) throws Exception {
+        OWLOntologyInternalsPerformanceTest t = new OWLOntologyInternalsPerformanceTest();
+        int operations = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        // warm up
+        t.run(new LockingOWLOntologyInternals(), 4, operations);
+        t.run(new ReadWriteLockingOWLOntologyInternals(), 4, operations);
+        t.run(new SnapshotOWLOntologyInternals(), 4, operations);
+        System.out
+                .println("threads\tsynchronized\tread write\tsnapshot (operations/ms)");
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            long sync = t.run(new LockingOWLOntologyInternals(), threads, operations);
+            long rw = t.run(new ReadWriteLockingOWLOntologyInternals(), threads,
+                    operations);
+            long snapshot = t.run(new SnapshotOWLOntologyInternals(), threads,
+                    operations);
+            System.out.println(threads + "\t" + sync + "\t" + rw + "\t" + snapshot);
+        }
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * This file is part of the OWL API.
+ *
+ * The contents of this file are subject to the LGPL License, Version 3.0.
+ *
+ * Copyright (C) 2011, The University of Manchester
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see http://www.gnu.org/licenses/.
+ *
+ *
+ * Alternatively, the contents of this file may be used under the terms of the Apache License, Version 2.0
+ * in which case, the provisions of the Apache License Version 2.0 are applicable instead of those above.
+ *
+ * Copyright 2011, University of Manchester
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package uk.ac.manchester.cs.owl.owlapi.alternateimpls.test;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.AddAxiom;
+import org.semanticweb.owlapi.model.AddImport;
+import org.semanticweb.owlapi.model.AddOntologyAnnotation;
+import org.semanticweb.owlapi.model.AxiomType;
+import org.semanticweb.owlapi.model.IRI;
+import org.semanticweb.owlapi.model.OWLAxiom;
+import org.semanticweb.owlapi.model.OWLClass;
+import org.semanticweb.owlapi.model.OWLDataFactory;
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLMutableOntology;
+import org.semanticweb.owlapi.model.OWLNamedIndividual;
+import org.semanticweb.owlapi.model.OWLObjectProperty;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import org.semanticweb.owlapi.model.OWLOntologyID;
+import org.semanticweb.owlapi.model.OWLOntologyManager;
+import org.semanticweb.owlapi.model.RemoveAxiom;
+
+import uk.ac.manchester.cs.owl.owlapi.OWLOntologyImpl;
+import uk.ac.manchester.cs.owl.owlapi.alternateimpls.SnapshotOWLOntologyImpl;
+import utils.PersistentHashMap;
+
+@SuppressWarnings("javadoc")
+public class SnapshotOntologyTestCase {
+    private final OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+    private final OWLDataFactory f = manager.getOWLDataFactory();
+    private final OWLClass[] classes = new OWLClass[50];
+    private final OWLObjectProperty[] properties = new OWLObjectProperty[10];
+    private final OWLNamedIndividual[] individuals = new OWLNamedIndividual[20];
+
+    public SnapshotOntologyTestCase() {
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = f.getOWLClass(IRI.create("urn:test#C" + i));
+        }
+        for (int i = 0; i < properties.length; i++) {
+            properties[i] = f.getOWLObjectProperty(IRI.create("urn:test#p" + i));
+        }
+        for (int i = 0; i < individuals.length; i++) {
+            individuals[i] = f.getOWLNamedIndividual(IRI.create("urn:test#i" + i));
+        }
+    }
+
+    private OWLClass c(Random r) {
+        return classes[r.nextInt(classes.length)];
+    }
+
+    private OWLObjectProperty p(Random r) {
+        return properties[r.nextInt(properties.length)];
+    }
+
+    private OWLNamedIndividual i(Random r) {
+        return individuals[r.nextInt(individuals.length)];
+    }
+
+    private OWLAxiom axiom(Random r) {
+        switch (r.nextInt(10)) {
+            case 0:
+                return f.getOWLSubClassOfAxiom(c(r), c(r));
+            case 1:
+                // general class axiom
+                return f.getOWLSubClassOfAxiom(
+                        f.getOWLObjectSomeValuesFrom(p(r), c(r)), c(r));
+            case 2:
+                return f.getOWLEquivalentClassesAxiom(c(r), c(r));
+            case 3:
+                return f.getOWLDisjointClassesAxiom(c(r), c(r), c(r));
+            case 4:
+                return f.getOWLClassAssertionAxiom(c(r), i(r));
+            case 5:
+                return f.getOWLObjectPropertyAssertionAxiom(p(r), i(r), i(r));
+            case 6:
+                return f.getOWLObjectPropertyDomainAxiom(p(r), c(r));
+            case 7:
+                return f.getOWLSubPropertyChainOfAxiom(Arrays.asList(p(r), p(r)), p(r));
+            case 8:
+                return f.getOWLDeclarationAxiom(c(r));
+            default:
+                return f.getOWLAnnotationAssertionAxiom(c(r).getIRI(),
+                        f.getOWLAnnotation(f.getRDFSLabel(), f.getOWLLiteral(r.nextInt(5))));
+        }
+    }
+
+    private OWLOntologyID id() {
+        return new OWLOntologyID(IRI.create("urn:test:" + System.nanoTime()));
+    }
+
+    @Test
+    public void shouldAnswerAsOntologyImpl() {
+        Random r = new Random(7);
+        OWLMutableOntology expected = new OWLOntologyImpl(manager, id());
+        OWLMutableOntology actual = new SnapshotOWLOntologyImpl(manager, id());
+        assertEquivalent(expected, actual);
+        List<OWLAxiom> axioms = new ArrayList<OWLAxiom>();
+        for (int round = 0; round < 5; round++) {
+            List<OWLOntologyChange> add = new ArrayList<OWLOntologyChange>();
+            List<OWLOntologyChange> remove = new ArrayList<OWLOntologyChange>();
+            for (int k = 0; k < 300; k++) {
+                OWLAxiom ax = axiom(r);
+                axioms.add(ax);
+                expected.applyChange(new AddAxiom(expected, ax));
+                add.add(new AddAxiom(actual, ax));
+            }
+            actual.applyChanges(add);
+            assertEquivalent(expected, actual);
+            for (int k = 0; k < 200; k++) {
+                OWLAxiom ax = axioms.get(r.nextInt(axioms.size()));
+                expected.applyChange(new RemoveAxiom(expected, ax));
+                remove.add(new RemoveAxiom(actual, ax));
+            }
+            actual.applyChanges(remove);
+            assertEquivalent(expected, actual);
+        }
+        IRI imported = IRI.create("urn:test:imported");
+        expected.applyChange(new AddImport(expected, f.getOWLImportsDeclaration(imported)));
+        actual.applyChange(new AddImport(actual, f.getOWLImportsDeclaration(imported)));
+        expected.applyChange(new AddOntologyAnnotation(expected, f.getOWLAnnotation(
+                f.getRDFSComment(), f.getOWLLiteral("comment"))));
+        actual.applyChange(new AddOntologyAnnotation(actual, f.getOWLAnnotation(
+                f.getRDFSComment(), f.getOWLLiteral("comment"))));
+        assertEquivalent(expected, actual);
+    }
+
+    @Test
+    public void shouldNotReportDuplicateAdds() {
+        OWLMutableOntology expected = new OWLOntologyImpl(manager, id());
+        OWLMutableOntology actual = new SnapshotOWLOntologyImpl(manager, id());
+        for (OWLMutableOntology o : Arrays.asList(expected, actual)) {
+            // equal instances, not the same objects
+            for (int k = 0; k < 2; k++) {
+                OWLAxiom ax = f.getOWLSubClassOfAxiom(classes[0], classes[1]);
+                assertEquals(1 - k, o.applyChange(new AddAxiom(o, ax)).size());
+                OWLAxiom general = f.getOWLSubClassOfAxiom(
+                        f.getOWLObjectSomeValuesFrom(properties[0], classes[0]),
+                        classes[1]);
+                assertEquals(1 - k, o.applyChange(new AddAxiom(o, general)).size());
+                assertEquals(1 - k, o.applyChange(
+                        new AddImport(o, f.getOWLImportsDeclaration(IRI
+                                .create("urn:test:imported")))).size());
+                assertEquals(1 - k, o.applyChange(
+                        new AddOntologyAnnotation(o, f.getOWLAnnotation(
+                                f.getRDFSComment(), f.getOWLLiteral("comment"))))
+                        .size());
+            }
+        }
+        assertEquivalent(expected, actual);
+    }
+
+    private void assertEquivalent(OWLMutableOntology expected, OWLMutableOntology actual) {
+        assertEquals(expected.isEmpty(), actual.isEmpty());
+        assertEquals(expected.getAxioms(), actual.getAxioms());
+        assertEquals(expected.getAxiomCount(), actual.getAxiomCount());
+        assertEquals(expected.getLogicalAxioms(), actual.getLogicalAxioms());
+        assertEquals(expected.getLogicalAxiomCount(), actual.getLogicalAxiomCount());
+        assertEquals(expected.getSignature(), actual.getSignature());
+        assertEquals(expected.getGeneralClassAxioms(), actual.getGeneralClassAxioms());
+        assertEquals(expected.getImportsDeclarations(), actual.getImportsDeclarations());
+        assertEquals(expected.getAnnotations(), actual.getAnnotations());
+        for (AxiomType<?> type : AxiomType.AXIOM_TYPES) {
+            assertEquals(expected.getAxioms(type), actual.getAxioms(type));
+            assertEquals(expected.getAxiomCount(type), actual.getAxiomCount(type));
+        }
+        for (OWLClass c : classes) {
+            assertEquals(expected.getSubClassAxiomsForSubClass(c),
+                    actual.getSubClassAxiomsForSubClass(c));
+            assertEquals(expected.getSubClassAxiomsForSuperClass(c),
+                    actual.getSubClassAxiomsForSuperClass(c));
+            assertEquals(expected.getEquivalentClassesAxioms(c),
+                    actual.getEquivalentClassesAxioms(c));
+            assertEquals(expected.getDisjointClassesAxioms(c),
+                    actual.getDisjointClassesAxioms(c));
+            assertEquals(expected.getAxioms(c), actual.getAxioms(c));
+            assertEquals(expected.getAnnotationAssertionAxioms(c.getIRI()),
+                    actual.getAnnotationAssertionAxioms(c.getIRI()));
+            assertEquals(expected.getDeclarationAxioms(c), actual.getDeclarationAxioms(c));
+            assertEquals(expected.isDeclared(c), actual.isDeclared(c));
+        }
+        for (OWLObjectProperty p : properties) {
+            assertEquals(expected.getObjectPropertyDomainAxioms(p),
+                    actual.getObjectPropertyDomainAxioms(p));
+        }
+        for (OWLNamedIndividual i : individuals) {
+            assertEquals(expected.getClassAssertionAxioms(i),
+                    actual.getClassAssertionAxioms(i));
+            assertEquals(expected.getObjectPropertyAssertionAxioms(i),
+                    actual.getObjectPropertyAssertionAxioms(i));
+        }
+        for (OWLEntity e : expected.getSignature()) {
+            assertEquals(expected.getReferencingAxioms(e), actual.getReferencingAxioms(e));
+        }
+    }
+
+    @Test
+    public void shouldIsolateSnapshots() {
+        SnapshotOWLOntologyImpl o = new SnapshotOWLOntologyImpl(manager, id());
+        OWLAxiom first = f.getOWLSubClassOfAxiom(classes[1], classes[0]);
+        OWLAxiom second = f.getOWLSubClassOfAxiom(classes[2], classes[0]);
+        o.applyChange(new AddAxiom(o, first));
+        SnapshotOWLOntologyImpl snapshot = o.getSnapshot();
+        o.applyChange(new AddAxiom(o, second));
+        o.applyChange(new RemoveAxiom(o, first));
+        assertEquals(new HashSet<OWLAxiom>(Arrays.asList(first)), snapshot.getAxioms());
+        assertEquals(1, snapshot.getSubClassAxiomsForSuperClass(classes[0]).size());
+        assertTrue(snapshot.containsAxiom(first));
+        assertFalse(snapshot.containsAxiom(second));
+        assertEquals(new HashSet<OWLAxiom>(Arrays.asList(second)), o.getAxioms());
+        assertEquals(o.getOntologyID(), snapshot.getOntologyID());
+        try {
+            snapshot.applyChange(new AddAxiom(snapshot, second));
+            fail("snapshots cannot be changed");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+        assertFalse(snapshot.containsAxiom(second));
+    }
+
+    @Test
+    public void shouldPublishChangeListsAtOnce() throws InterruptedException {
+        final SnapshotOWLOntologyImpl o = new SnapshotOWLOntologyImpl(manager, id());
+        final List<OWLOntologyChange> changes = new ArrayList<OWLOntologyChange>();
+        for (int i = 1; i < classes.length; i++) {
+            changes.add(new AddAxiom(o, f.getOWLSubClassOfAxiom(classes[i], classes[0])));
+        }
+        Thread writer = new Thread() {
+            @Override
+            public void run() {
+                for (int k = 0; k < 50; k++) {
+                    o.applyChanges(changes);
+                    List<OWLOntologyChange> removals = new ArrayList<OWLOntologyChange>();
+                    for (OWLOntologyChange change : changes) {
+                        removals.add(new RemoveAxiom(o, change.getAxiom()));
+                    }
+                    o.applyChanges(removals);
+                }
+            }
+        };
+        writer.start();
+        while (writer.isAlive()) {
+            int size = o.getSnapshot().getAxiomCount();
+            assertTrue(size == 0 || size == changes.size());
+        }
+        writer.join();
+        assertTrue(o.isEmpty());
+    }
+
+    /** keys with few distinct hash codes, so that collisions are exercised */
+    private static final class Key {
+        final int value;
+
+        Key(int value) {
+            this.value = value;
+        }
+
+        @Override
+        public int hashCode() {
+            return value % 97;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key && ((Key) obj).value == value;
+        }
+    }
+
+    @Test
+    public void shouldBehaveAsHashMap() {
+        Random r = new Random(11);
+        Map<Object, Integer> expected = new HashMap<Object, Integer>();
+        PersistentHashMap<Object, Integer> actual = PersistentHashMap.empty();
+        for (int k = 0; k < 20000; k++) {
+            int v = r.nextInt(3000);
+            Object key = r.nextBoolean() ? Integer.valueOf(v) : new Key(v);
+            PersistentHashMap<Object, Integer> previous = actual;
+            int size = previous.size();
+            if (r.nextInt(3) == 0) {
+                boolean removed = expected.remove(key) != null;
+                actual = actual.minus(key);
+                assertEquals(removed, actual != previous);
+            } else {
+                expected.put(key, k);
+                actual = actual.plus(key, k);
+            }
+            // older versions do not change
+            assertEquals(size, previous.size());
+            assertEquals(expected.size(), actual.size());
+            assertEquals(expected.get(key), actual.get(key));
+            if (k % 1000 == 0) {
+                assertEquals(expected.keySet(), actual.keySet());
+                assertEquals(new HashSet<Integer>(expected.values()), new HashSet<Integer>(
+                        actual.values()));
+                for (Object o : expected.keySet()) {
+                    assertEquals(expected.get(o), actual.get(o));
+                }
+            }
+        }
+        Integer value = actual.get(actual.keySet().iterator().next());
+        Object key = actual.keySet().iterator().next();
+        assertSame(actual, actual.plus(key, value));
+        assertSame(actual, actual.minus(new Key(-1)));
+    }
+}